@@ -0,0 +1,484 @@
+package ejm2.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.runtime.CoreException;
+
+import org.quasar.juse.api.JUSE_ProgramingFacade;
+
+import org.tzi.use.uml.mm.MAssociation;
+import org.tzi.use.uml.mm.MAttribute;
+import org.tzi.use.uml.ocl.type.CollectionType;
+import org.tzi.use.uml.ocl.value.BooleanValue;
+import org.tzi.use.uml.ocl.value.CollectionValue;
+import org.tzi.use.uml.ocl.value.EnumValue;
+import org.tzi.use.uml.ocl.value.IntegerValue;
+import org.tzi.use.uml.ocl.value.ObjectValue;
+import org.tzi.use.uml.ocl.value.SetValue;
+import org.tzi.use.uml.ocl.value.StringValue;
+import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MLink;
+import org.tzi.use.uml.sys.MObject;
+import org.tzi.use.uml.sys.MSystem;
+import org.tzi.use.uml.sys.MSystemState;
+
+/**
+ * Binary snapshot of an instantiated EJMM: all meta-objects grouped by metaclass,
+ * their defined attribute values and all links grouped by association.
+ * <br>
+ * The snapshot records hashes of the USE specification and of the Java project
+ * sources it was created from, so a snapshot can be rejected when either changed,
+ * and the instantiation profile it was created with, so that it is only restored
+ * into sessions that use the same profile.
+ * Snapshots are read through a memory-mapped file and restored into a USE session
+ * without accessing the Java model.
+ * <br>
+ * Layout (all integers big-endian): magic, version, specification hash, project
+ * hash, profile name, offset of the string table, meta-objects by metaclass,
+ * attribute values by meta-object, links by association and the string table.
+ * Meta-objects, metaclasses, attributes and associations are referred to by index.
+ * The string table is written last, so that the rest of the snapshot can be
+ * streamed to the file while the table is filled.
+ */
+public class EJMMSnapshot {
+
+	private static final int MAGIC = 0x454A4D4D; // "EJMM"
+	private static final int VERSION = 3;
+
+	private static final byte BOOLEAN_VALUE = 0;
+	private static final byte INTEGER_VALUE = 1;
+	private static final byte STRING_VALUE = 2;
+	private static final byte ENUM_VALUE = 3;
+	private static final byte OBJECT_VALUE = 4;
+	private static final byte SET_VALUE = 5;
+
+	private final MappedByteBuffer buffer;
+	private final byte[] specificationHash;
+	private final byte[] projectHash;
+	private final InstantiationProfile profile;
+	private final int stringTableOffset;
+
+	private EJMMSnapshot(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException("Not an EJMM snapshot, or written by another version");
+		specificationHash = readBytes(buffer);
+		projectHash = readBytes(buffer);
+		String profileName = new String(readBytes(buffer), StandardCharsets.UTF_8);
+		try {
+			profile = InstantiationProfile.valueOf(profileName);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown instantiation profile " + profileName);
+		}
+		stringTableOffset = buffer.getInt();
+		if(stringTableOffset < buffer.position() || stringTableOffset > buffer.limit())
+			throw new IOException("Truncated EJMM snapshot");
+	}
+
+	/**
+	 * Maps a snapshot file and reads its header.
+	 *
+	 * @param snapshotFile
+	 * 			The snapshot file
+	 * @return The snapshot, ready to be checked and restored
+	 * @throws IOException
+	 * 			If the file cannot be read or is not an EJMM snapshot
+	 */
+	public static EJMMSnapshot open(File snapshotFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			return new EJMMSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Checks if the snapshot was created from the given specification and project
+	 * contents.
+	 *
+	 * @param specificationHash
+	 * 			The current hash of the USE specification
+	 * @param projectHash
+	 * 			The current hash of the Java project sources
+	 * @return true if both hashes are the ones recorded in the snapshot
+	 */
+	public boolean matches(byte[] specificationHash, byte[] projectHash){
+		return Arrays.equals(this.specificationHash, specificationHash) && Arrays.equals(this.projectHash, projectHash);
+	}
+
+	/**
+	 * @return The instantiation profile of the instantiation the snapshot was
+	 * 			created from
+	 */
+	public InstantiationProfile getProfile(){
+		return profile;
+	}
+
+	/**
+	 * Creates all meta-objects, attribute values and links of the snapshot in a USE
+	 * session where the same specification was compiled.
+	 *
+	 * @param api
+	 * 			The USE session facade
+	 * @return The number of restored meta-objects
+	 */
+	public int restore(JUSE_ProgramingFacade api){
+		int bodyOffset = buffer.position();
+		buffer.position(stringTableOffset);
+		String[] strings = new String[buffer.getInt()];
+		for(int i = 0; i != strings.length; ++i)
+			strings[i] = new String(readBytes(buffer), StandardCharsets.UTF_8);
+		buffer.position(bodyOffset);
+
+		MObject[] objects = new MObject[buffer.getInt()];
+		int objectCount = 0;
+		int classCount = buffer.getInt();
+		for(int c = 0; c != classCount; ++c){
+			String className = strings[buffer.getInt()];
+			int classObjectCount = buffer.getInt();
+			for(int i = 0; i != classObjectCount; ++i)
+				objects[objectCount++] = api.createObject(strings[buffer.getInt()], className);
+		}
+
+		HashMap<String, MAttribute> attributes = new HashMap<String, MAttribute>();
+		for(MObject object: objects){
+			int valueCount = buffer.getInt();
+			for(int v = 0; v != valueCount; ++v){
+				String attributeName = strings[buffer.getInt()];
+				String attributeKey = object.cls().name() + "." + attributeName;
+				MAttribute attribute = attributes.get(attributeKey);
+				if(attribute == null){
+					attribute = api.attributeByName(object, attributeName);
+					attributes.put(attributeKey, attribute);
+				}
+				api.setObjectAttribute(object, attribute, readValue(api, attribute, strings, objects));
+			}
+		}
+
+		int associationCount = buffer.getInt();
+		for(int a = 0; a != associationCount; ++a){
+			MAssociation association = api.associationByName(strings[buffer.getInt()]);
+			int arity = buffer.getInt();
+			int linkCount = buffer.getInt();
+			for(int l = 0; l != linkCount; ++l){
+				MObject[] linkedObjects = new MObject[arity];
+				for(int i = 0; i != arity; ++i)
+					linkedObjects[i] = objects[buffer.getInt()];
+				api.createLink(association, Arrays.asList(linkedObjects));
+			}
+		}
+		return objects.length;
+	}
+
+	private Value readValue(JUSE_ProgramingFacade api, MAttribute attribute, String[] strings, MObject[] objects){
+		byte tag = buffer.get();
+		switch(tag){
+		case BOOLEAN_VALUE:
+			return buffer.get() != 0 ? BooleanValue.TRUE : BooleanValue.FALSE;
+		case INTEGER_VALUE:
+			return IntegerValue.valueOf(buffer.getInt());
+		case STRING_VALUE:
+			return new StringValue(strings[buffer.getInt()]);
+		case ENUM_VALUE:
+			String enumName = strings[buffer.getInt()];
+			return new EnumValue(api.enumByName(enumName), strings[buffer.getInt()]);
+		case OBJECT_VALUE:
+			MObject object = objects[buffer.getInt()];
+			return new ObjectValue(object.cls(), object);
+		case SET_VALUE:
+			int size = buffer.getInt();
+			List<Value> elements = new ArrayList<Value>(size);
+			for(int i = 0; i != size; ++i){
+				MObject element = objects[buffer.getInt()];
+				elements.add(new ObjectValue(element.cls(), element));
+			}
+			return new SetValue(((CollectionType) attribute.type()).elemType(), elements);
+		default:
+			throw new IllegalStateException("Unknown value tag " + tag + " for attribute " + attribute.name());
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the current state of a USE session.
+	 *
+	 * @param system
+	 * 			The USE system with the EJMM instantiation
+	 * @param snapshotFile
+	 * 			The file to write
+	 * @param specificationHash
+	 * 			The hash of the USE specification
+	 * @param projectHash
+	 * 			The hash of the Java project sources
+	 * @param profile
+	 * 			The instantiation profile of the instantiation
+	 * @throws IOException
+	 */
+	public static void write(MSystem system, File snapshotFile, byte[] specificationHash, byte[] projectHash, InstantiationProfile profile) throws IOException {
+		MSystemState state = system.state();
+
+		LinkedHashMap<String, List<MObject>> objectsByClass = new LinkedHashMap<String, List<MObject>>();
+		for(MObject object: state.allObjects()){
+			List<MObject> classObjects = objectsByClass.get(object.cls().name());
+			if(classObjects == null){
+				classObjects = new ArrayList<MObject>();
+				objectsByClass.put(object.cls().name(), classObjects);
+			}
+			classObjects.add(object);
+		}
+		HashMap<MObject, Integer> objectIndexes = new HashMap<MObject, Integer>();
+		for(List<MObject> classObjects: objectsByClass.values())
+			for(MObject object: classObjects)
+				objectIndexes.put(object, objectIndexes.size());
+
+		LinkedHashMap<MAssociation, List<MLink>> linksByAssociation = new LinkedHashMap<MAssociation, List<MLink>>();
+		for(MLink link: state.allLinks()){
+			List<MLink> associationLinks = linksByAssociation.get(link.association());
+			if(associationLinks == null){
+				associationLinks = new ArrayList<MLink>();
+				linksByAssociation.put(link.association(), associationLinks);
+			}
+			associationLinks.add(link);
+		}
+
+		StringTable strings = new StringTable();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile), 1 << 16));
+		int stringTableOffsetPosition;
+		int stringTableOffset;
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeBytes(out, specificationHash);
+			writeBytes(out, projectHash);
+			writeBytes(out, profile.name().getBytes(StandardCharsets.UTF_8));
+			// Placeholder, set once the body is written
+			stringTableOffsetPosition = out.size();
+			out.writeInt(0);
+			writeBody(out, state, objectsByClass, objectIndexes, linksByAssociation, strings);
+
+			// DataOutputStream.size stops at Integer.MAX_VALUE, which a snapshot cannot be mapped beyond
+			stringTableOffset = out.size();
+			if(stringTableOffset == Integer.MAX_VALUE)
+				throw new IOException("The EJMM instance is too large for a snapshot");
+			out.writeInt(strings.size());
+			for(String string: strings.strings)
+				writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			out.close();
+		}
+
+		RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+		try {
+			file.seek(stringTableOffsetPosition);
+			file.writeInt(stringTableOffset);
+		} finally {
+			file.close();
+		}
+	}
+
+	// Meta-objects by metaclass, attribute values by meta-object and links by association
+	private static void writeBody(DataOutputStream out, MSystemState state, LinkedHashMap<String, List<MObject>> objectsByClass,
+			HashMap<MObject, Integer> objectIndexes, LinkedHashMap<MAssociation, List<MLink>> linksByAssociation,
+			StringTable strings) throws IOException {
+		out.writeInt(objectIndexes.size());
+		out.writeInt(objectsByClass.size());
+		for(String className: objectsByClass.keySet()){
+			out.writeInt(strings.indexOf(className));
+			out.writeInt(objectsByClass.get(className).size());
+			for(MObject object: objectsByClass.get(className))
+				out.writeInt(strings.indexOf(object.name()));
+		}
+
+		for(List<MObject> classObjects: objectsByClass.values())
+			for(MObject object: classObjects){
+				List<MAttribute> definedAttributes = new ArrayList<MAttribute>();
+				List<Value> values = new ArrayList<Value>();
+				for(MAttribute attribute: object.cls().allAttributes()){
+					Value value = object.state(state).attributeValue(attribute);
+					if(value != null && value.isDefined()){
+						definedAttributes.add(attribute);
+						values.add(value);
+					}
+				}
+				out.writeInt(values.size());
+				for(int i = 0; i != values.size(); ++i){
+					out.writeInt(strings.indexOf(definedAttributes.get(i).name()));
+					writeValue(out, values.get(i), strings, objectIndexes);
+				}
+			}
+
+		out.writeInt(linksByAssociation.size());
+		for(MAssociation association: linksByAssociation.keySet()){
+			List<MLink> associationLinks = linksByAssociation.get(association);
+			out.writeInt(strings.indexOf(association.name()));
+			out.writeInt(associationLinks.get(0).linkedObjects().size());
+			out.writeInt(associationLinks.size());
+			for(MLink link: associationLinks)
+				for(MObject linkedObject: link.linkedObjects())
+					out.writeInt(objectIndexes.get(linkedObject));
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Value value, StringTable strings, HashMap<MObject, Integer> objectIndexes) throws IOException {
+		if(value instanceof BooleanValue){
+			out.writeByte(BOOLEAN_VALUE);
+			out.writeByte(((BooleanValue) value).value() ? 1 : 0);
+		}
+		else
+		if(value instanceof IntegerValue){
+			out.writeByte(INTEGER_VALUE);
+			out.writeInt(((IntegerValue) value).value());
+		}
+		else
+		if(value instanceof StringValue){
+			out.writeByte(STRING_VALUE);
+			out.writeInt(strings.indexOf(((StringValue) value).value()));
+		}
+		else
+		if(value instanceof EnumValue){
+			out.writeByte(ENUM_VALUE);
+			out.writeInt(strings.indexOf(((EnumValue) value).type().name()));
+			out.writeInt(strings.indexOf(((EnumValue) value).value()));
+		}
+		else
+		if(value instanceof ObjectValue){
+			out.writeByte(OBJECT_VALUE);
+			out.writeInt(objectIndexes.get(((ObjectValue) value).value()));
+		}
+		else
+		if(value instanceof SetValue){
+			out.writeByte(SET_VALUE);
+			out.writeInt(((CollectionValue) value).size());
+			for(Value element: (CollectionValue) value)
+				out.writeInt(objectIndexes.get(((ObjectValue) element).value()));
+		}
+		else
+			throw new IllegalStateException("Unsupported attribute value in snapshot: " + value);
+	}
+
+	/**
+	 * Returns the hash of a file's contents, such as the USE specification.
+	 *
+	 * @param file
+	 * 			The file to hash
+	 * @return The SHA-256 hash of the file
+	 * @throws IOException
+	 */
+	public static byte[] hashFile(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		digest.update(Files.readAllBytes(file.toPath()));
+		return digest.digest();
+	}
+
+	/**
+	 * Returns a hash of the paths and contents of all Java source files of a project.
+	 * Only workspace resources are accessed, not the Java model.
+	 *
+	 * @param project
+	 * 			The project to hash
+	 * @return The SHA-256 hash of the project sources
+	 * @throws CoreException
+	 */
+	public static byte[] hashProject(IProject project) throws CoreException {
+		final MessageDigest digest = newDigest();
+		final List<IFile> sources = new ArrayList<IFile>();
+		project.accept(new IResourceVisitor() {
+			@Override
+			public boolean visit(IResource resource) {
+				if(resource.getType() == IResource.FILE && "java".equals(resource.getFileExtension()))
+					sources.add((IFile) resource);
+				return true;
+			}
+		});
+		// Visiting order is not specified, so sources are hashed by path order
+		Collections.sort(sources, new Comparator<IFile>() {
+			@Override
+			public int compare(IFile f1, IFile f2) {
+				return f1.getFullPath().toString().compareTo(f2.getFullPath().toString());
+			}
+		});
+		byte[] chunk = new byte[1 << 16];
+		for(IFile source: sources){
+			digest.update(source.getFullPath().toString().getBytes(StandardCharsets.UTF_8));
+			InputStream in = source.getContents(true);
+			try {
+				for(int read = in.read(chunk); read != -1; read = in.read(chunk))
+					digest.update(chunk, 0, read);
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot read " + source.getFullPath(), e);
+			} finally {
+				try {
+					in.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest newDigest(){
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(MappedByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Strings written to a snapshot, each stored once and referred to by index.
+	 */
+	private static class StringTable {
+		final List<String> strings = new ArrayList<String>();
+		final HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+
+		int indexOf(String s){
+			Integer index = indexes.get(s);
+			if(index == null){
+				index = strings.size();
+				strings.add(s);
+				indexes.put(s, index);
+			}
+			return index;
+		}
+
+		int size(){
+			return strings.size();
+		}
+	}
+}
@@ -1,10 +1,10 @@
 package ejm2.tools;
 
-import java.util.Arrays;
-import java.util.HashSet;
-
-
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
+import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.CastExpression;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
@@ -13,6 +13,7 @@ import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.FieldAccess;
 import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.InfixExpression.Operator;
 import org.eclipse.jdt.core.dom.InstanceofExpression;
@@ -26,208 +27,172 @@ import org.eclipse.jdt.core.dom.TypeLiteral;
 /**
  * Class responsible for analyzing expressions conained in statements for Statement
  * dependencies and the conditionalOperatorCount attribute.
- * 
+ * <br>
+ * An analyzer accumulates the results of every expression analyzed since the last
+ * reset, so that all expressions of a statement are collected in the same set and
+ * count. Each expression tree is walked once, dispatching on the AST node type.
+ * Analyzers are meant to be reused by one StatementInspector, statement after
+ * statement, and are not thread-safe.
+ *
  * @author Pedro Coimbra
  *
  */
 public class ExpressionAnalyzer {
-	
+
+	// Since all bindings implement the same IBinding interface, they can easily be stored in one set.
+	// Clients thus need to distinguish between the three kinds of IBinding
+	private final Set<IBinding> dependencies = new LinkedHashSet<IBinding>();
+
+	private int conditionalOperatorCount = 0;
+
 	/**
-	 * Analyzes an expression for dependencies. This is a recursive operation that analyzes
-	 * the given expression and all expression contained inside it. 
+	 * Discards the dependencies and conditional operators accumulated so far.
+	 */
+	public void reset(){
+		dependencies.clear();
+		conditionalOperatorCount = 0;
+	}
+
+	/**
+	 * Adds a dependency that does not come from an analyzed expression (e.g. the
+	 * binding of a constructor invocation). Null bindings are ignored.
+	 *
+	 * @param binding
+	 * 			The type, method or variable (field) binding
+	 */
+	public void addDependency(IBinding binding){
+		if(binding != null)
+			dependencies.add(binding);
+	}
+
+	/**
+	 * Returns all type, method and variable (field) bindings found since the last reset.
 	 * <br>
-	 * Type, method and variable (field) bindings are all added to the same set 
-	 * to be returned, so clients of this method need to distinguish between the three
-	 * kinds of IBinding themselves. IMethodBinding for methods calls, IVariableBinding
+	 * Type, method and variable (field) bindings are all added to the same set,
+	 * so clients of this method need to distinguish between the three kinds of
+	 * IBinding themselves. IMethodBinding for methods calls, IVariableBinding
 	 * for field accesses and ITypeBinding for type dependencies.
-	 * 
+	 * <br>
+	 * The set is owned by the analyzer and is cleared on the next reset.
+	 *
+	 * @return The accumulated dependencies
+	 */
+	public Set<IBinding> getDependencies(){
+		return dependencies;
+	}
+
+	/**
+	 * @return The total number of conditional expressions and operators found since
+	 * 			the last reset
+	 */
+	public int getConditionalOperatorCount(){
+		return conditionalOperatorCount;
+	}
+
+	/**
+	 * Analyzes an expression for dependencies, conditional expressions and conditional
+	 * operators. This is a recursive operation that analyzes the given expression and
+	 * all expressions contained inside it.
+	 *
 	 * @param e
 	 * 		The expression to analyze
-	 * @return All type, method and variable (field) bindings found in this expression.
 	 */
-	public static IBinding[] analyzeExpressionDependencies(Expression e){
-		// Since all bindings implement the same IBinding interface, they can easily be stored in one set.
-		// Clients of this method thus need to distinguish between the three kinds of IBinding
-		HashSet<IBinding> dependencies = new HashSet<IBinding>();
+	public void analyze(Expression e){
 		assert e != null : "Null expression";
-		
-		switch(e.getClass().getSimpleName()){
-		case "Assignment":
-			if(((Assignment)e).getLeftHandSide() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((Assignment)e).getLeftHandSide())));
-			if(((Assignment)e).getRightHandSide() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((Assignment)e).getRightHandSide())));
+
+		switch(e.getNodeType()){
+		case ASTNode.ASSIGNMENT:
+			analyzeOptional(((Assignment)e).getLeftHandSide());
+			analyzeOptional(((Assignment)e).getRightHandSide());
 			break;
-			
-		case "CastExpression":
-			dependencies.add(((CastExpression)e).getType().resolveBinding());
-			if(((CastExpression)e).getExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((CastExpression)e).getExpression())));
+
+		case ASTNode.CAST_EXPRESSION:
+			addDependency(((CastExpression)e).getType().resolveBinding());
+			analyzeOptional(((CastExpression)e).getExpression());
 			break;
-			
-		case "ClassInstanceCreation":
-			for(Object argument: ((ClassInstanceCreation)e).arguments()){
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies((Expression)argument)));
-			}
-			dependencies.add(((ClassInstanceCreation)e).resolveConstructorBinding());
-			dependencies.add(((ClassInstanceCreation)e).resolveTypeBinding());
-			if(((ClassInstanceCreation)e).getExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((ClassInstanceCreation)e).getExpression())));
+
+		case ASTNode.CLASS_INSTANCE_CREATION:
+			analyzeAll(((ClassInstanceCreation)e).arguments());
+			addDependency(((ClassInstanceCreation)e).resolveConstructorBinding());
+			addDependency(((ClassInstanceCreation)e).resolveTypeBinding());
+			analyzeOptional(((ClassInstanceCreation)e).getExpression());
 			break;
-			
-		case "ConditionalExpression":
-			if(((ConditionalExpression)e).getExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((ConditionalExpression)e).getExpression())));
-			if(((ConditionalExpression)e).getThenExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((ConditionalExpression)e).getThenExpression())));
-			if(((ConditionalExpression)e).getElseExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((ConditionalExpression)e).getElseExpression())));
+
+		case ASTNode.CONDITIONAL_EXPRESSION:
+			analyzeOptional(((ConditionalExpression)e).getExpression());
+			analyzeOptional(((ConditionalExpression)e).getThenExpression());
+			analyzeOptional(((ConditionalExpression)e).getElseExpression());
+			conditionalOperatorCount++;
 			break;
-			
-		case "FieldAccess":
-			dependencies.add(((FieldAccess)e).resolveTypeBinding());
-			dependencies.add(((FieldAccess)e).resolveFieldBinding());
-			dependencies.add(((FieldAccess)e).resolveFieldBinding().getDeclaringClass());
-			if(((FieldAccess)e).getExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((FieldAccess)e).getExpression())));
+
+		case ASTNode.FIELD_ACCESS:
+			addDependency(((FieldAccess)e).resolveTypeBinding());
+			IVariableBinding fieldBinding = ((FieldAccess)e).resolveFieldBinding();
+			if(fieldBinding != null){
+				addDependency(fieldBinding);
+				addDependency(fieldBinding.getDeclaringClass());
+			}
+			analyzeOptional(((FieldAccess)e).getExpression());
 			break;
-			
-		case "InfixExpression":
-			if(((InfixExpression)e).getLeftOperand() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((InfixExpression)e).getLeftOperand())));
-			if(((InfixExpression)e).getRightOperand() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((InfixExpression)e).getRightOperand())));
-			
-			for(Object o: ((InfixExpression)e).extendedOperands())
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((Expression)o))));
 
+		case ASTNode.INFIX_EXPRESSION:
+			analyzeOptional(((InfixExpression)e).getLeftOperand());
+			analyzeOptional(((InfixExpression)e).getRightOperand());
+			analyzeAll(((InfixExpression)e).extendedOperands());
+
+			Operator op = ((InfixExpression)e).getOperator();
+			if(op == Operator.CONDITIONAL_AND || op == Operator.CONDITIONAL_OR)
+				conditionalOperatorCount += 1 + ((InfixExpression)e).extendedOperands().size();
 			break;
-			
-		case "InstanceofExpression":
-			if(((InstanceofExpression)e).getLeftOperand() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((InstanceofExpression)e).getLeftOperand())));
-			dependencies.add(((InstanceofExpression)e).getRightOperand().resolveBinding());
+
+		case ASTNode.INSTANCEOF_EXPRESSION:
+			analyzeOptional(((InstanceofExpression)e).getLeftOperand());
+			addDependency(((InstanceofExpression)e).getRightOperand().resolveBinding());
 			break;
-			
-		case "MethodInvocation":
+
+		case ASTNode.METHOD_INVOCATION:
 			IMethodBinding methodBinding = ((MethodInvocation)e).resolveMethodBinding();
 			if(methodBinding != null){
-				dependencies.add(methodBinding.getDeclaringClass());
-				dependencies.add(methodBinding.getReturnType());
-				dependencies.add(methodBinding);
+				addDependency(methodBinding.getDeclaringClass());
+				addDependency(methodBinding.getReturnType());
+				addDependency(methodBinding);
 			}
-			for(Object o: ((MethodInvocation)e).arguments())
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies((Expression)o)));
-			
-			if(((MethodInvocation)e).getExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((MethodInvocation)e).getExpression())));
+			analyzeAll(((MethodInvocation)e).arguments());
+			analyzeOptional(((MethodInvocation)e).getExpression());
 			break;
-			
-		case "ParenthesizedExpression":
-			if(((ParenthesizedExpression)e).getExpression() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((ParenthesizedExpression)e).getExpression())));
+
+		case ASTNode.PARENTHESIZED_EXPRESSION:
+			analyzeOptional(((ParenthesizedExpression)e).getExpression());
 			break;
-		case "PostfixExpression":
-			if(((PostfixExpression)e).getOperand() != null)
-				dependencies.addAll(Arrays.asList(analyzeExpressionDependencies(((PostfixExpression)e).getOperand())));
+
+		case ASTNode.POSTFIX_EXPRESSION:
+			analyzeOptional(((PostfixExpression)e).getOperand());
 			break;
-			
-		case "SimpleName":
-			dependencies.add(((SimpleName)e).resolveTypeBinding());
+
+		case ASTNode.SIMPLE_NAME:
+			addDependency(((SimpleName)e).resolveTypeBinding());
 			break;
-			
-		case "QualifiedName":
-			dependencies.add(((QualifiedName)e).resolveTypeBinding());
+
+		case ASTNode.QUALIFIED_NAME:
+			addDependency(((QualifiedName)e).resolveTypeBinding());
 			break;
-			
-		case "TypeLiteral":
-			dependencies.add(((TypeLiteral)e).getType().resolveBinding());
+
+		case ASTNode.TYPE_LITERAL:
+			addDependency(((TypeLiteral)e).getType().resolveBinding());
 			break;
-			
+
 		default:
 			break;
 		}
-		dependencies.remove(null);
-		return dependencies.toArray(new IBinding[0]);
 	}
-	
-	/**
-	 * Analyzes the given expression for conditional expressions and conditional operators.
-	 * This is a recursive method that analyzes the given expression and all expressions
-	 * contained inside it.
-	 * 
-	 * @param e
-	 * 			The expression to analyze
-	 * @return The total number of conditional expressions and operators found
-	 */
-	public static int analyzeExpressionConditions(Expression e){
-		int result = 0;
-		switch(e.getClass().getSimpleName()){
-		case "Assignment":
-			if(((Assignment)e).getLeftHandSide() != null)
-				result += analyzeExpressionConditions(((Assignment)e).getLeftHandSide());
-			if(((Assignment)e).getRightHandSide() != null)
-				result += analyzeExpressionConditions(((Assignment)e).getRightHandSide());
-			break;
-		case "CastExpression":
-			if(((CastExpression)e).getExpression() != null)
-				result += analyzeExpressionConditions(((CastExpression)e).getExpression());
-			break;
-		case "ClassInstanceCreation":
-			for(Object argument: ((ClassInstanceCreation)e).arguments()){
-				result += analyzeExpressionConditions((Expression)argument);
-			}
-			if(((ClassInstanceCreation)e).getExpression() != null)
-				result += analyzeExpressionConditions(((ClassInstanceCreation)e).getExpression());
-			break;
-		case "ConditionalExpression":
-			if(((ConditionalExpression)e).getExpression() != null)
-				result += analyzeExpressionConditions(((ConditionalExpression)e).getExpression());
-			if(((ConditionalExpression)e).getThenExpression() != null)
-				result += analyzeExpressionConditions(((ConditionalExpression)e).getThenExpression());
-			if(((ConditionalExpression)e).getElseExpression() != null)
-				result += analyzeExpressionConditions(((ConditionalExpression)e).getElseExpression());
-			result++;
-			break;
-		case "FieldAccess":
-			if(((FieldAccess)e).getExpression() != null)
-				result += analyzeExpressionConditions(((FieldAccess)e).getExpression());
-			break;
-		case "InfixExpression":
-			if(((InfixExpression)e).getLeftOperand() != null)
-				result += analyzeExpressionConditions(((InfixExpression)e).getLeftOperand());
-			if(((InfixExpression)e).getRightOperand() != null)
-				result += analyzeExpressionConditions(((InfixExpression)e).getRightOperand());
-			
-			for(Object o: ((InfixExpression)e).extendedOperands())
-				result += analyzeExpressionConditions(((Expression)o));
 
-			Operator op = ((InfixExpression)e).getOperator();
-			if(op.equals(Operator.CONDITIONAL_AND) || op.equals(Operator.CONDITIONAL_OR))
-				result += 1 + ((InfixExpression)e).extendedOperands().size();
-			break;
-		case "InstanceofExpression":
-			if(((InstanceofExpression)e).getLeftOperand() != null)
-				result += analyzeExpressionConditions(((InstanceofExpression)e).getLeftOperand());
-			break;
-		case "MethodInvocation":
-			for(Object o: ((MethodInvocation)e).arguments())
-				result += analyzeExpressionConditions(((Expression)o));
+	private void analyzeOptional(Expression e){
+		if(e != null)
+			analyze(e);
+	}
 
-			if(((MethodInvocation)e).getExpression() != null)
-				result += analyzeExpressionConditions(((MethodInvocation)e).getExpression());
-			break;
-		case "ParenthesizedExpression":
-			if(((ParenthesizedExpression)e).getExpression() != null)
-				result += analyzeExpressionConditions(((ParenthesizedExpression)e).getExpression());
-			break;
-		case "PostfixExpression":
-			if(((PostfixExpression)e).getOperand() != null)
-				result += analyzeExpressionConditions(((PostfixExpression)e).getOperand());
-			break;
-		default:
-			break;
-		}
-		return result;
+	private void analyzeAll(List<?> expressions){
+		for(int i = 0; i != expressions.size(); ++i)
+			analyze((Expression) expressions.get(i));
 	}
 }
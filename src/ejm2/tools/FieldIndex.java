@@ -0,0 +1,71 @@
+package ejm2.tools;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.tzi.use.uml.sys.MObject;
+
+/**
+ * Index from a Type meta-object and a field name to the Field meta-object linked to
+ * it through A_Type_Field.
+ * <br>
+ * The index is filled by the loader classes whenever they link a field to its type,
+ * so that annotation member values can be matched with their annotation type's
+ * fields without evaluating an OCL expression for each of them.
+ */
+class FieldIndex {
+
+	private final HashMap<MObject, HashMap<String, MObject>> index = new HashMap<MObject, HashMap<String, MObject>>();
+
+	/**
+	 * Registers a field of a type.
+	 *
+	 * @param typeMObject
+	 * 			The declaring Type meta-object
+	 * @param fieldName
+	 * 			The name of the field
+	 * @param fieldMObject
+	 * 			The Field meta-object
+	 */
+	void put(MObject typeMObject, String fieldName, MObject fieldMObject){
+		HashMap<String, MObject> fields = index.get(typeMObject);
+		if(fields == null){
+			fields = new HashMap<String, MObject>();
+			index.put(typeMObject, fields);
+		}
+		fields.put(fieldName, fieldMObject);
+	}
+
+	/**
+	 * Returns the field of a type with the given name.
+	 *
+	 * @param typeMObject
+	 * 			The declaring Type meta-object
+	 * @param fieldName
+	 * 			The name of the field
+	 * @return The Field meta-object, null if the type has no such field
+	 */
+	MObject get(MObject typeMObject, String fieldName){
+		HashMap<String, MObject> fields = index.get(typeMObject);
+		return fields == null ? null : fields.get(fieldName);
+	}
+
+	/**
+	 * Removes all entries that refer to the given meta-objects, either as the
+	 * declaring type or as the field.
+	 *
+	 * @param objects
+	 * 			The meta-objects to remove
+	 */
+	void removeAll(Collection<MObject> objects){
+		Iterator<MObject> types = index.keySet().iterator();
+		while(types.hasNext()){
+			MObject typeMObject = types.next();
+			if(objects.contains(typeMObject))
+				types.remove();
+			else
+				index.get(typeMObject).values().removeAll(objects);
+		}
+	}
+}
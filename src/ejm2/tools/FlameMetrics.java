@@ -0,0 +1,566 @@
+package ejm2.tools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.quasar.juse.api.JUSE_ProgramingFacade;
+
+import org.tzi.use.uml.mm.MAssociation;
+import org.tzi.use.uml.ocl.value.CollectionValue;
+import org.tzi.use.uml.ocl.value.IntegerValue;
+import org.tzi.use.uml.ocl.value.ObjectValue;
+import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MLink;
+import org.tzi.use.uml.sys.MObject;
+import org.tzi.use.uml.sys.MSystem;
+import org.tzi.use.uml.sys.MSystemState;
+
+/**
+ * Java implementation of the FLAME operations of the Type metaclass defined in
+ * JavaMMv3_FLAME.use (children, CHIN, definedFeatures, directlyInheritedFeatures,
+ * allInheritedFeatures, newFeatures, overriddenFeatures, their Operations, Methods
+ * and Attributes variants, and the NON ... AAN counts).
+ * <br>
+ * The links between types, type roots, package fragments and members are indexed
+ * in one pass over the system state. When the loader materialized the Type closure
+ * links (see {@link TypeClosures}), the inheritance tree, interface tree and included
+ * types are read from them; otherwise, e.g. with EJMM.use or a restored snapshot,
+ * they are computed once per type from the direct links. The results follow the OCL
+ * definitions, including their visibility filter, except that navigating from an
+ * undefined object (e.g. the superclass of a type without one) gives no members
+ * instead of an undefined value. {@link #verify(JUSE_ProgramingFacade, Collection, String...)} compares
+ * the results with the OCL evaluation.
+ * <br>
+ * The index is a snapshot: a FlameMetrics object must be created again after the
+ * instantiation changes.
+ */
+public class FlameMetrics {
+
+	/**
+	 * The Set(Member), Set(Method), Set(Field) and Set(Type) operations implemented.
+	 */
+	public static final List<String> SET_OPERATIONS = Collections.unmodifiableList(Arrays.asList(
+			"getFullInheritanceTree", "getFullInterfaceTree", "getAllIncludedTypes", "children",
+			"definedFeatures", "directlyInheritedFeatures", "allInheritedFeatures", "allFeatures",
+			"newFeatures", "overriddenFeatures",
+			"definedOperations", "directlyInheritedOperations", "allInheritedOperations",
+			"newOperations", "overriddenOperations", "allOperations",
+			"definedMethods", "inheritedMethods", "inheritedFromAllMethods", "newMethods", "overriddenMethods",
+			"definedAttributes", "directlyInheritedAttributes", "allInheritedAttributes", "inheritedAttributes",
+			"newAttributes", "overriddenAttributes", "allAttributes"));
+
+	/**
+	 * The Integer operations implemented.
+	 */
+	public static final List<String> INTEGER_OPERATIONS = Collections.unmodifiableList(Arrays.asList(
+			"CHIN", "NON", "ION", "OON", "DON", "AON", "NAN", "IAN", "OAN", "DAN", "AAN"));
+
+	private final MSystemState state;
+	private final MetamodelRegistry registry;
+
+	// Whether the closures are indexed from the D/E/F_Type_Type links instead of computed
+	private final boolean materialized;
+
+	// Navigation of the indexed associations, named after their OCL role names
+	private final HashMap<MObject, MObject> superclass = new HashMap<MObject, MObject>();
+	private final HashMap<MObject, List<MObject>> subclasses = new HashMap<MObject, List<MObject>>();
+	private final HashMap<MObject, List<MObject>> interfaces = new HashMap<MObject, List<MObject>>();
+	private final HashMap<MObject, List<MObject>> implementors = new HashMap<MObject, List<MObject>>();
+	private final HashMap<MObject, List<MObject>> includes = new HashMap<MObject, List<MObject>>();
+	private final HashMap<MObject, MObject> includedIn = new HashMap<MObject, MObject>();
+	private final HashMap<MObject, List<MObject>> fields = new HashMap<MObject, List<MObject>>();
+	private final HashMap<MObject, List<MObject>> methods = new HashMap<MObject, List<MObject>>();
+	private final HashMap<MObject, MObject> memberType = new HashMap<MObject, MObject>();
+	private final HashMap<MObject, MObject> typeRoot = new HashMap<MObject, MObject>();
+	private final HashMap<MObject, MObject> packageFragment = new HashMap<MObject, MObject>();
+	private final HashSet<MObject> allMethods = new HashSet<MObject>();
+
+	// Results computed, or indexed from the closure links, so far, per type
+	private final HashMap<MObject, Set<MObject>> inheritanceTrees = new HashMap<MObject, Set<MObject>>();
+	private final HashMap<MObject, Set<MObject>> interfaceTrees = new HashMap<MObject, Set<MObject>>();
+	private final HashMap<MObject, Set<MObject>> includedTypes = new HashMap<MObject, Set<MObject>>();
+	private final HashMap<MObject, Set<MObject>> directlyInherited = new HashMap<MObject, Set<MObject>>();
+	private final HashMap<MObject, Set<MObject>> allInherited = new HashMap<MObject, Set<MObject>>();
+
+	/**
+	 * Indexes the current state of a USE session.
+	 *
+	 * @param system
+	 * 			The USE system holding an EJMM instantiation
+	 * @param registry
+	 * 			The handles of the EJMM compiled in the system
+	 * @param closureLinks
+	 * 			true if the D/E/F_Type_Type links were materialized for the current
+	 * 			state (see JM2Loader.hasTypeClosures)
+	 */
+	public FlameMetrics(MSystem system, MetamodelRegistry registry, boolean closureLinks){
+		this.state = system.state();
+		this.registry = registry;
+		this.materialized = closureLinks && TypeClosures.isSupported(registry);
+		for(MLink link: state.allLinks()){
+			MAssociation association = link.association();
+			List<MObject> linked = link.linkedObjects();
+			if(association == registry.bTypeType){
+				superclass.put(linked.get(1), linked.get(0));
+				add(subclasses, linked.get(0), linked.get(1));
+			}else if(association == registry.cTypeType){
+				add(interfaces, linked.get(1), linked.get(0));
+				add(implementors, linked.get(0), linked.get(1));
+			}else if(association == registry.aTypeType){
+				add(includes, linked.get(1), linked.get(0));
+				includedIn.put(linked.get(0), linked.get(1));
+			}else if(association == registry.aTypeField){
+				add(fields, linked.get(0), linked.get(1));
+				memberType.put(linked.get(1), linked.get(0));
+			}else if(association == registry.aTypeMethod){
+				add(methods, linked.get(0), linked.get(1));
+				memberType.put(linked.get(1), linked.get(0));
+				allMethods.add(linked.get(1));
+			}else if(association == registry.aTypeRootType)
+				typeRoot.put(linked.get(1), linked.get(0));
+			else if(association == registry.aPackageFragmentTypeRoot)
+				packageFragment.put(linked.get(1), linked.get(0));
+			// Closure links are created as [type, closure member]
+			else if(materialized && association == registry.dTypeType)
+				addClosure(inheritanceTrees, linked.get(0), linked.get(1));
+			else if(materialized && association == registry.eTypeType)
+				addClosure(interfaceTrees, linked.get(0), linked.get(1));
+			else if(materialized && association == registry.fTypeType)
+				addClosure(includedTypes, linked.get(0), linked.get(1));
+		}
+	}
+
+	/**
+	 * Evaluates an operation of a Type meta-object.
+	 *
+	 * @param type
+	 * 			The Type meta-object
+	 * @param operation
+	 * 			The name of one of the SET_OPERATIONS
+	 * @return The result of the operation
+	 * @throws IllegalArgumentException
+	 * 			If the operation is not implemented
+	 */
+	public Set<MObject> evaluateSet(MObject type, String operation){
+		switch(operation){
+		case "getFullInheritanceTree":
+			return inheritanceTree(type);
+		case "getFullInterfaceTree":
+			return interfaceTree(type);
+		case "getAllIncludedTypes":
+			return allIncludedTypes(type);
+		case "children":
+			return children(type);
+		case "definedFeatures":
+			return definedFeatures(type);
+		case "directlyInheritedFeatures":
+			return directlyInheritedFeatures(type);
+		case "allInheritedFeatures":
+			return allInheritedFeatures(type);
+		case "allFeatures":
+			return union(allInheritedFeatures(type), definedFeatures(type));
+		case "newFeatures":
+			return difference(definedFeatures(type), allInheritedFeatures(type));
+		case "overriddenFeatures":
+			return intersection(definedFeatures(type), allInheritedFeatures(type));
+		case "definedOperations":
+		case "definedMethods":
+			return select(definedFeatures(type), true);
+		case "directlyInheritedOperations":
+		case "inheritedMethods":
+			return select(directlyInheritedFeatures(type), true);
+		case "allInheritedOperations":
+		case "inheritedFromAllMethods":
+			return allInheritedMembers(type, true);
+		case "newOperations":
+		case "newMethods":
+			return difference(select(definedFeatures(type), true), allInheritedMembers(type, true));
+		case "overriddenOperations":
+		case "overriddenMethods":
+			return intersection(select(definedFeatures(type), true), allInheritedMembers(type, true));
+		case "allOperations":
+			return select(union(allInheritedFeatures(type), definedFeatures(type)), true);
+		case "definedAttributes":
+			return select(definedFeatures(type), false);
+		case "directlyInheritedAttributes":
+			return select(directlyInheritedFeatures(type), false);
+		case "allInheritedAttributes":
+		case "inheritedAttributes":
+			return allInheritedMembers(type, false);
+		case "newAttributes":
+			return difference(select(definedFeatures(type), false), allInheritedMembers(type, false));
+		case "overriddenAttributes":
+			return intersection(select(definedFeatures(type), false), allInheritedMembers(type, false));
+		case "allAttributes":
+			return select(union(allInheritedFeatures(type), definedFeatures(type)), false);
+		default:
+			throw new IllegalArgumentException("No native implementation of Type::" + operation);
+		}
+	}
+
+	/**
+	 * Evaluates a metric of a Type meta-object.
+	 *
+	 * @param type
+	 * 			The Type meta-object
+	 * @param operation
+	 * 			The name of one of the INTEGER_OPERATIONS
+	 * @return The value of the metric
+	 * @throws IllegalArgumentException
+	 * 			If the metric is not implemented
+	 */
+	public int evaluateInteger(MObject type, String operation){
+		switch(operation){
+		case "CHIN":
+			return children(type).size();
+		case "NON":
+			return evaluateSet(type, "newOperations").size();
+		case "ION":
+			return evaluateSet(type, "allInheritedOperations").size();
+		case "OON":
+			return evaluateSet(type, "overriddenOperations").size();
+		case "DON":
+			return evaluateSet(type, "definedOperations").size();
+		case "AON":
+			return evaluateSet(type, "allOperations").size();
+		case "NAN":
+			return evaluateSet(type, "newAttributes").size();
+		case "IAN":
+			return evaluateSet(type, "allInheritedAttributes").size();
+		case "OAN":
+			return evaluateSet(type, "overriddenAttributes").size();
+		case "DAN":
+			return evaluateSet(type, "definedAttributes").size();
+		case "AAN":
+			return evaluateSet(type, "allAttributes").size();
+		default:
+			throw new IllegalArgumentException("No native implementation of Type::" + operation);
+		}
+	}
+
+	/**
+	 * Evaluates an OCL expression appended to a Type meta-object, if it has a native
+	 * implementation: an Integer operation (e.g. "NON()") or the size of a Set
+	 * operation (e.g. "definedFeatures()->size()").
+	 *
+	 * @param type
+	 * 			The Type meta-object
+	 * @param expression
+	 * 			The expression, without the meta-object and the dot
+	 * @return The value of the expression, null if it has no native implementation
+	 */
+	public Integer evaluate(MObject type, String expression){
+		String operation = nativeOperation(expression);
+		if(operation == null)
+			return null;
+		if(INTEGER_OPERATIONS.contains(operation))
+			return evaluateInteger(type, operation);
+		return evaluateSet(type, operation).size();
+	}
+
+	/**
+	 * Checks whether an expression appended to a Type meta-object has a native
+	 * implementation.
+	 *
+	 * @param expression
+	 * 			The expression, without the meta-object and the dot
+	 * @return true if {@link #evaluate(MObject, String)} does not return null for it
+	 */
+	public static boolean supports(String expression){
+		return nativeOperation(expression) != null;
+	}
+
+	private static String nativeOperation(String expression){
+		String normalized = expression.replaceAll("\\s+", "");
+		boolean size = false;
+		for(String suffix: new String[]{"->size()", "->size"})
+			if(normalized.endsWith(suffix)){
+				normalized = normalized.substring(0, normalized.length() - suffix.length());
+				size = true;
+				break;
+			}
+		if(normalized.endsWith("()"))
+			normalized = normalized.substring(0, normalized.length() - 2);
+		if(size ? SET_OPERATIONS.contains(normalized) : INTEGER_OPERATIONS.contains(normalized))
+			return normalized;
+		return null;
+	}
+
+	/**
+	 * Compares the native results of some operations with their OCL evaluation, on
+	 * the given Type meta-objects.
+	 *
+	 * @param api
+	 * 			The facade of the USE session that was indexed
+	 * @param types
+	 * 			The Type meta-objects to check
+	 * @param operations
+	 * 			Names of SET_OPERATIONS and INTEGER_OPERATIONS, all of them if none is given
+	 * @return One message per mismatch, empty if all results agree
+	 */
+	public List<String> verify(JUSE_ProgramingFacade api, Collection<MObject> types, String... operations){
+		List<String> names = new ArrayList<String>();
+		if(operations.length == 0){
+			names.addAll(SET_OPERATIONS);
+			names.addAll(INTEGER_OPERATIONS);
+		}else
+			names.addAll(Arrays.asList(operations));
+
+		List<String> mismatches = new ArrayList<String>();
+		for(MObject type: types)
+			for(String operation: names){
+				Value expected = api.oclEvaluator(type.toString() + "." + operation + "()");
+				Object actual;
+				Object oclResult;
+				if(INTEGER_OPERATIONS.contains(operation)){
+					actual = evaluateInteger(type, operation);
+					oclResult = expected instanceof IntegerValue ? ((IntegerValue)expected).value() : expected;
+				}else{
+					actual = evaluateSet(type, operation);
+					oclResult = expected instanceof CollectionValue ? objects((CollectionValue)expected) : expected;
+				}
+				if(!actual.equals(oclResult))
+					mismatches.add(type.toString() + "." + operation + "(): native " + actual + ", OCL " + expected);
+			}
+		return mismatches;
+	}
+
+	/**
+	 * getFullInheritanceTree: the superclass of the type and all its ancestors.
+	 *
+	 * @param type
+	 * 			The Type meta-object
+	 * @return The ancestors of the type
+	 */
+	public Set<MObject> inheritanceTree(MObject type){
+		Set<MObject> tree = inheritanceTrees.get(type);
+		if(tree == null){
+			// Types without closure links have an empty tree when the closures are materialized
+			tree = new LinkedHashSet<MObject>();
+			if(!materialized){
+				// A cyclic hierarchy ends when a type is reached again
+				MObject ancestor = superclass.get(type);
+				while(ancestor != null && tree.add(ancestor))
+					ancestor = superclass.get(ancestor);
+			}
+			inheritanceTrees.put(type, tree);
+		}
+		return tree;
+	}
+
+	/**
+	 * getFullInterfaceTree: the type, if it is an interface, and every interface
+	 * reachable through implements links.
+	 *
+	 * @param type
+	 * 			The Type meta-object
+	 * @return The interfaces of the type
+	 */
+	public Set<MObject> interfaceTree(MObject type){
+		Set<MObject> tree = interfaceTrees.get(type);
+		if(tree == null){
+			tree = new LinkedHashSet<MObject>();
+			if(!materialized)
+				for(MObject reached: reachable(type, interfaces, true))
+					if(registry.javaTypeInterface.equals(reached.state(state).attributeValue(registry.typeAttributes.javaType)))
+						tree.add(reached);
+			interfaceTrees.put(type, tree);
+		}
+		return tree;
+	}
+
+	/**
+	 * getAllIncludedTypes: the types nested in the type, at any depth.
+	 *
+	 * @param type
+	 * 			The Type meta-object
+	 * @return The nested types
+	 */
+	public Set<MObject> allIncludedTypes(MObject type){
+		Set<MObject> nested = includedTypes.get(type);
+		if(nested == null){
+			nested = materialized ? new LinkedHashSet<MObject>() : reachable(type, includes, false);
+			includedTypes.put(type, nested);
+		}
+		return nested;
+	}
+
+	/**
+	 * @param type
+	 * 			The Type meta-object
+	 * @return The subclasses and implementors of the type
+	 */
+	public Set<MObject> children(MObject type){
+		return union(get(subclasses, type), get(implementors, type));
+	}
+
+	/**
+	 * @param type
+	 * 			The Type meta-object
+	 * @return The fields and methods of the type
+	 */
+	public Set<MObject> definedFeatures(MObject type){
+		return union(get(fields, type), get(methods, type));
+	}
+
+	/**
+	 * @param type
+	 * 			The Type meta-object
+	 * @return The visible features of the direct supertypes, and the features of the
+	 * 			enclosing types as the OCL definition collects them
+	 */
+	public Set<MObject> directlyInheritedFeatures(MObject type){
+		Set<MObject> features = directlyInherited.get(type);
+		if(features == null){
+			List<MObject> supertypes = new ArrayList<MObject>(get(interfaces, type));
+			if(superclass.get(type) != null)
+				supertypes.add(superclass.get(type));
+			features = visibleFeatures(type, supertypes);
+
+			List<MObject> enclosing = new ArrayList<MObject>();
+			enclosing.add(includedIn.get(type));
+			enclosing.add(includedIn.get(superclass.get(type)));
+			for(MObject nested: get(includes, type))
+				enclosing.add(includedIn.get(nested));
+			addFeatures(features, enclosing);
+			directlyInherited.put(type, features);
+		}
+		return features;
+	}
+
+	/**
+	 * @param type
+	 * 			The Type meta-object
+	 * @return The visible features of all supertypes, and the features of their
+	 * 			enclosing types
+	 */
+	public Set<MObject> allInheritedFeatures(MObject type){
+		Set<MObject> features = allInherited.get(type);
+		if(features == null){
+			Set<MObject> supertypes = union(interfaceTree(type), inheritanceTree(type));
+			features = visibleFeatures(type, supertypes);
+			List<MObject> enclosing = new ArrayList<MObject>();
+			for(MObject supertype: supertypes)
+				enclosing.add(includedIn.get(supertype));
+			addFeatures(features, enclosing);
+			allInherited.put(type, features);
+		}
+		return features;
+	}
+
+	// directlyInherited{Operations,Attributes}->union(allInheritedFeatures()->select(...))
+	private Set<MObject> allInheritedMembers(MObject type, boolean methods){
+		return union(select(directlyInheritedFeatures(type), methods), select(allInheritedFeatures(type), methods));
+	}
+
+	// The features of the supertypes that are neither private nor package private in another package
+	private Set<MObject> visibleFeatures(MObject type, Collection<MObject> supertypes){
+		MObject typePackage = packageOf(type);
+		Set<MObject> features = new LinkedHashSet<MObject>();
+		for(MObject supertype: supertypes)
+			for(MObject feature: definedFeatures(supertype)){
+				Value visibility = feature.state(state).attributeValue(allMethods.contains(feature)
+						? registry.methodAttributes.visibility : registry.fieldAttributes.visibility);
+				if(registry.visibilityPrivate.equals(visibility))
+					continue;
+				if(registry.visibilityDefault.equals(visibility) && !equal(packageOf(memberType.get(feature)), typePackage))
+					continue;
+				features.add(feature);
+			}
+		return features;
+	}
+
+	private void addFeatures(Set<MObject> features, Collection<MObject> types){
+		for(MObject type: types)
+			if(type != null)
+				features.addAll(definedFeatures(type));
+	}
+
+	private MObject packageOf(MObject type){
+		MObject root = type == null ? null : typeRoot.get(type);
+		return root == null ? null : packageFragment.get(root);
+	}
+
+	private Set<MObject> select(Set<MObject> features, boolean methods){
+		Set<MObject> selected = new LinkedHashSet<MObject>();
+		for(MObject feature: features)
+			if(allMethods.contains(feature) == methods)
+				selected.add(feature);
+		return selected;
+	}
+
+	// Breadth-first closure over the given links, safe for cyclic links
+	private static Set<MObject> reachable(MObject start, HashMap<MObject, List<MObject>> links, boolean includeStart){
+		Set<MObject> reached = new LinkedHashSet<MObject>();
+		ArrayDeque<MObject> pending = new ArrayDeque<MObject>();
+		if(includeStart)
+			reached.add(start);
+		pending.add(start);
+		while(!pending.isEmpty())
+			for(MObject next: get(links, pending.poll()))
+				if(next != start && reached.add(next))
+					pending.add(next);
+		return reached;
+	}
+
+	private static Set<MObject> objects(CollectionValue collection){
+		Set<MObject> objects = new HashSet<MObject>();
+		for(Value element: collection)
+			if(element instanceof ObjectValue)
+				objects.add(((ObjectValue)element).value());
+		return objects;
+	}
+
+	private static Set<MObject> union(Collection<MObject> a, Collection<MObject> b){
+		Set<MObject> result = new LinkedHashSet<MObject>(a);
+		result.addAll(b);
+		return result;
+	}
+
+	private static Set<MObject> difference(Set<MObject> a, Set<MObject> b){
+		Set<MObject> result = new LinkedHashSet<MObject>(a);
+		result.removeAll(b);
+		return result;
+	}
+
+	private static Set<MObject> intersection(Set<MObject> a, Set<MObject> b){
+		Set<MObject> result = new LinkedHashSet<MObject>(a);
+		result.retainAll(b);
+		return result;
+	}
+
+	private static boolean equal(Object a, Object b){
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private static List<MObject> get(HashMap<MObject, List<MObject>> links, MObject object){
+		List<MObject> linked = links.get(object);
+		return linked == null ? Collections.<MObject>emptyList() : linked;
+	}
+
+	private static void addClosure(HashMap<MObject, Set<MObject>> closures, MObject type, MObject member){
+		Set<MObject> closure = closures.get(type);
+		if(closure == null){
+			closure = new LinkedHashSet<MObject>();
+			closures.put(type, closure);
+		}
+		closure.add(member);
+	}
+
+	private static void add(HashMap<MObject, List<MObject>> links, MObject from, MObject to){
+		List<MObject> linked = links.get(from);
+		if(linked == null){
+			linked = new ArrayList<MObject>();
+			links.put(from, linked);
+		}
+		linked.add(to);
+	}
+}
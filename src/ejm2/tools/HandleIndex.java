@@ -0,0 +1,81 @@
+package ejm2.tools;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.tzi.use.uml.sys.MObject;
+
+/**
+ * Index from Java element handle identifiers to the meta-objects created for them,
+ * with one map per metaclass (e.g. "Type", "Method", "Field").
+ * <br>
+ * The index is filled by the loader classes as meta-objects are created, so that
+ * later references can be resolved with the raw handle identifier, instead of
+ * rebuilding the meta-object name and asking USE for it. Clients outside the
+ * loader can only read it.
+ */
+public class HandleIndex {
+
+	private final HashMap<String, HashMap<String, MObject>> index = new HashMap<String, HashMap<String, MObject>>();
+
+	/**
+	 * Registers a meta-object under the handle identifier of its Java element.
+	 *
+	 * @param metaclass
+	 * 			The name of the meta-object's metaclass
+	 * @param handleIdentifier
+	 * 			The Java element handle identifier
+	 * @param object
+	 * 			The meta-object
+	 */
+	void put(String metaclass, String handleIdentifier, MObject object){
+		HashMap<String, MObject> objects = index.get(metaclass);
+		if(objects == null){
+			objects = new HashMap<String, MObject>();
+			index.put(metaclass, objects);
+		}
+		objects.put(handleIdentifier, object);
+	}
+
+	/**
+	 * Removes all entries that refer to the given meta-objects.
+	 *
+	 * @param objects
+	 * 			The meta-objects to remove
+	 */
+	void removeAll(Collection<MObject> objects){
+		for(HashMap<String, MObject> metaclassObjects: index.values())
+			metaclassObjects.values().removeAll(objects);
+	}
+
+	/**
+	 * Returns the meta-object of the given metaclass created for a Java element.
+	 *
+	 * @param metaclass
+	 * 			The name of the metaclass
+	 * @param handleIdentifier
+	 * 			The Java element handle identifier
+	 * @return The corresponding MObject, null if none was created
+	 */
+	public MObject get(String metaclass, String handleIdentifier){
+		HashMap<String, MObject> objects = index.get(metaclass);
+		return objects == null ? null : objects.get(handleIdentifier);
+	}
+
+	/**
+	 * Returns a read-only view of all meta-objects of a metaclass, keyed by handle
+	 * identifier.
+	 *
+	 * @param metaclass
+	 * 			The name of the metaclass
+	 * @return The meta-objects of the given metaclass
+	 */
+	public Map<String, MObject> getAll(String metaclass){
+		HashMap<String, MObject> objects = index.get(metaclass);
+		if(objects == null)
+			return Collections.emptyMap();
+		return Collections.unmodifiableMap(objects);
+	}
+}
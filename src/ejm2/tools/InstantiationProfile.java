@@ -0,0 +1,85 @@
+package ejm2.tools;
+
+/**
+ * Granularity of an EJMM instantiation. Each profile switches loader stages on or
+ * off, so that clients that only need type- and member-level information do not pay
+ * for comments, statements and local variables.
+ * <br>
+ * All profiles create the project structure (package fragment roots, package
+ * fragments, type roots), types with their type parameters, inheritance and nesting,
+ * and fields with their types, since the EJMM requires every Field to have a
+ * fieldType. The other stages are:
+ * <ul>
+ * <li>signatures: method parameters, return types and thrown exceptions</li>
+ * <li>annotations: Annotation and AnnotationValue meta-objects</li>
+ * <li>comments: Comment meta-objects</li>
+ * <li>statements: Initializers, method and initializer bodies, local variables and
+ * statement dependencies. Initializers are only created with their statements,
+ * since the EJMM requires each of them to have a body.</li>
+ * </ul>
+ * With deferred bodies, method bodies are not inspected while loading: each method
+ * is recorded with its source range and its statements are instantiated the first
+ * time they are needed (see {@link JM2Loader#instantiateBodiesFor(String)}).
+ */
+public enum InstantiationProfile {
+
+	STRUCTURAL("Structural only", false, false, false, false, false),
+	MEMBERS_AND_SIGNATURES("Members and signatures", true, true, false, false, false),
+	FULL_AST("Full AST", true, true, true, true, false),
+	FULL_AST_DEFERRED_BODIES("Full AST, method bodies on demand", true, true, true, true, true);
+
+	private final String label;
+	private final boolean signatures;
+	private final boolean annotations;
+	private final boolean comments;
+	private final boolean statements;
+	private final boolean deferredBodies;
+
+	private InstantiationProfile(String label, boolean signatures, boolean annotations, boolean comments, boolean statements,
+			boolean deferredBodies){
+		this.label = label;
+		this.signatures = signatures;
+		this.annotations = annotations;
+		this.comments = comments;
+		this.statements = statements;
+		this.deferredBodies = deferredBodies;
+	}
+
+	/**
+	 * @return The name of the profile shown to users
+	 */
+	public String getLabel(){
+		return label;
+	}
+
+	public boolean includesSignatures(){
+		return signatures;
+	}
+
+	public boolean includesAnnotations(){
+		return annotations;
+	}
+
+	public boolean includesComments(){
+		return comments;
+	}
+
+	public boolean includesStatements(){
+		return statements;
+	}
+
+	/**
+	 * @return true if method bodies are only instantiated on demand
+	 */
+	public boolean defersBodies(){
+		return deferredBodies;
+	}
+
+	/**
+	 * @return true if the profile needs the compilation unit ASTs (for comments or
+	 * 			statements)
+	 */
+	public boolean needsAST(){
+		return comments || statements;
+	}
+}
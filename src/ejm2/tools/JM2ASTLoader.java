@@ -1,8 +1,10 @@
 package ejm2.tools;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
@@ -10,17 +12,22 @@ import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.BlockComment;
 import org.eclipse.jdt.core.dom.Comment;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.Initializer;
 import org.eclipse.jdt.core.dom.Javadoc;
 import org.eclipse.jdt.core.dom.LineComment;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.NodeFinder;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 import org.quasar.juse.api.JUSE_ProgramingFacade;
 import org.tzi.use.uml.ocl.value.IntegerValue;
 import org.tzi.use.uml.sys.MObject;
 
+import ejm2.tools.PendingBodies.PendingBody;
+
 /**
  * Class responsible for analyzing ASTs to further instantiate the EJMM. One JM2ASTLoader
  * object is meant to be created for each compilation unit to analyze.
@@ -28,32 +35,54 @@ import org.tzi.use.uml.sys.MObject;
  * <br>
  * 
  * Contains methods to scan a compilation unit for comments, methods and initializers.
+ * ASTs are usually created in batch by the loader (see {@link #newParser()}), so that
+ * bindings are shared between compilation units, and then handed to 
+ * {@link #processAST(CompilationUnit)}.
  * 
  * @author Pedro Coimbra
  *
  */
 public class JM2ASTLoader {
 
+	private JM2Loader loader;
 	private JUSE_ProgramingFacade api;
+	private MetamodelRegistry registry;
+	private InstantiationProfile profile;
+	private PendingBodies pendingBodies;
+	private String compilationUnitHandle;
 	// private StatementInspector inspector;
-	private ASTParser parser;
 	private MObject compUnitMObject;
 	
 	/**
 	 * Constructor for JM2ASTLoader. Each object of this class is meant to analyze only
 	 * one compilation unit.
 	 * 
-	 * @param api
-	 * 			The JUSE_ProgramingFacade for the current USE session
+	 * @param loader
+	 * 			The loader session of the instantiation
 	 * @param compUnitMObject
 	 * 			The CompilationUnit MObject corresponding to the compilation unit to analyze.
 	 */
-	public JM2ASTLoader(JUSE_ProgramingFacade api, MObject compUnitMObject) {
-		this.api = api;
-		parser = ASTParser.newParser(AST.JLS4);
+	public JM2ASTLoader(JM2Loader loader, MObject compUnitMObject) {
+		this.loader = loader;
+		this.api = loader.getFacade();
+		this.registry = loader.getRegistry();
+		this.profile = loader.getLoadedProfile();
+		this.pendingBodies = loader.getPendingBodies();
+		this.compUnitMObject = compUnitMObject;
+	}
+	
+	/**
+	 * Creates an ASTParser configured for compilation units with resolved bindings.
+	 * The same parser can create the ASTs of several compilation units at once through
+	 * ASTParser.createASTs.
+	 * 
+	 * @return The new parser
+	 */
+	public static ASTParser newParser() {
+		ASTParser parser = ASTParser.newParser(AST.JLS4);
 		parser.setKind(ASTParser.K_COMPILATION_UNIT);
 		parser.setResolveBindings(true);
-		this.compUnitMObject = compUnitMObject;
+		return parser;
 	}
 	
 	/**
@@ -63,10 +92,68 @@ public class JM2ASTLoader {
 	 * 			The compilation unit from which to create the AST
 	 */
 	public void processAST(ICompilationUnit source) {
+		ASTParser parser = newParser();
 		parser.setSource(source);
-		ASTNode ast_instance = parser.createAST(null);
-		JM2Visitor visitor = new JM2Visitor(source);
-		ast_instance.accept(visitor);
+		processAST((CompilationUnit)parser.createAST(null));
+	}
+	
+	/**
+	 * Analyzes an AST that was already created, with resolved bindings.
+	 * 
+	 * @param ast
+	 * 			The AST of the compilation unit to analyze
+	 */
+	public void processAST(CompilationUnit ast) {
+		compilationUnitHandle = ast.getJavaElement().getHandleIdentifier();
+		JM2Visitor visitor = new JM2Visitor();
+		ast.accept(visitor);
+	}
+	
+	/**
+	 * Instantiates method bodies that were deferred while the AST of the compilation
+	 * unit was first analyzed. Each method declaration is found again by its source
+	 * range; a range that no longer matches its method (the compilation unit changed
+	 * without an incremental update) is skipped.
+	 * 
+	 * @param ast
+	 * 			A new AST of the compilation unit, with resolved bindings
+	 * @param bodies
+	 * 			The pending bodies of the compilation unit
+	 * @return The number of instantiated bodies
+	 */
+	int processPendingBodies(CompilationUnit ast, List<PendingBody> bodies) {
+		int count = 0;
+		for(PendingBody pendingBody: bodies){
+			ASTNode node = NodeFinder.perform(ast, pendingBody.startPosition, pendingBody.length);
+			while(node != null && node.getNodeType() != ASTNode.METHOD_DECLARATION)
+				node = node.getParent();
+			IMethodBinding binding = node == null ? null : ((MethodDeclaration)node).resolveBinding();
+			if(binding == null || binding.getJavaElement() == null
+					|| !binding.getJavaElement().getHandleIdentifier().equals(pendingBody.methodHandle)){
+				System.out.println("Out of date source range for " + pendingBody.methodHandle);
+				continue;
+			}
+			processMethodBody((MethodDeclaration)node);
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Creates the Block meta-object of a method body and inspects its statements.
+	 * 
+	 * @param node
+	 * 			The method declaration
+	 */
+	private void processMethodBody(MethodDeclaration node) {
+		MObject methodMObject = loader.getHandleIndex().get("Method", node.resolveBinding().getJavaElement().getHandleIdentifier());
+		Block body = node.getBody();
+		if(body != null){
+			StatementInspector inspector = new StatementInspector(loader, methodMObject, true);
+			MObject bodyMObject = inspector.createStatementObject(body);
+			api.createLink(registry.aMethodBlock, Arrays.asList(methodMObject, bodyMObject));
+			inspector.inspectStatement(body, bodyMObject);
+		}
 	}
 
 	/**
@@ -80,21 +167,22 @@ public class JM2ASTLoader {
 		
 		private int initializer_count, initializer_start_pos;
 		
-		public JM2Visitor(ICompilationUnit compilationUnit){
+		public JM2Visitor(){
 			initializer_count = 0;
 			initializer_start_pos = 0;
 		}
 			
 		@Override
 		public boolean visit(MethodDeclaration node){
-			MObject methodMObject = api.objectByName(JM2Loader.METHOD_IDENTIFIER + JM2Loader.processName((node.resolveBinding().getJavaElement().getHandleIdentifier())));		
-			Block body = node.getBody();
-			if(body != null){
-				StatementInspector inspector = new StatementInspector(api, methodMObject, true);
-				MObject bodyMObject = inspector.createStatementObject(body);
-				api.createLink(api.associationByName("A_Method_Block"), Arrays.asList(methodMObject, bodyMObject));
-				inspector.inspectStatement(body, bodyMObject);
-			}
+			if(!profile.includesStatements())
+				return false;
+			if(pendingBodies != null){
+				// Only the location of the body is recorded, see JM2Loader#instantiateBodiesFor
+				if(node.getBody() != null)
+					pendingBodies.add(compilationUnitHandle, node.resolveBinding().getJavaElement().getHandleIdentifier(),
+							node.getStartPosition(), node.getLength());
+			}else
+				processMethodBody(node);
 			if(node.resolveBinding() == null)
 				System.out.println(node.getName());
 			return false;
@@ -102,28 +190,28 @@ public class JM2ASTLoader {
 		
 		@Override
 		public boolean visit(Initializer node){
-			if(node.getStartPosition()>initializer_start_pos){
+			if(profile.includesStatements() && node.getStartPosition()>initializer_start_pos){
 				initializer_start_pos = node.getStartPosition();
 				initializer_count++;
 				Block body = node.getBody();
 				
-				// Trying to find the Initializer MObject name.
-				String initializerName = "";
+				// Trying to find the Initializer MObject from its declaring type.
+				IType declaringType = null;
 				if(node.getParent() instanceof EnumDeclaration)
-					initializerName = JM2Loader.processName(((EnumDeclaration)node.getParent()).resolveBinding().getJavaElement().getHandleIdentifier())+"_Initializer"+initializer_count;
+					declaringType = (IType)((EnumDeclaration)node.getParent()).resolveBinding().getJavaElement();
 				else 
-					initializerName = JM2Loader.processName(((TypeDeclaration)node.getParent()).resolveBinding().getJavaElement().getHandleIdentifier())+"_Initializer"+initializer_count;
-				assert !initializerName.equals("");
+					declaringType = (IType)((TypeDeclaration)node.getParent()).resolveBinding().getJavaElement();
+				assert declaringType != null;
 				
-				MObject initializerMObject = api.objectByName(initializerName);
+				MObject initializerMObject = loader.getHandleIndex().get("Initializer", declaringType.getInitializer(initializer_count).getHandleIdentifier());
 				
-				StatementInspector inspector = new StatementInspector(api, initializerMObject, false);
+				StatementInspector inspector = new StatementInspector(loader, initializerMObject, false);
 				
 				MObject bodyMObject = inspector.createStatementObject(body);
 				
 				
 				if(initializerMObject != null)
-					api.createLink(api.associationByName("A_Initializer_Block"), Arrays.asList(initializerMObject, bodyMObject));
+					api.createLink(registry.aInitializerBlock, Arrays.asList(initializerMObject, bodyMObject));
 
 				inspector.inspectStatement(body, bodyMObject);
 			}
@@ -133,19 +221,22 @@ public class JM2ASTLoader {
 		
 		@Override
 		public boolean visit(LineComment node){
-			createCommentObject(node);
+			if(profile.includesComments())
+				createCommentObject(node);
 			return false;
 		}
 		
 		@Override
 		public boolean visit(BlockComment node){
-			createCommentObject(node);
+			if(profile.includesComments())
+				createCommentObject(node);
 			return false;
 		}
 		
 		@Override
 		public boolean visit(Javadoc node){
-			createCommentObject(node);
+			if(profile.includesComments())
+				createCommentObject(node);
 			return false;
 		}
 	}
@@ -159,9 +250,9 @@ public class JM2ASTLoader {
 	 */
 	private MObject createCommentObject(Comment node){
 		MObject commentMObject = api.createObject(null, node.getClass().getSimpleName());
-		api.setObjectAttribute(commentMObject, api.attributeByName(commentMObject, "startPosition"), IntegerValue.valueOf(node.getStartPosition()));
-		api.setObjectAttribute(commentMObject, api.attributeByName(commentMObject, "length"), IntegerValue.valueOf(node.getLength()));
-		api.createLink(api.associationByName("A_CompilationUnit_Comment"), Arrays.asList(compUnitMObject, commentMObject));
+		api.setObjectAttribute(commentMObject, registry.startPosition, IntegerValue.valueOf(node.getStartPosition()));
+		api.setObjectAttribute(commentMObject, registry.length, IntegerValue.valueOf(node.getLength()));
+		api.createLink(registry.aCompilationUnitComment, Arrays.asList(compUnitMObject, commentMObject));
 		return commentMObject;
 	}
 	
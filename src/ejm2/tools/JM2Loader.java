@@ -1,15 +1,35 @@
 package ejm2.tools;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import org.eclipse.jdt.core.Flags;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.IAnnotation;
 import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.core.IElementChangedListener;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IField;
-import org.eclipse.jdt.core.IInitializer;
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.ILocalVariable;
 import org.eclipse.jdt.core.IMember;
@@ -20,23 +40,41 @@ import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.ITypeParameter;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import org.quasar.juse.api.JUSE_ProgramingFacade;
-import org.quasar.juse.api.implementation.ProgramingFacade;
 
+import org.tzi.use.uml.mm.MAssociation;
 import org.tzi.use.uml.ocl.value.BooleanValue;
-import org.tzi.use.uml.ocl.value.EnumValue;
 import org.tzi.use.uml.ocl.value.IntegerValue;
 import org.tzi.use.uml.ocl.value.StringValue;
-import org.tzi.use.uml.ocl.value.ObjectValue;
 import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MLink;
 import org.tzi.use.uml.sys.MObject;
 import org.tzi.use.uml.sys.MSystem;
 
+import ejm2.tools.PackageFragmentInfo.InitializerInfo;
+import ejm2.tools.PackageFragmentInfo.MemberInfo;
+import ejm2.tools.PackageFragmentInfo.TypeInfo;
+import ejm2.tools.PackageFragmentInfo.TypeRootInfo;
+import ejm2.tools.PendingBodies.PendingBody;
+
 /**
  * Class responsible for creating full EJMM instances.
+ * <br>
+ * Each JM2Loader object is a loader session, with its own USE session, settings and
+ * indexes, holding at most one instantiation at a time. Loading another project
+ * with the same session replaces its instantiation; several projects can be
+ * instantiated concurrently, each on its own thread, with separate sessions.
+ * The methods that read or change the instantiation of a session, including
+ * evaluateQuery, are synchronized on the session, so a session can be queried and
+ * updated from other threads without a query ever seeing a partial update. The
+ * settings of the next instantiation can be changed at any time.
  * 
  * @author Pedro Coimbra
  *
@@ -49,31 +87,113 @@ public class JM2Loader {
 	 *  secondXProcess (e.g. secondTypeProcess)
 	 */
 	
-	private static MSystem system;
+	private MSystem system;
 	
 	/**
 	 * Used to store all class files for the second instantiation phase.
 	 */
-	private static HashSet<IClassFile> allClassFiles;
+	private HashSet<IClassFile> allClassFiles;
 	
 	/**
 	 * Used to store all compilation units for the second instantiation phase.
 	 */
-	private static HashSet<ICompilationUnit> allCompilationUnits;
+	private HashSet<ICompilationUnit> allCompilationUnits;
 	
 	/**
 	 * Used to store all Type MObjects for easier retrieval.
 	 */
-	private static HashMap<String, MObject> allTypeObjects;
+	private HashMap<String, MObject> allTypeObjects;
+	
+	/**
+	 * Used to name meta-objects that have no natural identifier, such as statements.
+	 */
+	private ObjectNameAllocator nameAllocator;
+	
+	/**
+	 * Used to retrieve meta-objects from their Java element handle identifiers.
+	 */
+	private HandleIndex handleIndex;
+	
+	/**
+	 * Used to retrieve Field meta-objects from their declaring Type and name.
+	 */
+	private FieldIndex fieldIndex;
+	
+	/**
+	 * Used to store the primitive and String Type MObjects, keyed by type name.
+	 */
+	private HashMap<String, MObject> basicTypeObjects;
+	
+	/**
+	 * Used to resolve type signatures and type bindings to Type MObjects.
+	 */
+	private TypeResolver typeResolver;
+	
+	/**
+	 * Used to retrieve Method and Field MObjects from the key of their declaration
+	 * binding. A null value means the binding has no Java element.
+	 */
+	private HashMap<String, MObject> memberBindings;
+	
+	/**
+	 * The ClassFile MObject that contains all external types.
+	 */
+	private MObject externalTypesClassFileMObject;
+	
+	/**
+	 * The Java project of the current instantiation.
+	 */
+	private IJavaProject loadedProject;
 
-	private static JUSE_ProgramingFacade api = new ProgramingFacade();
-	private static String useDirectory; // = "C:\\Users\\Pedro\\Desktop\\MIG\\eclipse\\workspace\\use-3.0.6"; // TODO Need relative path
-	private static String modelDirectory; // = "C:\\Users\\Pedro\\Desktop\\MIG\\eclipse\\workspace\\EJM2Metrics\\metamodel"; // TODO Need relative path
-	private static String modelFile; // = "JavaMMv3_FLAME.use";
-	private static final String ARRAY_PARAMETER_IDENTIFIER = "ARRAY_PARAM";
+	private LoaderFacade api = new LoaderFacade();
+	
+	// Metaclass attributes, associations and enumeration literals of the compiled EJMM
+	private MetamodelRegistry registry;
+	private PendingBodies pendingBodies;
+	private StatementVocabulary statementVocabulary;
+	
+	// Results of the OCL queries evaluated through evaluateQuery
+	private final QueryCache queryCache = new QueryCache(256, 64L*1024*1024);
+	private String useDirectory; // = "C:\\Users\\Pedro\\Desktop\\MIG\\eclipse\\workspace\\use-3.0.6"; // TODO Need relative path
+	private String modelDirectory; // = "C:\\Users\\Pedro\\Desktop\\MIG\\eclipse\\workspace\\EJM2Metrics\\metamodel"; // TODO Need relative path
+	private String modelFile; // = "JavaMMv3_FLAME.use";
+	private final NameSanitizer nameSanitizer = new NameSanitizer();
 	static final String METHOD_IDENTIFIER = "METHOD_";
 	static final String FIELD_IDENTIFIER = "FIELD_";
 	
+	// Settings of the next instantiation, read once when it starts so that they can be
+	// changed without waiting for the session
+	private volatile boolean parallelFirstPhase = false;
+	private volatile boolean incrementalUpdates = false;
+	private volatile InstantiationProfile profile = InstantiationProfile.FULL_AST;
+	private volatile File soilExportFile;
+	
+	/**
+	 * Profile of the current instantiation, kept for incremental updates even if
+	 * the profile of the next instantiation is changed.
+	 */
+	private InstantiationProfile loadedProfile = InstantiationProfile.FULL_AST;
+	
+	/**
+	 * The Type closure links materialized by this session for the current
+	 * instantiation, null if they were not materialized.
+	 */
+	private TypeClosures typeClosures;
+	
+	/**
+	 * Updates the current instantiation when compilation units of the loaded project
+	 * are added, saved or removed.
+	 */
+	private final IElementChangedListener compilationUnitListener = new IElementChangedListener() {
+		@Override
+		public void elementChanged(ElementChangedEvent event) {
+			HashSet<ICompilationUnit> compilationUnits = new HashSet<ICompilationUnit>();
+			collectChangedCompilationUnits(event.getDelta(), compilationUnits);
+			if(!compilationUnits.isEmpty())
+				updateCompilationUnits(compilationUnits);
+		}
+	};
+	
 	
 	/**
 	 * Sets the USE tool installation folder.
@@ -81,7 +201,7 @@ public class JM2Loader {
 	 * @param directory
      *			the absolute path of the USE installation folder
 	 */
-	public static void setUseDirectory(String directory){
+	public void setUseDirectory(String directory){
 		useDirectory = directory;
 	}
 	
@@ -91,7 +211,7 @@ public class JM2Loader {
 	 * @param directory
      *			path of the folder that contains the EJMM
 	 */
-	public static void setModelDirectory(String directory){
+	public void setModelDirectory(String directory){
 		modelDirectory = directory;
 	}
 	
@@ -100,7 +220,7 @@ public class JM2Loader {
 	 * @param fileName
 	 * 			the file name
 	 */
-	public static void setModelFile(String fileName){
+	public void setModelFile(String fileName){
 		modelFile = fileName;
 	}
 	
@@ -111,59 +231,159 @@ public class JM2Loader {
 	 * 			The Java project to analyze
 	 * @return The JUSE_ProgramingFacade with a USE session with the EJMM instantiation
 	 */
-	public static JUSE_ProgramingFacade loadEJMMfromProject(IJavaProject javaProject){		
+	public JUSE_ProgramingFacade loadEJMMfromProject(IJavaProject javaProject){
+		return loadEJMMfromProject(javaProject, new NullProgressMonitor());
+	}
+	
+	/**
+	 * Initiates a full EJMM instantiation procedure for the given Java project,
+	 * reporting work per package fragment in the first phase and per compilation unit
+	 * in the second phase.
+	 * <br>
+	 * Cancellation is checked between package fragments and between compilation
+	 * units. When the monitor is canceled, the partial instantiation is discarded,
+	 * leaving the session without an instantiation, and an OperationCanceledException
+	 * is thrown. The partial instantiation is also discarded if a phase fails with
+	 * any other RuntimeException, which is then rethrown.
+	 * 
+	 * @param javaProject
+	 * 			The Java project to analyze
+	 * @param monitor
+	 * 			The progress monitor, null if progress is not reported
+	 * @return The JUSE_ProgramingFacade with a USE session with the EJMM instantiation
+	 * @throws OperationCanceledException
+	 * 			If the monitor was canceled
+	 * @throws RuntimeException
+	 * 			If the instantiation failed
+	 */
+	public synchronized JUSE_ProgramingFacade loadEJMMfromProject(IJavaProject javaProject, IProgressMonitor monitor){
+		SubMonitor progress = SubMonitor.convert(monitor, "Instantiating " + javaProject.getElementName(), 100);
+		try {
+			return loadEJMMfromProject(javaProject, progress);
+		} catch (OperationCanceledException e) {
+			discardInstantiation();
+			System.out.println("Instantiation of " + javaProject.getElementName() + " canceled");
+			throw e;
+		} catch (RuntimeException e) {
+			discardInstantiation();
+			System.out.println("Instantiation of " + javaProject.getElementName() + " failed");
+			throw e;
+		} finally {
+			if(monitor != null)
+				monitor.done();
+		}
+	}
+	
+	private JUSE_ProgramingFacade loadEJMMfromProject(IJavaProject javaProject, SubMonitor progress){
 		System.out.println("----------------------\n"+"Starting JM2Loader process\n"+"----------------------");
 		
 		
 		long startTime = System.nanoTime();
+		boolean incremental = incrementalUpdates;
+		File soilFile = soilExportFile;
 		
 		allClassFiles = new HashSet<IClassFile>();
 		allCompilationUnits= new HashSet<ICompilationUnit>();
 		allTypeObjects = new HashMap<String, MObject>();
+		nameAllocator = new ObjectNameAllocator();
+		nameSanitizer.clear();
+		handleIndex = new HandleIndex();
+		fieldIndex = new FieldIndex();
+		basicTypeObjects = new HashMap<String, MObject>();
+		typeResolver = new TypeResolver(this, api, handleIndex, allTypeObjects, basicTypeObjects);
+		memberBindings = new HashMap<String, MObject>();
+		loadedProject = javaProject;
+		loadedProfile = profile;
+		JavaCore.removeElementChangedListener(compilationUnitListener);
+		api.clearOwnership();
+		api.setTracking(incremental);
 
 		// Initialize USE and load EJMM specification
+		progress.subTask("Compiling " + modelFile);
 		api.initialize(new String[0], useDirectory, modelDirectory);
 		system = api.compileSpecification(modelFile, false);
+		registry = new MetamodelRegistry(system.model());
+		typeClosures = null;
+		statementVocabulary = null;
+		// The SOIL export is closed at the end of the load, so it cannot include deferred bodies
+		pendingBodies = loadedProfile.defersBodies() && soilFile == null ? new PendingBodies() : null;
+		
+		SoilWriter soilWriter = null;
+		if(soilFile != null){
+			try {
+				soilWriter = new SoilWriter(soilFile);
+				api.setSoilWriter(soilWriter);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 		
 		// Create default objects
 		System.out.println("Creating default objects");
 		createDefaultObjects();
 
-		String processedName = (processName(javaProject.getElementName()));
+		String processedName = (sanitizeName(javaProject.getElementName()));
 		System.out.println("*****************************************\nProcessing project: " + javaProject.getElementName() + " -- " + processedName + "\nHandle identifier: " + javaProject.getHandleIdentifier()+"\n*****************************************");
 		
 		// Instantiate JavaProject
 		MObject javaProjectMObject = api.createObject(processedName, "JavaProject");
-		api.setObjectAttribute(javaProjectMObject, api.attributeByName(javaProjectMObject, "name"), new StringValue(javaProject.getElementName()));
-		api.setObjectAttribute(javaProjectMObject, api.attributeByName(javaProjectMObject, "handleIdentifier"), new StringValue(javaProject.getHandleIdentifier()));
+		api.setObjectAttribute(javaProjectMObject, registry.name, new StringValue(javaProject.getElementName()));
+		api.setObjectAttribute(javaProjectMObject, registry.handleIdentifier, new StringValue(javaProject.getHandleIdentifier()));
+
+		// Package fragments are read from the Java model by a worker pool in parallel mode,
+		// but their meta-objects are always created here, in traversal order.
+		ExecutorService readers = null;
+		if(parallelFirstPhase)
+			readers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 
 		// Process PackageFragmentRoots
 		try {
+			ArrayList<IPackageFragmentRoot> packageFragmentRoots = new ArrayList<IPackageFragmentRoot>();
+			HashMap<IPackageFragmentRoot, ArrayList<FutureTask<PackageFragmentInfo>>> packageFragmentReads = new HashMap<IPackageFragmentRoot, ArrayList<FutureTask<PackageFragmentInfo>>>();
 			for(IPackageFragmentRoot pfr: javaProject.getAllPackageFragmentRoots()){
 				if(!pfr.isExternal() && pfr.getJavaProject().equals(javaProject)){
-					String processedPFRName = processName(pfr.getResource().getName());
-					MObject pfrMObject = api.createObject(processedPFRName, "PackageFragmentRoot");
-					api.setObjectAttribute(pfrMObject, api.attributeByName(pfrMObject, "name"), new StringValue(pfr.getElementName()));
-					api.setObjectAttribute(pfrMObject, api.attributeByName(pfrMObject, "handleIdentifier"), new StringValue(pfr.getHandleIdentifier()));
-					api.createLink(api.associationByName("A_JavaProject_PackageFragmentRoot"), Arrays.asList(javaProjectMObject, pfrMObject));
-					
-					if(!pfr.isArchive())
-						api.setObjectAttribute(pfrMObject, api.attributeByName(pfrMObject, "packageFragmentRootType"), new EnumValue(api.enumByName("PackageFragmentRootType"), "Folder"));
-					else{
-						String extension = pfr.getPath().getFileExtension();
-						if(extension != null){
-							if(extension.equals("zip"))
-								api.setObjectAttribute(pfrMObject, api.attributeByName(pfrMObject, "packageFragmentRootType"), new EnumValue(api.enumByName("PackageFragmentRootType"), "Zip"));
-							else
-								if(extension.equals("jar"))
-									api.setObjectAttribute(pfrMObject, api.attributeByName(pfrMObject, "packageFragmentRootType"), new EnumValue(api.enumByName("PackageFragmentRootType"), "Jar"));
-						}
-					}
-							
-					// Process PackageFragments
+					ArrayList<FutureTask<PackageFragmentInfo>> reads = new ArrayList<FutureTask<PackageFragmentInfo>>();
 					for(IJavaElement packagefrag: pfr.getChildren()){
-						if(((IPackageFragment)packagefrag).containsJavaResources())
-							processPackageFragment((IPackageFragment)packagefrag,pfrMObject);
+						FutureTask<PackageFragmentInfo> read = newPackageFragmentRead((IPackageFragment)packagefrag);
+						if(readers != null)
+							readers.execute(read);
+						reads.add(read);
+					}
+					packageFragmentRoots.add(pfr);
+					packageFragmentReads.put(pfr, reads);
+				}
+			}
+			
+			SubMonitor firstPhase = progress.split(40).setWorkRemaining(Math.max(1, countReads(packageFragmentReads)));
+
+			for(IPackageFragmentRoot pfr: packageFragmentRoots){
+				String processedPFRName = sanitizeName(pfr.getResource().getName());
+				MObject pfrMObject = api.createObject(processedPFRName, "PackageFragmentRoot");
+				api.setObjectAttribute(pfrMObject, registry.name, new StringValue(pfr.getElementName()));
+				api.setObjectAttribute(pfrMObject, registry.handleIdentifier, new StringValue(pfr.getHandleIdentifier()));
+				api.createLink(registry.aJavaProjectPackageFragmentRoot, Arrays.asList(javaProjectMObject, pfrMObject));
+				handleIndex.put("PackageFragmentRoot", pfr.getHandleIdentifier(), pfrMObject);
+				
+				if(!pfr.isArchive())
+					api.setObjectAttribute(pfrMObject, registry.packageFragmentRootType, registry.packageFragmentRootFolder);
+				else{
+					String extension = pfr.getPath().getFileExtension();
+					if(extension != null){
+						if(extension.equals("zip"))
+							api.setObjectAttribute(pfrMObject, registry.packageFragmentRootType, registry.packageFragmentRootZip);
+						else
+							if(extension.equals("jar"))
+								api.setObjectAttribute(pfrMObject, registry.packageFragmentRootType, registry.packageFragmentRootJar);
+					}
+				}
+						
+				// Process PackageFragments
+				for(FutureTask<PackageFragmentInfo> read: packageFragmentReads.get(pfr)){
+					SubMonitor packageFragmentProgress = firstPhase.split(1);
+					PackageFragmentInfo packageFragmentInfo = awaitPackageFragmentRead(read, readers == null);
+					if(packageFragmentInfo != null){
+						packageFragmentProgress.subTask(packageFragmentInfo.packageFragment.getElementName());
+						processPackageFragment(packageFragmentInfo, pfrMObject);
 					}
 				}
 			}
@@ -173,13 +393,24 @@ public class JM2Loader {
 			for(IClassFile cf: allClassFiles){
 					secondClassFileProcess(cf);
 			}
-			for(ICompilationUnit c: allCompilationUnits){
-					secondCompilationUnitProcess(c);
-			}
+			secondCompilationUnitsProcess(allCompilationUnits, progress.split(60));
+			materializeTypeClosures();
 		} catch (JavaModelException e) {
 				e.printStackTrace();
+		} finally {
+			if(readers != null)
+				readers.shutdownNow();
+			if(soilWriter != null){
+				api.setSoilWriter(null);
+				try {
+					soilWriter.close();
+					System.out.println(soilWriter.getCommandCount() + " SOIL commands written to " + soilFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
 		}
-		
+
 
 		long endTime = System.nanoTime();
 		long duration = endTime - startTime;
@@ -187,21 +418,178 @@ public class JM2Loader {
 
 		System.out.println("\nTotal time of execution = " + durationInSeconds + " seconds. (" + duration + " nanoseconds).");
 		
+		if(incremental)
+			JavaCore.addElementChangedListener(compilationUnitListener, ElementChangedEvent.POST_CHANGE);
+		
 		api.command("info state");
 		
 		return api;
 	}
 	
 	
+	/**
+	 * Discards a partial instantiation, leaving the session as if no project had been
+	 * loaded. The USE session is kept, but is no longer returned by getSystem.
+	 */
+	private void discardInstantiation(){
+		JavaCore.removeElementChangedListener(compilationUnitListener);
+		api.clearOwnership();
+		api.setTracking(false);
+		system = null;
+		registry = null;
+		typeClosures = null;
+		loadedProject = null;
+		pendingBodies = null;
+		statementVocabulary = null;
+		allClassFiles = null;
+		allCompilationUnits = null;
+		allTypeObjects = null;
+		handleIndex = null;
+		fieldIndex = null;
+		basicTypeObjects = null;
+		typeResolver = null;
+		memberBindings = null;
+		externalTypesClassFileMObject = null;
+	}
+	
+	private static int countReads(HashMap<IPackageFragmentRoot, ArrayList<FutureTask<PackageFragmentInfo>>> packageFragmentReads){
+		int count = 0;
+		for(ArrayList<FutureTask<PackageFragmentInfo>> reads: packageFragmentReads.values())
+			count += reads.size();
+		return count;
+	}
+	
+	/**
+	 * Writes a binary snapshot of the current instantiation, together with hashes of
+	 * the EJMM specification and of the project sources it was created from, and its
+	 * instantiation profile.
+	 * 
+	 * @param snapshotFile
+	 * 			The file to write
+	 * @throws IOException
+	 * 			If the file cannot be written, or there is no instantiation to save
+	 * @throws CoreException
+	 * 			If the project sources cannot be read
+	 * @see EJMMSnapshot
+	 */
+	public synchronized void saveSnapshot(File snapshotFile) throws IOException, CoreException{
+		if(system == null || loadedProject == null)
+			throw new IOException("No EJMM instantiation to save");
+		instantiateAllBodies();
+		long startTime = System.nanoTime();
+		EJMMSnapshot.write(system, snapshotFile, EJMMSnapshot.hashFile(new File(modelDirectory, modelFile)), 
+				EJMMSnapshot.hashProject(loadedProject.getProject()), loadedProfile);
+		System.out.println("Snapshot written to " + snapshotFile + " in " + (System.nanoTime() - startTime)/1000000000d + " seconds.");
+	}
+	
+	/**
+	 * Recreates an EJMM instantiation from a snapshot written by 
+	 * {@link #saveSnapshot(File)}, without accessing the Java model. The snapshot is
+	 * rejected if the EJMM specification or the project sources changed since it was
+	 * written, or if it was written with another instantiation profile than the one
+	 * of this session.
+	 * <br>
+	 * The loader indexes are not rebuilt, so incremental updates are not available
+	 * for an instantiation loaded from a snapshot.
+	 * 
+	 * @param project
+	 * 			The project the snapshot was created from
+	 * @param snapshotFile
+	 * 			The snapshot file
+	 * @return The JUSE_ProgramingFacade with a USE session with the EJMM instantiation,
+	 * 			or null if the snapshot is out of date
+	 * @throws IOException
+	 * 			If the snapshot cannot be read, or was written with another profile
+	 * @throws CoreException
+	 * 			If the project sources cannot be read
+	 */
+	public synchronized JUSE_ProgramingFacade loadEJMMfromSnapshot(IProject project, File snapshotFile) throws IOException, CoreException{
+		long startTime = System.nanoTime();
+		
+		EJMMSnapshot snapshot = EJMMSnapshot.open(snapshotFile);
+		if(!snapshot.matches(EJMMSnapshot.hashFile(new File(modelDirectory, modelFile)), EJMMSnapshot.hashProject(project))){
+			System.out.println("Snapshot " + snapshotFile + " is out of date");
+			return null;
+		}
+		InstantiationProfile sessionProfile = profile;
+		if(snapshot.getProfile() != sessionProfile)
+			throw new IOException("Snapshot " + snapshotFile + " was written with the \"" + snapshot.getProfile().getLabel()
+					+ "\" profile, not with the \"" + sessionProfile.getLabel() + "\" profile of this session");
+		
+		allClassFiles = new HashSet<IClassFile>();
+		allCompilationUnits= new HashSet<ICompilationUnit>();
+		allTypeObjects = new HashMap<String, MObject>();
+		nameAllocator = new ObjectNameAllocator();
+		nameSanitizer.clear();
+		handleIndex = new HandleIndex();
+		fieldIndex = new FieldIndex();
+		basicTypeObjects = new HashMap<String, MObject>();
+		typeResolver = new TypeResolver(this, api, handleIndex, allTypeObjects, basicTypeObjects);
+		memberBindings = new HashMap<String, MObject>();
+		loadedProject = JavaCore.create(project);
+		loadedProfile = sessionProfile;
+		pendingBodies = null;
+		JavaCore.removeElementChangedListener(compilationUnitListener);
+		api.setTracking(false);
+		
+		api.initialize(new String[0], useDirectory, modelDirectory);
+		system = api.compileSpecification(modelFile, false);
+		registry = new MetamodelRegistry(system.model());
+		typeClosures = null;
+		int objectCount = snapshot.restore(api);
+		
+		System.out.println("Restored " + objectCount + " meta-objects from " + snapshotFile + " in " + (System.nanoTime() - startTime)/1000000000d + " seconds.");
+		return api;
+	}
+	
+	
+	/**
+	 * Getter for the J-USE facade of this session. Its USE session holds the
+	 * current instantiation.
+	 * 
+	 * @return The JUSE_ProgramingFacade of this session
+	 */
+	public JUSE_ProgramingFacade getFacade() {
+		return api;
+	}
+	
 	/**
 	 * Getter for the MSystem with the current USE session.
 	 * 
 	 * @return The current MSystem (system)
 	 */
-	public static MSystem getSystem() {
+	public MSystem getSystem() {
 		return system;
 	}
 
+	/**
+	 * Getter for the attribute, association and enumeration literal handles of the
+	 * EJMM compiled in the current USE session.
+	 * 
+	 * @return The current MetamodelRegistry (registry)
+	 */
+	public MetamodelRegistry getRegistry() {
+		return registry;
+	}
+	
+	/**
+	 * Checks whether this session materialized the Type closure links of the current
+	 * instantiation (see {@link TypeClosures}). Instantiations restored from a
+	 * snapshot, or replayed from SOIL, may lack them or hold stale ones.
+	 * 
+	 * @return true if the D/E/F_Type_Type links are complete
+	 */
+	public synchronized boolean hasTypeClosures() {
+		return typeClosures != null;
+	}
+	
+	/**
+	 * @return The method bodies still to instantiate, null if bodies are not deferred
+	 */
+	PendingBodies getPendingBodies() {
+		return pendingBodies;
+	}
+
 	
 	/**
 	 * Returns all Type meta-objects currently created. The same Meta-object might
@@ -209,11 +597,62 @@ public class JM2Loader {
 	 *
 	 * @return A map containing all Type MObjects
 	 */
-	public static HashMap<String, MObject> getAllTypeObjects() {
+	public HashMap<String, MObject> getAllTypeObjects() {
 		return allTypeObjects;
 	}
 
 	
+	/**
+	 * Returns the index of meta-objects by Java element handle identifier for the
+	 * current instantiation.
+	 *
+	 * @return The current HandleIndex
+	 */
+	public HandleIndex getHandleIndex() {
+		return handleIndex;
+	}
+
+	/**
+	 * Returns the index of Field meta-objects by declaring Type and field name for
+	 * the current instantiation.
+	 *
+	 * @return The current FieldIndex
+	 */
+	FieldIndex getFieldIndex() {
+		return fieldIndex;
+	}
+
+	/**
+	 * Returns the type resolver for the current instantiation.
+	 *
+	 * @return The current TypeResolver
+	 */
+	TypeResolver getTypeResolver() {
+		return typeResolver;
+	}
+
+	/**
+	 * Returns the Method and Field MObjects resolved so far, keyed by the key of
+	 * their declaration binding.
+	 *
+	 * @return A map containing the resolved Method and Field MObjects
+	 */
+	HashMap<String, MObject> getMemberBindings() {
+		return memberBindings;
+	}
+
+	
+	/**
+	 * Returns the name allocator for meta-objects without a natural identifier
+	 * (statements and catch clauses) of the current instantiation.
+	 *
+	 * @return The current ObjectNameAllocator
+	 */
+	public ObjectNameAllocator getNameAllocator() {
+		return nameAllocator;
+	}
+
+	
 	/**
 	 * Returns the same string excluding all non-alphanumeric and non-underscore
 	 * characters removed (in compliance of USE MObject naming rules). 
@@ -221,26 +660,29 @@ public class JM2Loader {
 	 * If the string contains the characters that make an array identifier 
 	 * in a handle identifier, it is replaced by the array parameter identifier 
 	 * constant (ARRAY_PARAMETER_IDENTIFIER = "ARRAY_PARAM").
+	 * <br>
+	 * This method does not cache its results; the loader sessions use sanitizeName,
+	 * which caches them per session.
 	 * 
 	 * @param name
 	 * 			The string to process
 	 * @return The parameter with all non-alphanumeric and non-underscore characters excluded.
 	 */
 	public static String processName(String name){
-		String acc = "";
-		for(int i = 0; i != name.length(); i++){
-			char c = name.charAt(i);
-			if(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'	|| c == '_')
-				acc+=c;
-			else
-				if(c == '$')
-					acc+='_';
-				else
-					if( c == '\\' && ((i + 1) < name.length()) && name.charAt(i+1) == '[')
-						acc+=ARRAY_PARAMETER_IDENTIFIER;
-		}
-			
-		return acc;
+		return NameSanitizer.compute(name);
+	}
+
+	/**
+	 * Same as processName, but cached by the NameSanitizer of this session, so repeated
+	 * calls with the same string do not allocate. The cache is cleared when the session
+	 * loads a new project or snapshot.
+	 * 
+	 * @param name
+	 * 			The string to process
+	 * @return The parameter with all non-alphanumeric and non-underscore characters excluded.
+	 */
+	public String sanitizeName(String name){
+		return nameSanitizer.sanitize(name);
 	}
 
 	
@@ -253,12 +695,47 @@ public class JM2Loader {
 	 * @param cf
 	 * 			The class file to process
 	 */
-	private static void secondClassFileProcess(IClassFile cf) {
+	private void secondClassFileProcess(IClassFile cf) {
 		IType t = cf.getType();
 		// TODO Fix second type process for class files (current problem: class/class file mixups)!
 		// secondTypeProcess(t);
 	}
 	
+	/**
+	 * Second instantiation phase for a set of compilation units. When the profile
+	 * needs them, all compilation unit ASTs are created in one batch, sharing the
+	 * same binding environment; otherwise no AST is created.
+	 * 
+	 * @param compilationUnits
+	 * 			The compilation units to process
+	 * @param monitor
+	 * 			The progress monitor, reporting one unit of work per compilation unit
+	 * @throws OperationCanceledException
+	 * 			If the monitor was canceled
+	 */
+	private void secondCompilationUnitsProcess(Collection<ICompilationUnit> compilationUnits, IProgressMonitor monitor) {
+		final SubMonitor progress = SubMonitor.convert(monitor, compilationUnits.size());
+		if(!loadedProfile.needsAST()){
+			for(ICompilationUnit c: compilationUnits){
+				progress.split(1).subTask(c.getElementName());
+				secondCompilationUnitProcess(c, null);
+			}
+			return;
+		}
+		ASTParser parser = JM2ASTLoader.newParser();
+		parser.setProject(loadedProject);
+		// The parser reports one unit of work per compilation unit and checks for cancellation
+		parser.createASTs(compilationUnits.toArray(new ICompilationUnit[0]), new String[0], new ASTRequestor() {
+			@Override
+			public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+				if(progress.isCanceled())
+					throw new OperationCanceledException();
+				progress.subTask(source.getElementName());
+				secondCompilationUnitProcess(source, ast);
+			}
+		}, progress);
+	}
+
 	/**
 	 * Initiates the second processing phase procedures for a compilation unit. 
 	 * First, processes the package declaration annotation. Then, processes types.
@@ -266,19 +743,65 @@ public class JM2Loader {
 	 * 
 	 * @param c
 	 * 			The compilation unit to process
+	 * @param ast
+	 * 			The AST of the compilation unit, with resolved bindings
 	 */
-	private static void secondCompilationUnitProcess(ICompilationUnit c) {
+	private void secondCompilationUnitProcess(ICompilationUnit c, CompilationUnit ast) {
+		String previousOwner = api.setOwner(c.getHandleIdentifier());
 		try {
-			MObject compUnitMObject = api.objectByName(processName(c.getHandleIdentifier()));
+			MObject compUnitMObject = handleIndex.get("CompilationUnit", c.getHandleIdentifier());
 			for(IPackageDeclaration pd: c.getPackageDeclarations())
 				processAnnotations(compUnitMObject, pd.getAnnotations());
 			for(IType t: c.getAllTypes()) 
 				secondTypeProcess(t);
-			JM2ASTLoader astLoader = new JM2ASTLoader(api, compUnitMObject);
-			// System.out.println(c.getElementName());
-			astLoader.processAST(c);
+			if(ast != null){
+				JM2ASTLoader astLoader = new JM2ASTLoader(this, compUnitMObject);
+				// System.out.println(c.getElementName());
+				astLoader.processAST(ast);
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			api.setOwner(previousOwner);
+		}
+	}
+
+	/**
+	 * Processes the signature of a method: its parameters, return type and thrown
+	 * exceptions.
+	 * <br>
+	 * This method is only meant to be used during the second instantiation phase.
+	 * 
+	 * @param m
+	 * 			The method to process
+	 * @param methodMObject
+	 * 			The corresponding Method meta-object
+	 * @throws JavaModelException
+	 */
+	private void processMethodSignature(IMethod m, MObject methodMObject) throws JavaModelException {
+		for(ILocalVariable p: m.getParameters()){
+			int arrayCount =  Signature.getArrayCount(p.getTypeSignature());
+			MObject parameterMObject = api.createObject(sanitizeName(p.getHandleIdentifier()), "LocalVariable");
+			api.setObjectAttribute(parameterMObject, registry.name, new StringValue(p.getElementName()));
+			api.setObjectAttribute(parameterMObject, registry.handleIdentifier, new StringValue(p.getHandleIdentifier()));
+			if(registry.localVariableArrayDimensions != null)
+				api.setObjectAttribute(parameterMObject, registry.localVariableArrayDimensions, IntegerValue.valueOf(arrayCount));
+			api.createLink(registry.bMethodLocalVariable, Arrays.asList(methodMObject, parameterMObject));
+			handleIndex.put("LocalVariable", p.getHandleIdentifier(), parameterMObject);
+			
+			MObject parameterType = getTypeObjectFromSignature(p.getTypeSignature());
+			api.createLink(registry.aLocalVariableType, Arrays.asList(parameterMObject, parameterType));
+		}
+		
+		MObject returnTypeMObject = getTypeObjectFromSignature(m.getReturnType());
+		int arrayCount =  Signature.getArrayCount(m.getReturnType());
+		if(registry.methodAttributes.returnTypeArrayDimensions != null)
+			api.setObjectAttribute(methodMObject, registry.methodAttributes.returnTypeArrayDimensions, IntegerValue.valueOf(arrayCount));
+		api.createLink(registry.aMethodType, Arrays.asList(methodMObject, returnTypeMObject));
+		
+		for(String exception: m.getExceptionTypes()){
+			MObject exceptionMObject = getTypeObjectFromSignature(exception);
+			api.createLink(registry.bMethodType, Arrays.asList(methodMObject, exceptionMObject));
 		}
 	}
 
@@ -293,35 +816,36 @@ public class JM2Loader {
 	 * 			The annotations to process
 	 * @throws JavaModelException
 	 */
-	private static void processAnnotations(MObject annotatableMObject, IAnnotation[] annotations) throws JavaModelException {
+	private void processAnnotations(MObject annotatableMObject, IAnnotation[] annotations) throws JavaModelException {
+		if(!loadedProfile.includesAnnotations())
+			return;
 		for(IAnnotation annotation: annotations){
-			MObject annotationMObject = api.createObject(processName(annotation.getHandleIdentifier()), "Annotation");
-			api.setObjectAttribute(annotationMObject, api.attributeByName(annotationMObject, "name"), new StringValue(annotation.getElementName()));
-			api.setObjectAttribute(annotationMObject, api.attributeByName(annotationMObject, "handleIdentifier"), new StringValue(annotation.getHandleIdentifier()));
-			api.createLink(api.associationByName("A_Annotatable_Annotation"), Arrays.asList(annotatableMObject, annotationMObject));	
+			MObject annotationMObject = api.createObject(sanitizeName(annotation.getHandleIdentifier()), "Annotation");
+			api.setObjectAttribute(annotationMObject, registry.name, new StringValue(annotation.getElementName()));
+			api.setObjectAttribute(annotationMObject, registry.handleIdentifier, new StringValue(annotation.getHandleIdentifier()));
+			api.createLink(registry.aAnnotatableAnnotation, Arrays.asList(annotatableMObject, annotationMObject));	
 			
 			String typeName = annotation.getElementName();
 			// TODO check if annotation is from a class file
 			MObject annotationType = allTypeObjects.get(typeName);
 			if(annotationType != null)
-				api.createLink(api.associationByName("A_Type_Annotation"), Arrays.asList(annotationType, annotationMObject));
+				api.createLink(registry.aTypeAnnotation, Arrays.asList(annotationType, annotationMObject));
 			else{
 					annotationType = createExternalTypeFromName(typeName);
-					api.createLink(api.associationByName("A_Type_Annotation"), Arrays.asList(annotationType, annotationMObject));
+					api.createLink(registry.aTypeAnnotation, Arrays.asList(annotationType, annotationMObject));
 			}
 
 			// Processing annotation values
 			for(IMemberValuePair mvp: annotation.getMemberValuePairs()){
-				MObject valueMObject = api.createObject(processName(annotation.getHandleIdentifier()+"_"+mvp.toString()), "AnnotationValue");
-				api.setObjectAttribute(valueMObject, api.attributeByName(valueMObject, "value"), new StringValue(mvp.getValue().toString()));
-				api.createLink(api.associationByName("A_Annotation_AnnotationValue"), Arrays.asList(annotationMObject, valueMObject));	
+				MObject valueMObject = api.createObject(sanitizeName(annotation.getHandleIdentifier()+"_"+mvp.toString()), "AnnotationValue");
+				api.setObjectAttribute(valueMObject, registry.annotationValueValue, new StringValue(mvp.getValue().toString()));
+				api.createLink(registry.aAnnotationAnnotationValue, Arrays.asList(annotationMObject, valueMObject));	
 				
 				// Finding the corresponding field
-				Value fieldValue = api.oclEvaluator(annotationType.name()+".fields->any(name = '" + mvp.getMemberName() + "')");
-				if(fieldValue.isDefined() && fieldValue.isObject() && ((ObjectValue)fieldValue).value().cls().equals(api.classByName("Field")))
-					api.createLink(api.associationByName("A_Field_AnnotationValue"), Arrays.asList(((ObjectValue)fieldValue).value(), valueMObject));
-				else // If the field is not found, a new one is created
-					api.createLink(api.associationByName("A_Field_AnnotationValue"), Arrays.asList(createAnnotationField(annotationType, mvp.getMemberName()), valueMObject));
+				MObject fieldMObject = fieldIndex.get(annotationType, mvp.getMemberName());
+				if(fieldMObject == null) // If the field is not found, a new one is created
+					fieldMObject = createAnnotationField(annotationType, mvp.getMemberName());
+				api.createLink(registry.aFieldAnnotationValue, Arrays.asList(fieldMObject, valueMObject));
 			}
 		}
 	}
@@ -335,10 +859,14 @@ public class JM2Loader {
 	 * 			The name of the field to create
 	 * @return The new Field meta-object
 	 */
-	private static MObject createAnnotationField(MObject annotationTypeMObject, String fieldName){
+	private MObject createAnnotationField(MObject annotationTypeMObject, String fieldName){
+		// Fields of external types are shared by all compilation units
+		String previousOwner = api.setOwner(null);
 		MObject fieldMObject = api.createObject(null, "Field");
-		api.setObjectAttribute(fieldMObject, api.attributeByName(fieldMObject, "name"), new StringValue(fieldName));
-		api.createLink(api.associationByName("A_Type_Field"), Arrays.asList(annotationTypeMObject, fieldMObject));
+		api.setObjectAttribute(fieldMObject, registry.name, new StringValue(fieldName));
+		api.createLink(registry.aTypeField, Arrays.asList(annotationTypeMObject, fieldMObject));
+		fieldIndex.put(annotationTypeMObject, fieldName, fieldMObject);
+		api.setOwner(previousOwner);
 		return fieldMObject;
 	}
 	
@@ -352,76 +880,56 @@ public class JM2Loader {
 	 * @param t
 	 * 			The type to process
 	 */
-	private static void secondTypeProcess(IType t) {
-		MObject typeMObject = api.objectByName(processName(t.getHandleIdentifier()));
+	private void secondTypeProcess(IType t) {
+		MObject typeMObject = handleIndex.get("Type", t.getHandleIdentifier());
 		try {
 			// Processing type parameters
 			for(ITypeParameter tp: t.getTypeParameters()){
 				MObject typeParameterMObject = api.createObject(t.getElementName() + '_' + tp.getElementName(), "TypeParameter");
-				api.setObjectAttribute(typeParameterMObject, api.attributeByName(typeParameterMObject, "name"), new StringValue(tp.getElementName()));
-				api.setObjectAttribute(typeParameterMObject, api.attributeByName(typeParameterMObject, "handleIdentifier"), new StringValue(tp.getHandleIdentifier()));
+				api.setObjectAttribute(typeParameterMObject, registry.name, new StringValue(tp.getElementName()));
+				api.setObjectAttribute(typeParameterMObject, registry.handleIdentifier, new StringValue(tp.getHandleIdentifier()));
 				for(String bound: tp.getBoundsSignatures()){
 					MObject boundTypeMObject = getTypeObjectFromSignature(bound);
-					api.createLink(api.associationByName("B_Type_TypeParameter"), Arrays.asList(boundTypeMObject, typeParameterMObject));
+					api.createLink(registry.bTypeTypeParameter, Arrays.asList(boundTypeMObject, typeParameterMObject));
 				}
 			}
 			
 			// Processing inheritance
 			for(String interfaceSignature: t.getSuperInterfaceTypeSignatures()){
 				MObject interfaceMObject = getTypeObjectFromSignature(interfaceSignature);
-				api.createLink(api.associationByName("C_Type_Type"), Arrays.asList(interfaceMObject, typeMObject));
+				api.createLink(registry.cTypeType, Arrays.asList(interfaceMObject, typeMObject));
 			}
 			
 			String superclassSignature = t.getSuperclassTypeSignature();
 			if(superclassSignature != null){
 				MObject superclassMObject = getTypeObjectFromSignature(superclassSignature);
-				api.createLink(api.associationByName("B_Type_Type"), Arrays.asList(superclassMObject, typeMObject));
+				api.createLink(registry.bTypeType, Arrays.asList(superclassMObject, typeMObject));
 			}
 			
 			// Processing type nesting
 			IType declaringType = t.getDeclaringType();
 			if(declaringType != null){
-				MObject declaringTypeMObject = api.objectByName(processName(declaringType.getHandleIdentifier()));
+				MObject declaringTypeMObject = handleIndex.get("Type", declaringType.getHandleIdentifier());
 				if(declaringTypeMObject != null)
-					api.createLink(api.associationByName("A_Type_Type"), Arrays.asList(typeMObject, declaringTypeMObject));
+					api.createLink(registry.aTypeType, Arrays.asList(typeMObject, declaringTypeMObject));
 			}
 			
 			// Processing method parameters, exceptions and return type
 			for(IMethod m: t.getMethods()){
-				MObject methodMObject = api.objectByName(METHOD_IDENTIFIER + processName(m.getHandleIdentifier()));
-				
-				for(ILocalVariable p: m.getParameters()){
-					int arrayCount =  Signature.getArrayCount(p.getTypeSignature());
-					MObject parameterMObject = api.createObject(processName(p.getHandleIdentifier()), "LocalVariable");
-					api.setObjectAttribute(parameterMObject, api.attributeByName(parameterMObject, "name"), new StringValue(p.getElementName()));
-					api.setObjectAttribute(parameterMObject, api.attributeByName(parameterMObject, "handleIdentifier"), new StringValue(p.getHandleIdentifier()));
-					api.setObjectAttribute(parameterMObject, api.attributeByName(parameterMObject, "arrayDimensions"), IntegerValue.valueOf(arrayCount));
-					api.createLink(api.associationByName("B_Method_LocalVariable"), Arrays.asList(methodMObject, parameterMObject));
-					
-					MObject parameterType = getTypeObjectFromSignature(p.getTypeSignature());
-					api.createLink(api.associationByName("A_LocalVariable_Type"), Arrays.asList(parameterMObject, parameterType));
-				}
-				
-				MObject returnTypeMObject = getTypeObjectFromSignature(m.getReturnType());
-				int arrayCount =  Signature.getArrayCount(m.getReturnType());
-				api.setObjectAttribute(methodMObject, api.attributeByName(methodMObject, "returnTypeArrayDimensions"), IntegerValue.valueOf(arrayCount));
-				api.createLink(api.associationByName("A_Method_Type"), Arrays.asList(methodMObject, returnTypeMObject));
-				
-				for(String exception: m.getExceptionTypes()){
-					MObject exceptionMObject = getTypeObjectFromSignature(exception);
-					api.createLink(api.associationByName("B_Method_Type"), Arrays.asList(methodMObject, exceptionMObject));
-				}
-				
+				MObject methodMObject = handleIndex.get("Method", m.getHandleIdentifier());
+				if(loadedProfile.includesSignatures())
+					processMethodSignature(m, methodMObject);
 				processAnnotations(methodMObject, m.getAnnotations());
 			}
 			
 			// Processing field type
 			for(IField f: t.getFields()){
-				MObject fieldMObject = api.objectByName(FIELD_IDENTIFIER + processName(f.getHandleIdentifier()));
+				MObject fieldMObject = handleIndex.get("Field", f.getHandleIdentifier());
 				MObject fieldTypeMObject = getTypeObjectFromSignature(f.getTypeSignature());
-				api.createLink(api.associationByName("A_Field_Type"), Arrays.asList(fieldTypeMObject, fieldMObject));
+				api.createLink(registry.aFieldType, Arrays.asList(fieldTypeMObject, fieldMObject));
 				int arrayCount = Signature.getArrayCount(f.getTypeSignature());
-				api.setObjectAttribute(fieldMObject, api.attributeByName(fieldMObject, "arrayDimensions"), IntegerValue.valueOf(arrayCount));
+				if(registry.fieldAttributes.arrayDimensions != null)
+					api.setObjectAttribute(fieldMObject, registry.fieldAttributes.arrayDimensions, IntegerValue.valueOf(arrayCount));
 
 				processAnnotations(fieldMObject, f.getAnnotations());
 			}
@@ -438,54 +946,8 @@ public class JM2Loader {
 	 * 			the type signature.
 	 * @return The Type MObject corresponding to the given signature
 	 */
-	public static MObject getTypeObjectFromSignature(String signature){
-		// With the changes in MObject naming and the allTypeObjects mapping, 
-		// it may be possible to omit some parts of this method without any side-effects.
-		String s = Signature.getElementType(signature);
-		switch(Signature.getSimpleName(s)){
-		case Signature.SIG_BOOLEAN:
-			return api.objectByName("boolean");
-		case Signature.SIG_BYTE:
-			return api.objectByName("byte");
-		case Signature.SIG_CHAR:
-			return api.objectByName("char");
-		case Signature.SIG_DOUBLE:
-			return api.objectByName("double");
-		case Signature.SIG_FLOAT:
-			return api.objectByName("float");
-		case Signature.SIG_INT:
-			return api.objectByName("int");
-		case Signature.SIG_LONG:
-			return api.objectByName("long");
-		case Signature.SIG_SHORT:
-			return api.objectByName("short");
-		case Signature.SIG_VOID:
-			return api.objectByName("void");
-		case "String":
-			return api.objectByName("String");
-		default: 
-			break;
-		}
-		MObject typeMObject = allTypeObjects.get(signature);
-		if(typeMObject != null)
-			return typeMObject;
-		else{
-			typeMObject = allTypeObjects.get(Signature.getElementType(signature));
-			if(typeMObject != null)
-				return typeMObject;
-			else{
-				typeMObject = allTypeObjects.get(Signature.getQualifier(signature) + Signature.getSimpleName(signature));
-				if(typeMObject != null) 
-					return typeMObject;
-				else{
-					typeMObject = allTypeObjects.get(Signature.getSimpleName(signature));
-					if(typeMObject != null)
-						return typeMObject;
-					else
-						return createExternalTypeFromSignature(signature);
-				}
-			}
-		}
+	public MObject getTypeObjectFromSignature(String signature){
+		return typeResolver.resolve(signature);
 	}
 
 
@@ -497,14 +959,17 @@ public class JM2Loader {
 	 * 			The signature of the type to create
 	 * @return The new Type MObject
 	 */
-	private static MObject createExternalTypeFromSignature(String signature) {
+	MObject createExternalTypeFromSignature(String signature) {
 		String qualifiedName = Signature.getQualifier(signature) + Signature.getSimpleName(signature);
-		MObject typeMObject = api.objectByName(processName(qualifiedName));
+		MObject typeMObject = api.objectByName(sanitizeName(qualifiedName));
 		if(typeMObject == null){
-			typeMObject = api.createObject(processName(qualifiedName), "Type");
-			api.setObjectAttribute(typeMObject, api.attributeByName(typeMObject, "name"), new StringValue(Signature.getSimpleName(signature)));
-			api.createLink(api.associationByName("A_TypeRoot_Type"), Arrays.asList(api.objectByName("ExternalTypesClassFile"), typeMObject));
+			// External types are shared by all compilation units
+			String previousOwner = api.setOwner(null);
+			typeMObject = api.createObject(sanitizeName(qualifiedName), "Type");
+			api.setObjectAttribute(typeMObject, registry.name, new StringValue(Signature.getSimpleName(signature)));
+			api.createLink(registry.aTypeRootType, Arrays.asList(externalTypesClassFileMObject, typeMObject));
 			allTypeObjects.put(qualifiedName, typeMObject);
+			api.setOwner(previousOwner);
 		}
 		return typeMObject;
 	}
@@ -517,26 +982,507 @@ public class JM2Loader {
 	 * 			The name of the type to create. Can be qualified or simple.
 	 * @return The new Type MObject
 	 */
-	public static MObject createExternalTypeFromName(String typeName) {
+	public MObject createExternalTypeFromName(String typeName) {
 		String qualifier = Signature.getQualifier(typeName);
 		String simpleName = Signature.getSimpleName(typeName);	
 		
-		if(qualifier.isEmpty()){
-			MObject typeMObject = api.createObject(processName(simpleName), "Type");
-			api.setObjectAttribute(typeMObject, api.attributeByName(typeMObject, "name"), new StringValue(simpleName));
-			api.createLink(api.associationByName("A_TypeRoot_Type"), Arrays.asList(api.objectByName("ExternalTypesClassFile"), typeMObject));
-			allTypeObjects.put(simpleName, typeMObject);
-			return typeMObject;
+		// External types are shared by all compilation units
+		String previousOwner = api.setOwner(null);
+		try {
+			if(qualifier.isEmpty()){
+				MObject typeMObject = api.createObject(sanitizeName(simpleName), "Type");
+				api.setObjectAttribute(typeMObject, registry.name, new StringValue(simpleName));
+				api.createLink(registry.aTypeRootType, Arrays.asList(externalTypesClassFileMObject, typeMObject));
+				allTypeObjects.put(simpleName, typeMObject);
+				return typeMObject;
+			}
+			else{
+				MObject typeMObject = api.createObject(sanitizeName(typeName), "Type");
+				api.setObjectAttribute(typeMObject, registry.name, new StringValue(simpleName));
+				api.createLink(registry.aTypeRootType, Arrays.asList(externalTypesClassFileMObject, typeMObject));
+				allTypeObjects.put(typeName, typeMObject);
+				return typeMObject;
+			}
+		} finally {
+			api.setOwner(previousOwner);
 		}
-		else{
-			MObject typeMObject = api.createObject(processName(typeName), "Type");
-			api.setObjectAttribute(typeMObject, api.attributeByName(typeMObject, "name"), new StringValue(simpleName));
-			api.createLink(api.associationByName("A_TypeRoot_Type"), Arrays.asList(api.objectByName("ExternalTypesClassFile"), typeMObject));
-			allTypeObjects.put(typeName, typeMObject);
-			return typeMObject;
+	}
+
+
+	/**
+	 * Enables or disables parallel reading of package fragments during the first
+	 * instantiation phase. When enabled, the Java model information of each package
+	 * fragment is read by a worker pool, while meta-objects are still created one
+	 * package fragment at a time, so the resulting instantiation is the same.
+	 * 
+	 * @param parallel
+	 * 			true to read package fragments in parallel
+	 */
+	public void setParallelFirstPhase(boolean parallel){
+		parallelFirstPhase = parallel;
+	}
+	
+	/**
+	 * Sets the file to which the next instantiations are streamed as SOIL commands,
+	 * while they are created. The file can be replayed with readSOIL in a USE session
+	 * where the same EJMM specification was compiled.
+	 * 
+	 * @param file
+	 * 			The SOIL file to write, null to disable the export
+	 */
+	public void setSoilExportFile(File file){
+		soilExportFile = file;
+	}
+	
+	/**
+	 * Creates the task that reads a package fragment from the Java model.
+	 * 
+	 * @param packageFragment
+	 * 			The package fragment to read
+	 * @return The read task, which may either be run by a worker pool or inline
+	 */
+	private FutureTask<PackageFragmentInfo> newPackageFragmentRead(final IPackageFragment packageFragment){
+		return new FutureTask<PackageFragmentInfo>(new Callable<PackageFragmentInfo>() {
+			@Override
+			public PackageFragmentInfo call() throws JavaModelException {
+				return PackageFragmentInfo.read(packageFragment);
+			}
+		});
+	}
+	
+	/**
+	 * Waits for a package fragment read task to finish.
+	 * 
+	 * @param read
+	 * 			The read task
+	 * @param runInline
+	 * 			true if the task was not submitted to a worker pool and must be run now
+	 * @return The package fragment snapshot, null if it has no Java resources
+	 * @throws JavaModelException
+	 */
+	private PackageFragmentInfo awaitPackageFragmentRead(FutureTask<PackageFragmentInfo> read, boolean runInline) throws JavaModelException{
+		if(runInline)
+			read.run();
+		try {
+			return read.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading package fragments", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof JavaModelException)
+				throw (JavaModelException)e.getCause();
+			throw new IllegalStateException(e.getCause());
 		}
 	}
 
+	/**
+	 * Enables or disables incremental updates. When enabled, the next instantiation
+	 * records which compilation unit each meta-object and link belongs to, and the
+	 * loader then listens for Java element changes to update the instantiation of
+	 * added, saved or removed compilation units only (see 
+	 * {@link #updateCompilationUnits(Collection)}). Disabling it stops listening
+	 * immediately; the ownership recorded by the loaded instantiation is discarded
+	 * by the next one.
+	 * <br>
+	 * This method does not wait for the session, so it can be called while an
+	 * instantiation or a query is running.
+	 * 
+	 * @param incremental
+	 * 			true to keep the instantiation up to date with the loaded project
+	 */
+	public void setIncrementalUpdates(boolean incremental){
+		incrementalUpdates = incremental;
+		if(!incremental)
+			JavaCore.removeElementChangedListener(compilationUnitListener);
+	}
+	
+	/**
+	 * Sets the instantiation profile used by the next instantiation of a project. The
+	 * instantiation that is already loaded, and its incremental updates, keep the
+	 * profile they were created with.
+	 * <br>
+	 * This method does not wait for the session, so it can be called while an
+	 * instantiation or a query is running.
+	 * 
+	 * @param instantiationProfile
+	 * 			The stages of the loader to run
+	 */
+	public void setProfile(InstantiationProfile instantiationProfile){
+		profile = instantiationProfile;
+	}
+	
+	/**
+	 * @return The instantiation profile used by the next instantiation of a project
+	 */
+	public InstantiationProfile getProfile(){
+		return profile;
+	}
+	
+	/**
+	 * @return The instantiation profile of the loaded instantiation
+	 */
+	InstantiationProfile getLoadedProfile(){
+		return loadedProfile;
+	}
+	
+	/**
+	 * @return The number of method bodies that are not instantiated yet
+	 */
+	public synchronized int getPendingBodyCount(){
+		return pendingBodies == null ? 0 : pendingBodies.size();
+	}
+	
+	/**
+	 * Instantiates the deferred method bodies that an OCL expression may observe. If
+	 * the expression uses any statement-level name of the EJMM (see 
+	 * {@link StatementVocabulary}), all pending bodies are instantiated, since OCL
+	 * navigation cannot be restricted to some methods beforehand. Otherwise nothing
+	 * is instantiated. Clients that know which methods they need should use
+	 * {@link #instantiateBody(IMethod)} or {@link #instantiateBodies(ICompilationUnit)}.
+	 * 
+	 * @param expression
+	 * 			The OCL expression about to be evaluated
+	 * @return The number of instantiated bodies
+	 */
+	public synchronized int instantiateBodiesFor(String expression){
+		if(pendingBodies == null || pendingBodies.size() == 0)
+			return 0;
+		if(statementVocabulary == null)
+			statementVocabulary = new StatementVocabulary(system.model());
+		if(!statementVocabulary.mentions(expression))
+			return 0;
+		return instantiateAllBodies();
+	}
+	
+	/**
+	 * Evaluates an OCL expression on the current instantiation, instantiating the
+	 * deferred method bodies it may observe first. Results are cached until the
+	 * instantiation changes, so repeating a query (or a query that only differs in
+	 * whitespace) on an unchanged instantiation does not evaluate it again.
+	 * <br>
+	 * The session is locked for the whole evaluation, so loads, incremental updates
+	 * and body instantiations wait for it to finish.
+	 * 
+	 * @param expression
+	 * 			The OCL expression
+	 * @return The result of the expression, null if it could not be evaluated
+	 */
+	public synchronized Value evaluateQuery(String expression){
+		instantiateBodiesFor(expression);
+		long generation = api.getGeneration();
+		Value value = queryCache.get(expression, generation);
+		if(value == null){
+			value = api.oclEvaluator(expression);
+			queryCache.put(expression, generation, api.getGeneration(), value);
+		}
+		return value;
+	}
+	
+	/**
+	 * @return The cache of the results of {@link #evaluateQuery(String)}, e.g. for
+	 * 			its statistics
+	 */
+	public QueryCache getQueryCache(){
+		return queryCache;
+	}
+	
+	/**
+	 * @return The model generation of this session, which changes whenever its USE
+	 * 			session is changed
+	 */
+	public long getModelGeneration(){
+		return api.getGeneration();
+	}
+	
+	/**
+	 * Instantiates all deferred method bodies. The ASTs of their compilation units are
+	 * created in one batch, sharing the same binding environment.
+	 * 
+	 * @return The number of instantiated bodies
+	 */
+	public synchronized int instantiateAllBodies(){
+		if(pendingBodies == null || pendingBodies.size() == 0)
+			return 0;
+		long startTime = System.nanoTime();
+		ArrayList<ICompilationUnit> compilationUnits = new ArrayList<ICompilationUnit>();
+		for(String handle: pendingBodies.getCompilationUnits())
+			compilationUnits.add((ICompilationUnit)JavaCore.create(handle));
+		
+		final int[] count = {0};
+		ASTParser parser = JM2ASTLoader.newParser();
+		parser.setProject(loadedProject);
+		parser.createASTs(compilationUnits.toArray(new ICompilationUnit[0]), new String[0], new ASTRequestor() {
+			@Override
+			public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+				count[0] += processPendingBodies(source, ast, pendingBodies.removeCompilationUnit(source.getHandleIdentifier()));
+			}
+		}, null);
+		System.out.println("Instantiated " + count[0] + " method bodies in " + (System.nanoTime() - startTime)/1000000000d + " seconds.");
+		return count[0];
+	}
+	
+	/**
+	 * Instantiates the deferred method bodies of a compilation unit.
+	 * 
+	 * @param c
+	 * 			The compilation unit
+	 * @return The number of instantiated bodies
+	 */
+	public synchronized int instantiateBodies(ICompilationUnit c){
+		if(pendingBodies == null)
+			return 0;
+		List<PendingBody> bodies = pendingBodies.removeCompilationUnit(c.getHandleIdentifier());
+		if(bodies.isEmpty())
+			return 0;
+		return processPendingBodies(c, createAST(c), bodies);
+	}
+	
+	/**
+	 * Instantiates the deferred body of a method.
+	 * 
+	 * @param m
+	 * 			The method
+	 * @return true if the body was pending and has been instantiated
+	 */
+	public synchronized boolean instantiateBody(IMethod m){
+		ICompilationUnit c = m.getCompilationUnit();
+		if(pendingBodies == null || c == null)
+			return false;
+		PendingBody body = pendingBodies.removeMethod(c.getHandleIdentifier(), m.getHandleIdentifier());
+		if(body == null)
+			return false;
+		return processPendingBodies(c, createAST(c), Arrays.asList(body)) == 1;
+	}
+	
+	private CompilationUnit createAST(ICompilationUnit c){
+		ASTParser parser = JM2ASTLoader.newParser();
+		parser.setProject(loadedProject);
+		parser.setSource(c);
+		return (CompilationUnit)parser.createAST(null);
+	}
+	
+	private int processPendingBodies(ICompilationUnit c, CompilationUnit ast, List<PendingBody> bodies){
+		String previousOwner = api.setOwner(c.getHandleIdentifier());
+		try {
+			MObject compUnitMObject = handleIndex.get("CompilationUnit", c.getHandleIdentifier());
+			return new JM2ASTLoader(this, compUnitMObject).processPendingBodies(ast, bodies);
+		} finally {
+			api.setOwner(previousOwner);
+		}
+	}
+	
+	/**
+	 * Updates the current instantiation for the given added, changed or removed
+	 * compilation units. The meta-objects and links created for them are deleted and
+	 * the compilation units that still exist are instantiated again (both phases),
+	 * leaving the rest of the instantiation untouched.
+	 * <br>
+	 * Links created for other compilation units to the deleted meta-objects (e.g.
+	 * inheritance, field types and method calls) are recreated to the new meta-objects
+	 * with the same name. Other compilation units are not analyzed again, so their
+	 * references to elements that no longer exist are dropped.
+	 * <br>
+	 * This method does nothing if the current instantiation was not created with
+	 * incremental updates enabled.
+	 * 
+	 * @param compilationUnits
+	 * 			The compilation units of the loaded project to update
+	 */
+	public synchronized void updateCompilationUnits(Collection<ICompilationUnit> compilationUnits){
+		if(system == null || !api.isTracking())
+			return;
+		long startTime = System.nanoTime();
+		
+		if(typeClosures != null)
+			api.recordLinks(typeClosures.getUpdateAssociations());
+		
+		// Deleting the meta-objects of the compilation units
+		HashSet<String> updatedHandles = new HashSet<String>();
+		HashSet<MObject> deletedObjects = new HashSet<MObject>();
+		for(ICompilationUnit c: compilationUnits){
+			updatedHandles.add(c.getHandleIdentifier());
+			deletedObjects.addAll(api.removeOwnedObjects(c.getHandleIdentifier()));
+			allCompilationUnits.remove(c);
+		}
+		
+		// Links of other compilation units are kept to be recreated afterwards
+		ArrayList<RemovedLink> removedLinks = new ArrayList<RemovedLink>();
+		for(MLink link: system.state().allLinks()){
+			boolean isDeleted = false;
+			for(MObject linkedObject: link.linkedObjects())
+				if(deletedObjects.contains(linkedObject))
+					isDeleted = true;
+			if(isDeleted){
+				String owner = api.removeLinkOwner(link);
+				if(owner != null && !updatedHandles.contains(owner))
+					removedLinks.add(new RemovedLink(link, owner));
+			}
+		}
+		
+		for(MObject deletedObject: deletedObjects)
+			if(deletedObject.exists(system.state()))
+				api.deleteObject(system.state(), deletedObject);
+		handleIndex.removeAll(deletedObjects);
+		fieldIndex.removeAll(deletedObjects);
+		allTypeObjects.values().removeAll(deletedObjects);
+		typeResolver.clear();
+		memberBindings.clear();
+		if(pendingBodies != null)
+			pendingBodies.removeAll(updatedHandles);
+		
+		// First instantiation phase for the compilation units that still exist
+		ArrayList<ICompilationUnit> existingCompilationUnits = new ArrayList<ICompilationUnit>();
+		for(ICompilationUnit c: compilationUnits){
+			if(!c.exists())
+				continue;
+			try {
+				MObject packagefragMObject = handleIndex.get("PackageFragment", c.getParent().getHandleIdentifier());
+				if(packagefragMObject == null){
+					IPackageFragment packageFragment = (IPackageFragment) c.getParent();
+					MObject pfrMObject = handleIndex.get("PackageFragmentRoot", packageFragment.getParent().getHandleIdentifier());
+					if(pfrMObject == null){
+						System.out.println("Skipping " + c.getElementName() + ": its package fragment root is not instantiated");
+						continue;
+					}
+					packagefragMObject = createPackageFragmentObject(packageFragment.getElementName(), packageFragment.getHandleIdentifier(), pfrMObject);
+				}
+				processCompilationUnit(PackageFragmentInfo.readCompilationUnit(c), packagefragMObject);
+				existingCompilationUnits.add(c);
+			} catch (JavaModelException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		// Second instantiation phase
+		if(!existingCompilationUnits.isEmpty())
+			secondCompilationUnitsProcess(existingCompilationUnits, new NullProgressMonitor());
+		
+		// Recreating links of other compilation units to the new meta-objects
+		int restoredLinks = 0;
+		for(RemovedLink removedLink: removedLinks){
+			List<MObject> linkedObjects = new ArrayList<MObject>();
+			for(MObject linkedObject: removedLink.linkedObjects){
+				if(deletedObjects.contains(linkedObject)){
+					MObject newObject = api.objectByName(linkedObject.name());
+					if(newObject == null || !newObject.cls().equals(linkedObject.cls()))
+						break;
+					linkedObject = newObject;
+				}
+				linkedObjects.add(linkedObject);
+			}
+			if(linkedObjects.size() == removedLink.linkedObjects.size()
+					&& !system.state().hasLinkBetweenObjects(removedLink.association, linkedObjects.toArray(new MObject[0]))){
+				api.putLinkOwner(api.createLink(removedLink.association, linkedObjects), removedLink.owner);
+				restoredLinks++;
+			}
+		}
+		if(typeClosures != null)
+			updateTypeClosures(deletedObjects, api.getRecordedLinks());
+		api.recordLinks(null);
+		
+		long duration = System.nanoTime() - startTime;
+		System.out.println("Updated " + compilationUnits.size() + " compilation unit(s): " + deletedObjects.size() + " meta-objects deleted, "
+				+ restoredLinks + " of " + removedLinks.size() + " external links restored, in " + duration/1000000000d + " seconds.");
+	}
+	
+	/**
+	 * Materializes the Type closures read by getFullInheritanceTree,
+	 * getFullInterfaceTree and getAllIncludedTypes (see {@link TypeClosures}), if the
+	 * EJMM declares their associations. Any previous closure links are replaced.
+	 */
+	private void materializeTypeClosures(){
+		if(!TypeClosures.isSupported(registry))
+			return;
+		long startTime = System.nanoTime();
+		String previousOwner = api.setOwner(null);
+		typeClosures = new TypeClosures(system, registry);
+		int linkCount = typeClosures.materialize(api);
+		api.setOwner(previousOwner);
+		System.out.println(linkCount + " Type closure links created in " + (System.nanoTime() - startTime)/1000000000d + " seconds.");
+	}
+	
+	/**
+	 * Updates the Type closure links after an incremental update, for the types whose
+	 * type links were deleted or created and the types that reach them only.
+	 * 
+	 * @param deletedObjects
+	 * 			The meta-objects deleted by the update
+	 * @param createdLinks
+	 * 			The links of TypeClosures.getUpdateAssociations created by the update
+	 */
+	private void updateTypeClosures(Collection<MObject> deletedObjects, List<MLink> createdLinks){
+		long startTime = System.nanoTime();
+		String previousOwner = api.setOwner(null);
+		int linkCount = typeClosures.update(api, deletedObjects, createdLinks);
+		api.setOwner(previousOwner);
+		System.out.println(linkCount + " Type closure links created in " + (System.nanoTime() - startTime)/1000000000d + " seconds.");
+	}
+	
+	/**
+	 * Collects the compilation units of the loaded project that were added, had
+	 * their contents changed or were removed, according to a Java element delta.
+	 * 
+	 * @param delta
+	 * 			The Java element delta
+	 * @param compilationUnits
+	 * 			The set to which the affected compilation units are added
+	 */
+	private void collectChangedCompilationUnits(IJavaElementDelta delta, Set<ICompilationUnit> compilationUnits){
+		IJavaElement element = delta.getElement();
+		switch(element.getElementType()){
+		case IJavaElement.JAVA_PROJECT:
+			if(!element.equals(loadedProject))
+				return;
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT:
+			// A removed package fragment has no deltas for its compilation units
+			if(delta.getKind() == IJavaElementDelta.REMOVED){
+				for(ICompilationUnit c: getLoadedCompilationUnits())
+					if(c.getParent().equals(element))
+						compilationUnits.add(c);
+				return;
+			}
+			break;
+		case IJavaElement.COMPILATION_UNIT:
+			ICompilationUnit c = ((ICompilationUnit) element).getPrimary();
+			if(delta.getKind() != IJavaElementDelta.CHANGED
+					|| (delta.getFlags() & (IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_PRIMARY_RESOURCE)) != 0)
+				compilationUnits.add(c);
+			return;
+		default:
+			break;
+		}
+		for(IJavaElementDelta child: delta.getAffectedChildren())
+			collectChangedCompilationUnits(child, compilationUnits);
+	}
+	
+	/**
+	 * Returns a copy of the compilation units of the current instantiation, so they
+	 * can be iterated without holding the session lock.
+	 * 
+	 * @return The compilation units, empty if there is no instantiation
+	 */
+	private synchronized List<ICompilationUnit> getLoadedCompilationUnits(){
+		if(allCompilationUnits == null)
+			return Collections.<ICompilationUnit>emptyList();
+		return new ArrayList<ICompilationUnit>(allCompilationUnits);
+	}
+	
+	/**
+	 * A link removed during an incremental update, to be recreated once the meta-objects
+	 * it refers to are instantiated again.
+	 */
+	private static class RemovedLink {
+		final MAssociation association;
+		final List<MObject> linkedObjects;
+		final String owner;
+		
+		RemovedLink(MLink link, String owner){
+			association = link.association();
+			linkedObjects = new ArrayList<MObject>(link.linkedObjects());
+			this.owner = owner;
+		}
+	}
 
 	/**
 	 * Processes a given package fragment, creating a PackageFragment meta-object and
@@ -546,44 +1492,81 @@ public class JM2Loader {
 	 * 			The package fragment to analyze
 	 * @param packageFragmentRootMObject
 	 * 			The PackageFragmentRoot meta-object that contains this PackageFragment
-	 * @throws JavaModelException
 	 */
-	private static void processPackageFragment(IPackageFragment packageFragment, MObject packageFragmentRootMObject) throws JavaModelException{
-		String processedName = processName(packageFragment.getHandleIdentifier());
-		processedName = (processedName == "" || processedName.isEmpty()) ? null : processedName;
-		MObject packagefragMObject = api.createObject(processedName, "PackageFragment");
-		api.setObjectAttribute(packagefragMObject, api.attributeByName(packagefragMObject, "name"), new StringValue(packageFragment.getElementName()));
-		api.setObjectAttribute(packagefragMObject, api.attributeByName(packagefragMObject, "handleIdentifier"), new StringValue(packageFragment.getHandleIdentifier()));
-		api.createLink(api.associationByName("A_PackageFragmentRoot_PackageFragment"), Arrays.asList(packageFragmentRootMObject, packagefragMObject));
-		for(ICompilationUnit compUnit: packageFragment.getCompilationUnits()){
-			String processedCompUnitName = processName(compUnit.getHandleIdentifier());
-			MObject compUnitMObject = api.createObject(processedCompUnitName, "CompilationUnit");
-			api.setObjectAttribute(compUnitMObject, api.attributeByName(compUnitMObject, "name"), new StringValue(compUnit.getElementName()));
-			api.setObjectAttribute(compUnitMObject, api.attributeByName(compUnitMObject, "handleIdentifier"), new StringValue(compUnit.getHandleIdentifier()));
-			api.createLink(api.associationByName("A_PackageFragment_TypeRoot"), Arrays.asList(packagefragMObject, compUnitMObject));
-			processCompilationUnitTypes(compUnit, compUnitMObject);
+	private void processPackageFragment(PackageFragmentInfo packageFragment, MObject packageFragmentRootMObject){
+		MObject packagefragMObject = createPackageFragmentObject(packageFragment.name, packageFragment.handleIdentifier, packageFragmentRootMObject);
+		for(TypeRootInfo compUnit: packageFragment.compilationUnits){
+			processCompilationUnit(compUnit, packagefragMObject);
 		}
-		for(IClassFile classFile: packageFragment.getClassFiles()){
-			String processedClassFileName = processName(classFile.getHandleIdentifier());
+		for(TypeRootInfo classFile: packageFragment.classFiles){
+			String processedClassFileName = sanitizeName(classFile.handleIdentifier);
 			MObject classFileMObject = api.createObject(processedClassFileName, "ClassFile");
-			api.setObjectAttribute(classFileMObject, api.attributeByName(classFileMObject, "name"), new StringValue(classFile.getElementName()));
-			api.setObjectAttribute(classFileMObject, api.attributeByName(classFileMObject, "handleIdentifier"), new StringValue(classFile.getHandleIdentifier()));
-			api.createLink(api.associationByName("A_PackageFragment_TypeRoot"), Arrays.asList(packagefragMObject, classFileMObject));
+			api.setObjectAttribute(classFileMObject, registry.name, new StringValue(classFile.name));
+			api.setObjectAttribute(classFileMObject, registry.handleIdentifier, new StringValue(classFile.handleIdentifier));
+			api.createLink(registry.aPackageFragmentTypeRoot, Arrays.asList(packagefragMObject, classFileMObject));
+			handleIndex.put("ClassFile", classFile.handleIdentifier, classFileMObject);
 			processClassFileType(classFile, classFileMObject);
 		}
 		
 	}
 
+	/**
+	 * Creates a PackageFragment meta-object and meta-links it to its PackageFragmentRoot.
+	 * 
+	 * @param name
+	 * 			The package fragment name
+	 * @param handleIdentifier
+	 * 			The package fragment handle identifier
+	 * @param packageFragmentRootMObject
+	 * 			The PackageFragmentRoot meta-object that contains this PackageFragment
+	 * @return The new PackageFragment meta-object
+	 */
+	private MObject createPackageFragmentObject(String name, String handleIdentifier, MObject packageFragmentRootMObject){
+		String processedName = sanitizeName(handleIdentifier);
+		processedName = (processedName == "" || processedName.isEmpty()) ? null : processedName;
+		MObject packagefragMObject = api.createObject(processedName, "PackageFragment");
+		api.setObjectAttribute(packagefragMObject, registry.name, new StringValue(name));
+		api.setObjectAttribute(packagefragMObject, registry.handleIdentifier, new StringValue(handleIdentifier));
+		api.createLink(registry.aPackageFragmentRootPackageFragment, Arrays.asList(packageFragmentRootMObject, packagefragMObject));
+		handleIndex.put("PackageFragment", handleIdentifier, packagefragMObject);
+		return packagefragMObject;
+	}
+
+	/**
+	 * Processes a compilation unit, creating a CompilationUnit meta-object and 
+	 * meta-objects for all its types. All of them are recorded as belonging to the
+	 * compilation unit.
+	 * 
+	 * @param compUnit
+	 * 			The compilation unit to process
+	 * @param packagefragMObject
+	 * 			The PackageFragment meta-object that contains the compilation unit
+	 */
+	private void processCompilationUnit(TypeRootInfo compUnit, MObject packagefragMObject){
+		String previousOwner = api.setOwner(compUnit.handleIdentifier);
+		try {
+			String processedCompUnitName = sanitizeName(compUnit.handleIdentifier);
+			MObject compUnitMObject = api.createObject(processedCompUnitName, "CompilationUnit");
+			api.setObjectAttribute(compUnitMObject, registry.name, new StringValue(compUnit.name));
+			api.setObjectAttribute(compUnitMObject, registry.handleIdentifier, new StringValue(compUnit.handleIdentifier));
+			api.createLink(registry.aPackageFragmentTypeRoot, Arrays.asList(packagefragMObject, compUnitMObject));
+			handleIndex.put("CompilationUnit", compUnit.handleIdentifier, compUnitMObject);
+			processCompilationUnitTypes(compUnit, compUnitMObject);
+		} finally {
+			api.setOwner(previousOwner);
+		}
+	}
+
 	/**
 	 * Processes the type of a class file.
 	 * 
 	 * @param classFile
 	 * @param classFileMObject
-	 * @throws JavaModelException
 	 */
-	private static void processClassFileType(IClassFile classFile, MObject classFileMObject) throws JavaModelException {
-		allClassFiles.add(classFile);
-		processType(classFile.getType(), classFileMObject);
+	private void processClassFileType(TypeRootInfo classFile, MObject classFileMObject) {
+		allClassFiles.add((IClassFile)classFile.typeRoot);
+		for(TypeInfo type: classFile.types)
+			processType(type, classFileMObject);
 	}
 
 	
@@ -592,11 +1575,10 @@ public class JM2Loader {
 	 * 
 	 * @param compUnit
 	 * @param compUnitMObject
-	 * @throws JavaModelException
 	 */
-	private static void processCompilationUnitTypes(ICompilationUnit compUnit, MObject compUnitMObject) throws JavaModelException {
-		allCompilationUnits.add(compUnit);
-		for(IType type: compUnit.getAllTypes())
+	private void processCompilationUnitTypes(TypeRootInfo compUnit, MObject compUnitMObject) {
+		allCompilationUnits.add((ICompilationUnit)compUnit.typeRoot);
+		for(TypeInfo type: compUnit.types)
 			processType(type, compUnitMObject);
 	}
 
@@ -608,75 +1590,63 @@ public class JM2Loader {
 	 * 			The type to analyze
 	 * @param typeRootMObject
 	 * 			The type root in which the type is declared
-	 * @throws JavaModelException
 	 */
-	private static void processType(IType type, MObject typeRootMObject) throws JavaModelException{
-		String elementName = type.getElementName();
-		String processedName = processName(type.getHandleIdentifier());
+	private void processType(TypeInfo type, MObject typeRootMObject){
+		String elementName = type.elementName;
+		String processedName = sanitizeName(type.handleIdentifier);
 		
 		// For binary types
 		if(elementName.isEmpty()){
-			elementName = type.getTypeQualifiedName();
-			processedName += processName(type.getTypeQualifiedName());
+			elementName = type.typeQualifiedName;
+			processedName += sanitizeName(type.typeQualifiedName);
 		}
 		
-		MObject typeMObject = api.createObject(processedName, "Type");
-		api.setObjectAttribute(typeMObject, api.attributeByName(typeMObject, "name"), new StringValue(elementName));
-		api.setObjectAttribute(typeMObject, api.attributeByName(typeMObject, "handleIdentifier"), new StringValue(type.getHandleIdentifier()));
-		api.createLink(api.associationByName("A_TypeRoot_Type"), Arrays.asList(typeRootMObject, typeMObject));
+		MetamodelRegistry.MemberAttributes attributes = registry.typeAttributes;
+		MObject typeMObject = api.createObject(processedName, attributes.template, attributes.values(elementName, type.handleIdentifier, type.flags));
+		api.createLink(registry.aTypeRootType, Arrays.asList(typeRootMObject, typeMObject));
+		handleIndex.put("Type", type.handleIdentifier, typeMObject);
 
 		// Lots of different keys are made for the Type map to make sure references made to it
 		// during the second phase work correctly.
-		allTypeObjects.put(type.getFullyQualifiedName(), typeMObject);
-		allTypeObjects.put(type.getFullyQualifiedParameterizedName(), typeMObject);
-		allTypeObjects.put(type.getFullyQualifiedName('.'), typeMObject);
-		allTypeObjects.put(type.getElementName(), typeMObject);
-		allTypeObjects.put(Signature.getSimpleName(type.getFullyQualifiedName()), typeMObject);
-		allTypeObjects.put(Signature.getSimpleName(type.getFullyQualifiedName('.')), typeMObject);
-		allTypeObjects.put(Signature.createTypeSignature(type.getFullyQualifiedName('.').toCharArray(), type.isResolved()), typeMObject);
+		for(String typeKey: type.typeKeys)
+			allTypeObjects.put(typeKey, typeMObject);
 		if(!elementName.isEmpty())
 			allTypeObjects.put(Signature.createTypeSignature(elementName.toCharArray(), false), typeMObject);
 
 		
-		for(IField field: type.getFields()){
+		for(MemberInfo field: type.fields){
 			processField(field, typeMObject, typeRootMObject);
 		}
-		for(IMethod method: type.getMethods()){
+		for(MemberInfo method: type.methods){
 			processMethod(method, typeMObject, typeRootMObject);
 		}
-		for(IInitializer initializer: type.getInitializers()){
-			MObject initializerMObject = api.createObject(processedName+"_Initializer"+initializer.getOccurrenceCount(), "Initializer");
-			api.setObjectAttribute(initializerMObject, api.attributeByName(initializerMObject, "name"), new StringValue(initializer.getElementName()));
-			api.setObjectAttribute(initializerMObject, api.attributeByName(initializerMObject, "handleIdentifier"), new StringValue(initializer.getHandleIdentifier()));
-			//api.setObjectAttribute(initializerMObject, api.attributeByName(initializerMObject, "occurrenceCount"), IntegerValue.valueOf(initializer.getOccurrenceCount()));
-			api.createLink(api.associationByName("A_Type_Initializer"), Arrays.asList(typeMObject, initializerMObject));
+		// Initializers require a body, so they are only created along with statements
+		if(loadedProfile.includesStatements()){
+			for(InitializerInfo initializer: type.initializers){
+				MObject initializerMObject = api.createObject(processedName+"_Initializer"+initializer.occurrenceCount, "Initializer");
+				api.setObjectAttribute(initializerMObject, registry.name, new StringValue(initializer.elementName));
+				api.setObjectAttribute(initializerMObject, registry.handleIdentifier, new StringValue(initializer.handleIdentifier));
+				//api.setObjectAttribute(initializerMObject, api.attributeByName(initializerMObject, "occurrenceCount"), IntegerValue.valueOf(initializer.getOccurrenceCount()));
+				api.createLink(registry.aTypeInitializer, Arrays.asList(typeMObject, initializerMObject));
+				handleIndex.put("Initializer", initializer.handleIdentifier, initializerMObject);
+			}
 		}
 		
-		processMemberFlags(type,typeMObject);
-		
-		if(!type.isBinary())
-			processAnonymousTypes(type, typeRootMObject);
+		processAnonymousTypes(type.anonymousTypes, typeRootMObject);
 	}
 
 	/**
 	 * Special procedures for processing anonymous types declared inside a given member.
 	 * 
-	 * @param member
-	 * 			The member to scan for anonymous types
+	 * @param anonymousTypes
+	 * 			The anonymous types declared in the member, in occurrence order
 	 * @param typeRootMObject
 	 * 			The type root where the member (and anonymous types) are contained
-	 * @throws JavaModelException
 	 */
-	private static void processAnonymousTypes(IMember member,
-			MObject typeRootMObject) throws JavaModelException {
-		int anonymousTypeOccurrenceCount = 1;
-		IType anonymousClass = null;
-		do{
-			anonymousClass = member.getType("", anonymousTypeOccurrenceCount);
-			if(anonymousClass != null && anonymousClass.exists())
-				processType(anonymousClass, typeRootMObject);
-			anonymousTypeOccurrenceCount++;
-		}while(anonymousClass != null && anonymousClass.exists());
+	private void processAnonymousTypes(List<TypeInfo> anonymousTypes,
+			MObject typeRootMObject) {
+		for(TypeInfo anonymousClass: anonymousTypes)
+			processType(anonymousClass, typeRootMObject);
 	}
 	
 	/**
@@ -689,22 +1659,19 @@ public class JM2Loader {
 	 * 			The declaring type
 	 * @param typeRootMObject
 	 * 			The type root in which the field is contained
-	 * @throws JavaModelException
 	 */
-	private static void processField(IField field, MObject typeMObject, MObject typeRootMObject) throws JavaModelException {
-		String processedKey = FIELD_IDENTIFIER + processName(field.getHandleIdentifier());
+	private void processField(MemberInfo field, MObject typeMObject, MObject typeRootMObject) {
+		String processedKey = FIELD_IDENTIFIER + sanitizeName(field.handleIdentifier);
 		// System.out.println("Field: " + processedKey);
 		
-		MObject fieldMObject = api.createObject(processedKey, "Field");
-		api.setObjectAttribute(fieldMObject, api.attributeByName(fieldMObject, "name"), new StringValue(field.getElementName()));
-		api.setObjectAttribute(fieldMObject, api.attributeByName(fieldMObject, "handleIdentifier"), new StringValue(field.getHandleIdentifier()));
-		api.setObjectAttribute(fieldMObject, api.attributeByName(fieldMObject, "key"), new StringValue(field.getKey()));
-		api.createLink(api.associationByName("A_Type_Field"), Arrays.asList(typeMObject, fieldMObject));
-		
-		processMemberFlags(field,fieldMObject);
+		MetamodelRegistry.MemberAttributes attributes = registry.fieldAttributes;
+		MObject fieldMObject = api.createObject(processedKey, attributes.template, attributes.values(field.elementName, field.handleIdentifier, field.flags));
+		api.setObjectAttribute(fieldMObject, attributes.key, new StringValue(field.key));
+		api.createLink(registry.aTypeField, Arrays.asList(typeMObject, fieldMObject));
+		fieldIndex.put(typeMObject, field.elementName, fieldMObject);
+		handleIndex.put("Field", field.handleIdentifier, fieldMObject);
 		
-		if(!field.isBinary())
-			processAnonymousTypes(field, typeRootMObject);
+		processAnonymousTypes(field.anonymousTypes, typeRootMObject);
 	}
 	
 	/**
@@ -717,39 +1684,34 @@ public class JM2Loader {
 	 * 			The declaring Type
 	 * @param typeRootMObject
 	 * 			The TypeRoot in which the method is contained
-	 * @throws JavaModelException
 	 */
-	private static void processMethod(IMethod method, MObject typeMObject, MObject typeRootMObject) throws JavaModelException{
-		String processedKey = METHOD_IDENTIFIER + processName(method.getHandleIdentifier());
-		if(method.getHandleIdentifier() == null)
-			System.out.println(method.getKey());
+	private void processMethod(MemberInfo method, MObject typeMObject, MObject typeRootMObject){
+		String processedKey = METHOD_IDENTIFIER + sanitizeName(method.handleIdentifier);
 		// System.out.println("Methd: " + processedKey);
 		
-		MObject methodMObject = api.createObject(processedKey, "Method");
-		api.setObjectAttribute(methodMObject, api.attributeByName(methodMObject, "name"), new StringValue(method.getElementName()));
-		api.setObjectAttribute(methodMObject, api.attributeByName(methodMObject, "handleIdentifier"), new StringValue(method.getHandleIdentifier()));
-		api.setObjectAttribute(methodMObject, api.attributeByName(methodMObject, "key"), new StringValue(method.getKey()));
-		String[] keyFrags = method.getKey().split("\\.");
-		api.setObjectAttribute(methodMObject, api.attributeByName(methodMObject, "shortKey"), new StringValue(keyFrags[keyFrags.length-1]));
-		api.createLink(api.associationByName("A_Type_Method"), Arrays.asList(typeMObject, methodMObject));
+		MetamodelRegistry.MemberAttributes attributes = registry.methodAttributes;
+		MObject methodMObject = api.createObject(processedKey, attributes.template, attributes.values(method.elementName, method.handleIdentifier, method.flags));
+		api.setObjectAttribute(methodMObject, attributes.key, new StringValue(method.key));
+		String[] keyFrags = method.key.split("\\.");
+		if(attributes.shortKey != null)
+			api.setObjectAttribute(methodMObject, attributes.shortKey, new StringValue(keyFrags[keyFrags.length-1]));
+		api.createLink(registry.aTypeMethod, Arrays.asList(typeMObject, methodMObject));
+		handleIndex.put("Method", method.handleIdentifier, methodMObject);
 		
-		if(method.isConstructor())
-			api.setObjectAttribute(methodMObject, api.attributeByName(methodMObject, "isConstructor"), BooleanValue.TRUE);
+		if(method.isConstructor)
+			api.setObjectAttribute(methodMObject, attributes.isConstructor, BooleanValue.TRUE);
 		else
-			api.setObjectAttribute(methodMObject, api.attributeByName(methodMObject, "isConstructor"), BooleanValue.FALSE);
-		
-		processMemberFlags(method,methodMObject);
+			api.setObjectAttribute(methodMObject, attributes.isConstructor, BooleanValue.FALSE);
 		
-		if(!method.isBinary())
-			processAnonymousTypes(method, typeRootMObject);
+		processAnonymousTypes(method.anonymousTypes, typeRootMObject);
 	}
 	
 	
 	/**
 	 * Processes the flags of a given member.
 	 * <br>
-	 * This method first handles attributes common to Types, Methods and Fields. Then,
-	 * depending on the member type, it branches off to instantiate specific attributes.
+	 * The name, handle identifier and all flag attributes of the member's metaclass
+	 * are set in one operation through the metaclass template.
 	 *
 	 * @param member
 	 * 			The member to scan for flags.
@@ -759,163 +1721,48 @@ public class JM2Loader {
 	 * @see org.eclipse.jdt.core.Flags
 	 * 
 	 */
-	public static void processMemberFlags(IMember member, MObject memberMObject) throws JavaModelException{
-		int flags = member.getFlags();
-		
-		String visibility = "Default";
-		if(Flags.isPrivate(flags))
-			visibility = "Private";
-		else
-		if(Flags.isProtected(flags))
-			visibility = "Protected";
-		else
-		if(Flags.isPublic(flags))
-			visibility = "Public";
-		api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "visibility"), new EnumValue(api.enumByName("VisibilityType"), visibility));
-		
-		if(Flags.isFinal(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isFinal"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isFinal"), BooleanValue.FALSE);
-		if(Flags.isSynthetic(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isSynthetic"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isSynthetic"), BooleanValue.FALSE);
-		if(Flags.isDeprecated(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isDeprecated"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isDeprecated"), BooleanValue.FALSE);
-		
-		if(member instanceof IType){	
-			processTypeFlags(memberMObject, flags);
-		}
-		
-		if(member instanceof IField){
-			processFieldFlags(memberMObject, flags);
-		}
-		
-		if(member instanceof IMethod){
-			processMethodFlags(memberMObject, flags);
-		}
-	}
-
-	/**
-	 * Processes flags for attributes specific to the Method metaclass.
-	 * 
-	 * @param memberMObject
-	 * 			The Method meta-object
-	 * @param flags
-	 * 			The method's flags
-	 */
-	private static void processMethodFlags(MObject memberMObject, int flags) {
-		if(Flags.isStatic(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isStatic"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isStatic"), BooleanValue.FALSE);
-		if(Flags.isSynchronized(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isSynchronized"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isSynchronized"), BooleanValue.FALSE);
-		if(Flags.isNative(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isNative"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isNative"), BooleanValue.FALSE);
-		if(Flags.isBridge(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isBridge"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isBridge"), BooleanValue.FALSE);
-		if(Flags.isVarargs(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "hasVarargs"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "hasVarargs"), BooleanValue.FALSE);
-	}
-
-	/**
-	 * Processes flags for attributes specific to the Field metaclass.
-	 * @param memberMObject
-	 * 			The Field meta-object
-	 * @param flags
-	 * 			The field's flags
-	 */
-	private static void processFieldFlags(MObject memberMObject, int flags) {
-		if(Flags.isStatic(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isStatic"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isStatic"), BooleanValue.FALSE);
-		if(Flags.isVolatile(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isVolatile"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isVolatile"), BooleanValue.FALSE);
-		if(Flags.isTransient(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isTransient"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isTransient"), BooleanValue.FALSE);
-	}
-
-	/**
-	 * Processes flags for attributes specific to the Type metaclass.
-	 * @param memberMObject
-	 * 			The Type meta-object
-	 * @param flags
-	 * 			The type's flags
-	 */
-	private static void processTypeFlags(MObject memberMObject, int flags) {
-		String javaType = "ClassType";
-		if(Flags.isEnum(flags))
-			javaType = "EnumType";
-			else
-				if(Flags.isInterface(flags))
-					javaType = "InterfaceType";
-				else
-					if(Flags.isAnnotation(flags))
-						javaType = "AnnotationType";
-		api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "javaType"), new EnumValue(api.enumByName("JavaType"), javaType));
-		
-		
-		if(Flags.isAbstract(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isAbstract"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isAbstract"), BooleanValue.FALSE);		
-		if(Flags.isStrictfp(flags))
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isStrictfp"), BooleanValue.TRUE);
-		else
-			api.setObjectAttribute(memberMObject, api.attributeByName(memberMObject, "isStrictfp"), BooleanValue.FALSE);
+	public void processMemberFlags(IMember member, MObject memberMObject) throws JavaModelException{
+		MetamodelRegistry.MemberAttributes attributes = registry.memberAttributes(member.getElementType());
+		api.setObjectAttributes(memberMObject, attributes.template, attributes.values(member.getElementName(), member.getHandleIdentifier(), member.getFlags()));
 	}
 	
 
 	/**
 	 * Creates default meta-objects for external PackageFragments, TypeRoots and basic Types.
 	 */
-	private static void createDefaultObjects() {
+	private void createDefaultObjects() {
 		MObject basicPackageMObject = api.createObject("BasicTypes", "PackageFragment");
-		api.setObjectAttribute(basicPackageMObject, api.attributeByName(basicPackageMObject, "name"), new StringValue("BasicTypesPackage"));
+		api.setObjectAttribute(basicPackageMObject, registry.name, new StringValue("BasicTypesPackage"));
 		MObject externalPackageMObject = api.createObject("ExternalTypes", "PackageFragment");
-		api.setObjectAttribute(externalPackageMObject, api.attributeByName(externalPackageMObject, "name"), new StringValue("ExternalTypesPackage"));
+		api.setObjectAttribute(externalPackageMObject, registry.name, new StringValue("ExternalTypesPackage"));
 		
 		MObject basicClassFileMObject = api.createObject("BasicTypesClassFile", "ClassFile");
-		api.setObjectAttribute(basicClassFileMObject, api.attributeByName(basicClassFileMObject, "name"), new StringValue("BasicTypes"));
+		api.setObjectAttribute(basicClassFileMObject, registry.name, new StringValue("BasicTypes"));
 		MObject externalClassFileMObject = api.createObject("ExternalTypesClassFile", "ClassFile");
-		api.setObjectAttribute(externalClassFileMObject, api.attributeByName(externalClassFileMObject, "name"), new StringValue("ExternalTypes"));
+		api.setObjectAttribute(externalClassFileMObject, registry.name, new StringValue("ExternalTypes"));
+		externalTypesClassFileMObject = externalClassFileMObject;
 
-		api.createLink(api.associationByName("A_PackageFragment_TypeRoot"), Arrays.asList(basicPackageMObject, basicClassFileMObject));
-		api.createLink(api.associationByName("A_PackageFragment_TypeRoot"), Arrays.asList(externalPackageMObject, externalClassFileMObject));
+		api.createLink(registry.aPackageFragmentTypeRoot, Arrays.asList(basicPackageMObject, basicClassFileMObject));
+		api.createLink(registry.aPackageFragmentTypeRoot, Arrays.asList(externalPackageMObject, externalClassFileMObject));
 
 		String[] primitiveTypes = {"int","boolean","long","double","float","byte","short","char","void"};
 		String[] primitiveTypeSignatures = {Signature.SIG_INT,Signature.SIG_BOOLEAN,Signature.SIG_LONG,
 				Signature.SIG_DOUBLE,Signature.SIG_FLOAT,Signature.SIG_BYTE,Signature.SIG_SHORT,Signature.SIG_CHAR,Signature.SIG_VOID};
 		for(int i = 0; i != primitiveTypes.length; ++i){
 			MObject primMObject = api.createObject(primitiveTypes[i], "Type");
-			api.setObjectAttribute(primMObject, api.attributeByName(primMObject, "name"), new StringValue(primitiveTypes[i]));
-			api.setObjectAttribute(primMObject, api.attributeByName(primMObject, "handleIdentifier"), new StringValue(primitiveTypes[i]));
-			api.setObjectAttribute(primMObject, api.attributeByName(primMObject, "javaType"), new EnumValue(api.enumByName("JavaType"), "Primitive"));
-			api.createLink(api.associationByName("A_TypeRoot_Type"), Arrays.asList(basicClassFileMObject, primMObject));
+			api.setObjectAttribute(primMObject, registry.name, new StringValue(primitiveTypes[i]));
+			api.setObjectAttribute(primMObject, registry.handleIdentifier, new StringValue(primitiveTypes[i]));
+			api.setObjectAttribute(primMObject, registry.typeAttributes.javaType, registry.javaTypePrimitive);
+			api.createLink(registry.aTypeRootType, Arrays.asList(basicClassFileMObject, primMObject));
 			allTypeObjects.put(primitiveTypes[i], primMObject);
 			allTypeObjects.put(primitiveTypeSignatures[i], primMObject);
+			basicTypeObjects.put(primitiveTypes[i], primMObject);
 		}
 		
 		MObject stringMObject = api.createObject("String", "Type");
-		api.setObjectAttribute(stringMObject, api.attributeByName(stringMObject, "name"), new StringValue("String"));
-		api.setObjectAttribute(stringMObject, api.attributeByName(stringMObject, "javaType"), new EnumValue(api.enumByName("JavaType"), "ClassType"));
-		api.createLink(api.associationByName("A_TypeRoot_Type"), Arrays.asList(basicClassFileMObject, stringMObject));
+		api.setObjectAttribute(stringMObject, registry.name, new StringValue("String"));
+		api.setObjectAttribute(stringMObject, registry.typeAttributes.javaType, registry.javaTypeClass);
+		api.createLink(registry.aTypeRootType, Arrays.asList(basicClassFileMObject, stringMObject));
+		basicTypeObjects.put("String", stringMObject);
 	}
 }
@@ -0,0 +1,335 @@
+package ejm2.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quasar.juse.api.implementation.ProgramingFacade;
+
+import org.tzi.use.uml.mm.MAssociation;
+import org.tzi.use.uml.mm.MAttribute;
+import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MLink;
+import org.tzi.use.uml.sys.MObject;
+import org.tzi.use.uml.sys.MSystem;
+import org.tzi.use.uml.sys.MSystemException;
+import org.tzi.use.uml.sys.MSystemState;
+
+/**
+ * USE facade used by the loader classes. Besides creating meta-objects and links,
+ * it can record which compilation unit each of them was created for, so that the
+ * instantiation of a single compilation unit can later be removed and redone
+ * without reloading the whole project.
+ * <br>
+ * Ownership is only recorded while tracking is enabled and an owner is set.
+ * <br>
+ * When a SoilWriter is set, every meta-object, attribute value and link is also
+ * written to it as a SOIL command as soon as it is created.
+ * <br>
+ * Meta-objects can also be created from a MetaclassTemplate, which sets all their
+ * attributes in one operation instead of one setObjectAttribute call each.
+ * <br>
+ * Every change made through the facade, including compiling a new specification
+ * and running commands, advances the model generation, so that results computed
+ * on an earlier state (see QueryCache) can be recognized as stale.
+ * <br>
+ * The links created for some associations can be recorded, e.g. to update what is
+ * derived from them (see TypeClosures) after an incremental update.
+ */
+class LoaderFacade extends ProgramingFacade {
+
+	private MSystem system;
+
+	private boolean tracking = false;
+	
+	private SoilWriter soilWriter;
+
+	/**
+	 * Incremented on every change of the USE session made through this facade.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * Handle identifier of the compilation unit currently being instantiated.
+	 */
+	private String owner;
+
+	/**
+	 * Meta-objects created for each compilation unit, keyed by its handle identifier.
+	 */
+	private final HashMap<String, List<MObject>> ownedObjects = new HashMap<String, List<MObject>>();
+
+	/**
+	 * Compilation unit handle identifier of each link created while an owner was set.
+	 */
+	private final HashMap<MLink, String> linkOwners = new HashMap<MLink, String>();
+
+	/**
+	 * Associations whose new links are recorded, null if links are not recorded.
+	 */
+	private Set<MAssociation> recordedAssociations;
+	private final List<MLink> recordedLinks = new ArrayList<MLink>();
+
+	@Override
+	public MSystem compileSpecification(String specificationFile, boolean verbose){
+		system = super.compileSpecification(specificationFile, verbose);
+		generation.incrementAndGet();
+		return system;
+	}
+
+	@Override
+	public void command(String command){
+		super.command(command);
+		generation.incrementAndGet();
+	}
+
+	@Override
+	public void readSOIL(String directory, String file, boolean verbose){
+		super.readSOIL(directory, file, verbose);
+		generation.incrementAndGet();
+	}
+
+	@Override
+	public MObject createObject(String name, String className){
+		MObject object = super.createObject(name, className);
+		if(object != null)
+			objectCreated(object);
+		return object;
+	}
+
+	/**
+	 * Creates a meta-object and sets all the attributes of the given template.
+	 *
+	 * @param name
+	 * 			The name of the new meta-object
+	 * @param template
+	 * 			The template of the meta-object's metaclass
+	 * @param values
+	 * 			The attribute values, in template order
+	 * @return The new meta-object, null if it could not be created
+	 */
+	MObject createObject(String name, MetaclassTemplate template, Value[] values){
+		MObject object;
+		try {
+			object = template.createObject(system.state(), name, values);
+		} catch (MSystemException e) {
+			e.printStackTrace();
+			return null;
+		}
+		objectCreated(object);
+		writeAttributes(object, template, values);
+		return object;
+	}
+
+	/**
+	 * Sets all the attributes of the given template on an existing meta-object.
+	 *
+	 * @param object
+	 * 			The meta-object
+	 * @param template
+	 * 			The template of the meta-object's metaclass
+	 * @param values
+	 * 			The attribute values, in template order
+	 */
+	void setObjectAttributes(MObject object, MetaclassTemplate template, Value[] values){
+		template.setAttributes(object.state(system.state()), values);
+		generation.incrementAndGet();
+		writeAttributes(object, template, values);
+	}
+
+	@Override
+	public void setObjectAttribute(MObject object, MAttribute attribute, Value value){
+		super.setObjectAttribute(object, attribute, value);
+		generation.incrementAndGet();
+		if(soilWriter != null)
+			soilWriter.setAttribute(object, attribute, value);
+	}
+
+	@Override
+	public MLink createLink(MAssociation association, List<MObject> members){
+		MLink link = super.createLink(association, members);
+		generation.incrementAndGet();
+		if(tracking && owner != null && link != null)
+			linkOwners.put(link, owner);
+		if(recordedAssociations != null && link != null && recordedAssociations.contains(association))
+			recordedLinks.add(link);
+		if(soilWriter != null && link != null)
+			soilWriter.insertLink(association, members);
+		return link;
+	}
+
+	private void objectCreated(MObject object){
+		generation.incrementAndGet();
+		if(tracking && owner != null){
+			List<MObject> objects = ownedObjects.get(owner);
+			if(objects == null){
+				objects = new ArrayList<MObject>();
+				ownedObjects.put(owner, objects);
+			}
+			objects.add(object);
+		}
+		if(soilWriter != null)
+			soilWriter.createObject(object);
+	}
+
+	private void writeAttributes(MObject object, MetaclassTemplate template, Value[] values){
+		if(soilWriter != null)
+			for(int i = 0; i != template.size(); ++i)
+				if(template.getAttribute(i) != null && values[i] != null)
+					soilWriter.setAttribute(object, template.getAttribute(i), values[i]);
+	}
+
+	/**
+	 * Deletes a meta-object and all its links from the current USE session.
+	 *
+	 * @param state
+	 * 			The current system state
+	 * @param object
+	 * 			The meta-object to delete
+	 */
+	void deleteObject(MSystemState state, MObject object){
+		state.deleteObject(object);
+		generation.incrementAndGet();
+		if(soilWriter != null)
+			soilWriter.destroyObject(object);
+	}
+
+	/**
+	 * Deletes a link from the current USE session.
+	 *
+	 * @param state
+	 * 			The current system state
+	 * @param link
+	 * 			The link to delete
+	 */
+	void deleteLink(MSystemState state, MLink link){
+		try {
+			state.deleteLink(link.association(), link.linkedObjects(), Collections.<List<Value>>emptyList());
+		} catch (MSystemException e) {
+			e.printStackTrace();
+			return;
+		}
+		linkOwners.remove(link);
+		generation.incrementAndGet();
+		if(soilWriter != null)
+			soilWriter.deleteLink(link.association(), link.linkedObjects());
+	}
+
+	/**
+	 * Starts recording the links created for some associations, discarding the links
+	 * recorded so far.
+	 *
+	 * @param associations
+	 * 			The associations whose links are recorded, null to stop recording
+	 */
+	void recordLinks(Set<MAssociation> associations){
+		recordedAssociations = associations;
+		recordedLinks.clear();
+	}
+
+	/**
+	 * @return The links created for the recorded associations since recordLinks was
+	 * 			called, in creation order
+	 */
+	List<MLink> getRecordedLinks(){
+		return new ArrayList<MLink>(recordedLinks);
+	}
+
+	/**
+	 * @return The current model generation. It changes whenever the USE session is
+	 * 			changed through this facade.
+	 */
+	long getGeneration(){
+		return generation.get();
+	}
+
+	/**
+	 * Sets the writer to which SOIL commands are streamed.
+	 *
+	 * @param soilWriter
+	 * 			The SOIL writer, null to stop streaming
+	 */
+	void setSoilWriter(SoilWriter soilWriter){
+		this.soilWriter = soilWriter;
+	}
+
+	/**
+	 * Enables or disables ownership tracking. Disabling it discards all recorded
+	 * ownership.
+	 *
+	 * @param tracking
+	 * 			true to record the compilation unit of new meta-objects and links
+	 */
+	void setTracking(boolean tracking){
+		this.tracking = tracking;
+		if(!tracking)
+			clearOwnership();
+	}
+
+	boolean isTracking(){
+		return tracking;
+	}
+
+	/**
+	 * Sets the compilation unit to which new meta-objects and links belong.
+	 *
+	 * @param compilationUnitHandle
+	 * 			The compilation unit handle identifier, null for shared meta-objects
+	 * @return The previous owner, so that it can be restored afterwards
+	 */
+	String setOwner(String compilationUnitHandle){
+		String previous = owner;
+		owner = compilationUnitHandle;
+		return previous;
+	}
+
+	/**
+	 * Removes and returns the meta-objects recorded for a compilation unit.
+	 *
+	 * @param compilationUnitHandle
+	 * 			The compilation unit handle identifier
+	 * @return The meta-objects created for the compilation unit, empty if none
+	 */
+	List<MObject> removeOwnedObjects(String compilationUnitHandle){
+		List<MObject> objects = ownedObjects.remove(compilationUnitHandle);
+		return objects == null ? new ArrayList<MObject>() : objects;
+	}
+
+	/**
+	 * Removes and returns the owner recorded for a link.
+	 *
+	 * @param link
+	 * 			The link
+	 * @return The handle identifier of the compilation unit the link was created for,
+	 * 			null if it was created outside of any compilation unit
+	 */
+	String removeLinkOwner(MLink link){
+		return linkOwners.remove(link);
+	}
+
+	/**
+	 * Records the owner of a link that was recreated outside of the normal
+	 * instantiation procedure.
+	 *
+	 * @param link
+	 * 			The link
+	 * @param compilationUnitHandle
+	 * 			The compilation unit handle identifier
+	 */
+	void putLinkOwner(MLink link, String compilationUnitHandle){
+		if(tracking && link != null && compilationUnitHandle != null)
+			linkOwners.put(link, compilationUnitHandle);
+	}
+
+	/**
+	 * Discards all recorded ownership.
+	 */
+	void clearOwnership(){
+		ownedObjects.clear();
+		linkOwners.clear();
+		owner = null;
+	}
+}
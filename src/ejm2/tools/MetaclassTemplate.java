@@ -0,0 +1,94 @@
+package ejm2.tools;
+
+import org.tzi.use.uml.mm.MAttribute;
+import org.tzi.use.uml.mm.MClass;
+import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MObject;
+import org.tzi.use.uml.sys.MObjectState;
+import org.tzi.use.uml.sys.MSystemException;
+import org.tzi.use.uml.sys.MSystemState;
+
+/**
+ * A metaclass together with a fixed, ordered list of its attributes. Meta-objects
+ * of the metaclass can be created with all these attributes in a single operation,
+ * from a value vector laid out in the same order (see newValues).
+ * <br>
+ * Slots whose attribute is null (not declared by the metaclass) or whose value is
+ * null are skipped.
+ */
+public class MetaclassTemplate {
+
+	private final MClass metaclass;
+	private final MAttribute[] attributes;
+
+	/**
+	 * @param metaclass
+	 * 			The metaclass of the meta-objects to create
+	 * @param attributes
+	 * 			The attributes set by the template, in value vector order
+	 */
+	public MetaclassTemplate(MClass metaclass, MAttribute... attributes){
+		this.metaclass = metaclass;
+		this.attributes = attributes;
+	}
+
+	public MClass getMetaclass(){
+		return metaclass;
+	}
+
+	/**
+	 * @return The number of slots of the value vector
+	 */
+	public int size(){
+		return attributes.length;
+	}
+
+	/**
+	 * @param index
+	 * 			The slot
+	 * @return The attribute of the given slot, null if the metaclass does not declare it
+	 */
+	public MAttribute getAttribute(int index){
+		return attributes[index];
+	}
+
+	/**
+	 * @return A new, empty value vector for this template
+	 */
+	public Value[] newValues(){
+		return new Value[attributes.length];
+	}
+
+	/**
+	 * Creates a meta-object of the template's metaclass and sets all its attributes.
+	 *
+	 * @param state
+	 * 			The system state in which to create the meta-object
+	 * @param name
+	 * 			The name of the new meta-object
+	 * @param values
+	 * 			The attribute values, in template order
+	 * @return The new meta-object
+	 * @throws MSystemException
+	 * 			If the meta-object cannot be created (e.g. the name is already used)
+	 */
+	public MObject createObject(MSystemState state, String name, Value[] values) throws MSystemException {
+		MObject object = state.createObject(metaclass, name);
+		setAttributes(object.state(state), values);
+		return object;
+	}
+
+	/**
+	 * Sets all the template's attributes of an existing meta-object.
+	 *
+	 * @param objectState
+	 * 			The state of the meta-object
+	 * @param values
+	 * 			The attribute values, in template order
+	 */
+	public void setAttributes(MObjectState objectState, Value[] values){
+		for(int i = 0; i != attributes.length; ++i)
+			if(attributes[i] != null && values[i] != null)
+				objectState.setAttributeValue(attributes[i], values[i]);
+	}
+}
@@ -0,0 +1,362 @@
+package ejm2.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.IJavaElement;
+
+import org.tzi.use.uml.mm.MAssociation;
+import org.tzi.use.uml.mm.MAttribute;
+import org.tzi.use.uml.mm.MClass;
+import org.tzi.use.uml.mm.MModel;
+import org.tzi.use.uml.ocl.type.EnumType;
+import org.tzi.use.uml.ocl.value.BooleanValue;
+import org.tzi.use.uml.ocl.value.EnumValue;
+import org.tzi.use.uml.ocl.value.StringValue;
+import org.tzi.use.uml.ocl.value.Value;
+
+/**
+ * Attributes, associations and enumeration literals of the EJMM used by the loader
+ * classes, resolved once after the specification is compiled.
+ * <br>
+ * Resolution fails with an IllegalStateException listing every missing element if
+ * the specification does not define what the loader needs. A few elements that
+ * older versions of the EJMM lack (array dimensions, method short keys, the
+ * statement to method/field associations and the Type closure associations) are
+ * optional: their handles are null and the loader skips them.
+ */
+public class MetamodelRegistry {
+
+	/**
+	 * Attributes of a Member metaclass (Type, Field or Method). Attributes that the
+	 * metaclass does not declare are null.
+	 * <br>
+	 * The template sets the name, the handle identifier and every attribute derived
+	 * from the member's JDT flags; values decodes the vector for it.
+	 */
+	public static class MemberAttributes {
+		public final MAttribute visibility;
+		public final MAttribute isFinal;
+		public final MAttribute isSynthetic;
+		public final MAttribute isDeprecated;
+		public final MAttribute isStatic;
+		public final MAttribute isAbstract;
+		public final MAttribute isStrictfp;
+		public final MAttribute javaType;
+		public final MAttribute isVolatile;
+		public final MAttribute isTransient;
+		public final MAttribute isSynchronized;
+		public final MAttribute isNative;
+		public final MAttribute isBridge;
+		public final MAttribute hasVarargs;
+		public final MAttribute isConstructor;
+		public final MAttribute key;
+		public final MAttribute shortKey;
+		public final MAttribute arrayDimensions;
+		public final MAttribute returnTypeArrayDimensions;
+		public final MetaclassTemplate template;
+
+		private final MetamodelRegistry registry;
+
+		private MemberAttributes(MetamodelRegistry registry, String className){
+			this.registry = registry;
+			boolean isType = className.equals("Type");
+			boolean isField = className.equals("Field");
+			boolean isMethod = className.equals("Method");
+			visibility = registry.attribute(className, "visibility", true);
+			isFinal = registry.attribute(className, "isFinal", true);
+			isSynthetic = registry.attribute(className, "isSynthetic", true);
+			isDeprecated = registry.attribute(className, "isDeprecated", true);
+			isStatic = registry.attribute(className, "isStatic", isField || isMethod);
+			isAbstract = registry.attribute(className, "isAbstract", isType);
+			isStrictfp = registry.attribute(className, "isStrictfp", isType);
+			javaType = registry.attribute(className, "javaType", isType);
+			isVolatile = registry.attribute(className, "isVolatile", isField);
+			isTransient = registry.attribute(className, "isTransient", isField);
+			isSynchronized = registry.attribute(className, "isSynchronized", isMethod);
+			isNative = registry.attribute(className, "isNative", isMethod);
+			isBridge = registry.attribute(className, "isBridge", isMethod);
+			hasVarargs = registry.attribute(className, "hasVarargs", isMethod);
+			isConstructor = registry.attribute(className, "isConstructor", isMethod);
+			key = registry.attribute(className, "key", isField || isMethod);
+			shortKey = registry.attribute(className, "shortKey", false);
+			arrayDimensions = registry.attribute(className, "arrayDimensions", false);
+			returnTypeArrayDimensions = registry.attribute(className, "returnTypeArrayDimensions", false);
+			template = new MetaclassTemplate(registry.model.getClass(className), registry.name, registry.handleIdentifier,
+					visibility, isFinal, isSynthetic, isDeprecated, isStatic, isAbstract, isStrictfp, javaType,
+					isVolatile, isTransient, isSynchronized, isNative, isBridge, hasVarargs);
+		}
+
+		/**
+		 * Decodes the template's value vector of a member.
+		 *
+		 * @param elementName
+		 * 			The member's name
+		 * @param handleIdentifier
+		 * 			The member's handle identifier
+		 * @param flags
+		 * 			The member's JDT flags
+		 * @return The values, in template order
+		 * @see org.eclipse.jdt.core.Flags
+		 */
+		public Value[] values(String elementName, String handleIdentifier, int flags){
+			EnumValue visibility = registry.visibilityDefault;
+			if(Flags.isPrivate(flags))
+				visibility = registry.visibilityPrivate;
+			else
+			if(Flags.isProtected(flags))
+				visibility = registry.visibilityProtected;
+			else
+			if(Flags.isPublic(flags))
+				visibility = registry.visibilityPublic;
+
+			EnumValue javaType = registry.javaTypeClass;
+			if(Flags.isEnum(flags))
+				javaType = registry.javaTypeEnum;
+			else
+			if(Flags.isInterface(flags))
+				javaType = registry.javaTypeInterface;
+			else
+			if(Flags.isAnnotation(flags))
+				javaType = registry.javaTypeAnnotation;
+
+			Value[] values = template.newValues();
+			values[0] = new StringValue(elementName);
+			values[1] = new StringValue(handleIdentifier);
+			values[2] = visibility;
+			values[3] = BooleanValue.get(Flags.isFinal(flags));
+			values[4] = BooleanValue.get(Flags.isSynthetic(flags));
+			values[5] = BooleanValue.get(Flags.isDeprecated(flags));
+			values[6] = BooleanValue.get(Flags.isStatic(flags));
+			values[7] = BooleanValue.get(Flags.isAbstract(flags));
+			values[8] = BooleanValue.get(Flags.isStrictfp(flags));
+			values[9] = javaType;
+			values[10] = BooleanValue.get(Flags.isVolatile(flags));
+			values[11] = BooleanValue.get(Flags.isTransient(flags));
+			values[12] = BooleanValue.get(Flags.isSynchronized(flags));
+			values[13] = BooleanValue.get(Flags.isNative(flags));
+			values[14] = BooleanValue.get(Flags.isBridge(flags));
+			values[15] = BooleanValue.get(Flags.isVarargs(flags));
+			return values;
+		}
+	}
+
+	private final MModel model;
+	private final List<String> missing = new ArrayList<String>();
+
+	// JavaElement and its subclasses
+	public final MAttribute name;
+	public final MAttribute handleIdentifier;
+	public final MAttribute packageFragmentRootType;
+	public final MemberAttributes typeAttributes;
+	public final MemberAttributes fieldAttributes;
+	public final MemberAttributes methodAttributes;
+	public final MAttribute localVariableArrayDimensions;
+	public final MAttribute annotationValueValue;
+
+	// ASTNode and Statement subclasses
+	public final MAttribute startPosition;
+	public final MAttribute length;
+	public final MAttribute conditionalOperatorCount;
+	public final MAttribute breakStatementOptionalLabel;
+	public final MAttribute continueStatementOptionalLabel;
+	public final MAttribute doStatementBody;
+	public final MAttribute enhancedForStatementBody;
+	public final MAttribute forStatementBody;
+	public final MAttribute ifStatementThenStatement;
+	public final MAttribute ifStatementOptionalElseStatement;
+	public final MAttribute labeledStatementBody;
+	public final MAttribute switchCaseIsDefault;
+	public final MAttribute synchronizedStatementBody;
+	public final MAttribute tryStatementBody;
+	public final MAttribute tryStatementCatchClauses;
+	public final MAttribute tryStatementOptionalFinallyBody;
+	public final MAttribute whileStatementBody;
+	public final MAttribute catchClauseBody;
+
+	// Associations, named after the EJMM associations
+	public final MAssociation aJavaProjectPackageFragmentRoot;
+	public final MAssociation aPackageFragmentRootPackageFragment;
+	public final MAssociation aPackageFragmentTypeRoot;
+	public final MAssociation aTypeRootType;
+	public final MAssociation bTypeTypeParameter;
+	public final MAssociation aTypeMethod;
+	public final MAssociation aMethodType;
+	public final MAssociation bMethodType;
+	public final MAssociation aLocalVariableType;
+	public final MAssociation aAnnotatableAnnotation;
+	public final MAssociation aTypeAnnotation;
+	public final MAssociation aAnnotationAnnotationValue;
+	public final MAssociation aFieldAnnotationValue;
+	public final MAssociation aCompilationUnitComment;
+	public final MAssociation aTypeInitializer;
+	public final MAssociation aTypeField;
+	public final MAssociation aFieldType;
+	public final MAssociation aMethodLocalVariable;
+	public final MAssociation bMethodLocalVariable;
+	public final MAssociation aInitializerLocalVariable;
+	public final MAssociation aInitializerBlock;
+	public final MAssociation aMethodBlock;
+	public final MAssociation aBlockStatement;
+	public final MAssociation aTypeType;
+	public final MAssociation bTypeType;
+	public final MAssociation cTypeType;
+	public final MAssociation aStatementType;
+	public final MAssociation aStatementField;
+	public final MAssociation aStatementMethod;
+	public final MAssociation aCatchClauseLocalVariable;
+	public final MAssociation aVariableDeclarationStatementLocalVariable;
+	public final MAssociation aTypeDeclarationStatementType;
+	public final MAssociation dTypeType;
+	public final MAssociation eTypeType;
+	public final MAssociation fTypeType;
+
+	// Enumeration literals
+	public final EnumValue packageFragmentRootFolder;
+	public final EnumValue packageFragmentRootZip;
+	public final EnumValue packageFragmentRootJar;
+	public final EnumValue visibilityDefault;
+	public final EnumValue visibilityPrivate;
+	public final EnumValue visibilityProtected;
+	public final EnumValue visibilityPublic;
+	public final EnumValue javaTypeClass;
+	public final EnumValue javaTypeEnum;
+	public final EnumValue javaTypeInterface;
+	public final EnumValue javaTypeAnnotation;
+	public final EnumValue javaTypePrimitive;
+
+	/**
+	 * Resolves all handles used by the loader in the given model.
+	 *
+	 * @param model
+	 * 			The compiled EJMM
+	 * @throws IllegalStateException
+	 * 			If the model lacks a required attribute, association or enumeration literal
+	 */
+	public MetamodelRegistry(MModel model){
+		this.model = model;
+
+		name = attribute("JavaElement", "name", true);
+		handleIdentifier = attribute("JavaElement", "handleIdentifier", true);
+		packageFragmentRootType = attribute("PackageFragmentRoot", "packageFragmentRootType", true);
+		typeAttributes = new MemberAttributes(this, "Type");
+		fieldAttributes = new MemberAttributes(this, "Field");
+		methodAttributes = new MemberAttributes(this, "Method");
+		localVariableArrayDimensions = attribute("LocalVariable", "arrayDimensions", false);
+		annotationValueValue = attribute("AnnotationValue", "value", true);
+
+		startPosition = attribute("ASTNode", "startPosition", true);
+		length = attribute("ASTNode", "length", true);
+		conditionalOperatorCount = attribute("Statement", "conditionalOperatorCount", true);
+		breakStatementOptionalLabel = attribute("BreakStatement", "optionalLabel", true);
+		continueStatementOptionalLabel = attribute("ContinueStatement", "optionalLabel", true);
+		doStatementBody = attribute("DoStatement", "body", true);
+		enhancedForStatementBody = attribute("EnhancedForStatement", "body", true);
+		forStatementBody = attribute("ForStatement", "body", true);
+		ifStatementThenStatement = attribute("IfStatement", "thenStatement", true);
+		ifStatementOptionalElseStatement = attribute("IfStatement", "optionalElseStatement", true);
+		labeledStatementBody = attribute("LabeledStatement", "body", true);
+		switchCaseIsDefault = attribute("SwitchCase", "isDefault", true);
+		synchronizedStatementBody = attribute("SynchronizedStatement", "body", true);
+		tryStatementBody = attribute("TryStatement", "body", true);
+		tryStatementCatchClauses = attribute("TryStatement", "catchClauses", true);
+		tryStatementOptionalFinallyBody = attribute("TryStatement", "optionalFinallyBody", true);
+		whileStatementBody = attribute("WhileStatement", "body", true);
+		catchClauseBody = attribute("CatchClause", "body", true);
+
+		aJavaProjectPackageFragmentRoot = association("A_JavaProject_PackageFragmentRoot", true);
+		aPackageFragmentRootPackageFragment = association("A_PackageFragmentRoot_PackageFragment", true);
+		aPackageFragmentTypeRoot = association("A_PackageFragment_TypeRoot", true);
+		aTypeRootType = association("A_TypeRoot_Type", true);
+		bTypeTypeParameter = association("B_Type_TypeParameter", true);
+		aTypeMethod = association("A_Type_Method", true);
+		aMethodType = association("A_Method_Type", true);
+		bMethodType = association("B_Method_Type", true);
+		aLocalVariableType = association("A_LocalVariable_Type", true);
+		aAnnotatableAnnotation = association("A_Annotatable_Annotation", true);
+		aTypeAnnotation = association("A_Type_Annotation", true);
+		aAnnotationAnnotationValue = association("A_Annotation_AnnotationValue", true);
+		aFieldAnnotationValue = association("A_Field_AnnotationValue", true);
+		aCompilationUnitComment = association("A_CompilationUnit_Comment", true);
+		aTypeInitializer = association("A_Type_Initializer", true);
+		aTypeField = association("A_Type_Field", true);
+		aFieldType = association("A_Field_Type", true);
+		aMethodLocalVariable = association("A_Method_LocalVariable", true);
+		bMethodLocalVariable = association("B_Method_LocalVariable", true);
+		aInitializerLocalVariable = association("A_Initializer_LocalVariable", true);
+		aInitializerBlock = association("A_Initializer_Block", true);
+		aMethodBlock = association("A_Method_Block", true);
+		aBlockStatement = association("A_Block_Statement", true);
+		aTypeType = association("A_Type_Type", true);
+		bTypeType = association("B_Type_Type", true);
+		cTypeType = association("C_Type_Type", true);
+		aStatementType = association("A_Statement_Type", true);
+		aStatementField = association("A_Statement_Field", false);
+		aStatementMethod = association("A_Statement_Method", false);
+		aCatchClauseLocalVariable = association("A_CatchClause_LocalVariable", true);
+		aVariableDeclarationStatementLocalVariable = association("A_VariableDeclarationStatement_LocalVariable", true);
+		aTypeDeclarationStatementType = association("A_TypeDeclarationStatement_Type", true);
+		dTypeType = association("D_Type_Type", false);
+		eTypeType = association("E_Type_Type", false);
+		fTypeType = association("F_Type_Type", false);
+
+		packageFragmentRootFolder = enumLiteral("PackageFragmentRootType", "Folder");
+		packageFragmentRootZip = enumLiteral("PackageFragmentRootType", "Zip");
+		packageFragmentRootJar = enumLiteral("PackageFragmentRootType", "Jar");
+		visibilityDefault = enumLiteral("VisibilityType", "Default");
+		visibilityPrivate = enumLiteral("VisibilityType", "Private");
+		visibilityProtected = enumLiteral("VisibilityType", "Protected");
+		visibilityPublic = enumLiteral("VisibilityType", "Public");
+		javaTypeClass = enumLiteral("JavaType", "ClassType");
+		javaTypeEnum = enumLiteral("JavaType", "EnumType");
+		javaTypeInterface = enumLiteral("JavaType", "InterfaceType");
+		javaTypeAnnotation = enumLiteral("JavaType", "AnnotationType");
+		javaTypePrimitive = enumLiteral("JavaType", "Primitive");
+
+		if(!missing.isEmpty())
+			throw new IllegalStateException("The EJMM specification does not define " + missing);
+	}
+
+	/**
+	 * Returns the attribute handles of the Type, Field or Method metaclass.
+	 *
+	 * @param elementType
+	 * 			The member's element type (IJavaElement.TYPE, FIELD or METHOD)
+	 * @return The attribute handles of the corresponding metaclass
+	 */
+	public MemberAttributes memberAttributes(int elementType){
+		switch(elementType){
+		case IJavaElement.TYPE:
+			return typeAttributes;
+		case IJavaElement.FIELD:
+			return fieldAttributes;
+		default:
+			return methodAttributes;
+		}
+	}
+
+	private MAttribute attribute(String className, String attributeName, boolean required){
+		MClass cls = model.getClass(className);
+		MAttribute attribute = cls == null ? null : cls.attribute(attributeName, true);
+		if(attribute == null && required)
+			missing.add(className + "::" + attributeName);
+		return attribute;
+	}
+
+	private MAssociation association(String associationName, boolean required){
+		MAssociation association = model.getAssociation(associationName);
+		if(association == null && required)
+			missing.add(associationName);
+		return association;
+	}
+
+	private EnumValue enumLiteral(String enumName, String literal){
+		EnumType enumType = model.enumType(enumName);
+		if(enumType == null || !enumType.contains(literal)){
+			missing.add(enumName + "::" + literal);
+			return null;
+		}
+		return new EnumValue(enumType, literal);
+	}
+}
@@ -0,0 +1,303 @@
+package ejm2.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.IJavaModelMarker;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.quasar.juse.api.JUSE_ProgramingFacade;
+import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MObject;
+
+/**
+ * Headless entry point, registered as the m2dm.metrics Eclipse application. It
+ * imports a Java project into the workspace, instantiates the EJMM for it and writes
+ * the values of a list of OCL metrics for all instances of the chosen metaclasses.
+ * No workbench or SWT window is created.
+ * <br>
+ * Usage:
+ * <pre>
+ * eclipse -nosplash -application m2dm.metrics -data &lt;workspace&gt;
+ *     -project &lt;project directory&gt; -use &lt;USE directory&gt; -model &lt;EJMM .use file&gt;
+ *     -metrics &lt;metrics file&gt; -output &lt;results file&gt; [-profile &lt;profile&gt;] [-verify &lt;n&gt;]
+ * </pre>
+ * Each non-empty line of the metrics file that does not start with # holds a
+ * metaclass name followed by an OCL expression, appended to each instance of the
+ * metaclass (e.g. "Method getAllStatements()->size" evaluates
+ * "&lt;method&gt;.getAllStatements()->size" for every Method). The results are written as
+ * one tab-separated table per metaclass, with one row per instance and one column
+ * per expression. The optional profile is the name of an {@link InstantiationProfile}
+ * constant.
+ * <br>
+ * Type expressions that {@link FlameMetrics} implements (e.g. "Type NON()" or
+ * "Type definedFeatures()->size()") are computed natively instead of by the OCL
+ * evaluator. With -verify, the native results of n sample types are first compared
+ * with their OCL evaluation; mismatches are reported and end the run with
+ * EXIT_VERIFY_ERROR, after the results are written.
+ */
+public class MetricsApplication implements IApplication {
+
+	public static final Integer EXIT_USAGE = 1;
+	public static final Integer EXIT_PROJECT_ERROR = 2;
+	public static final Integer EXIT_LOAD_ERROR = 3;
+	public static final Integer EXIT_OUTPUT_ERROR = 4;
+	public static final Integer EXIT_VERIFY_ERROR = 5;
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		Map<String, String> options = parseOptions((String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS));
+		for(String option: new String[]{"-project", "-use", "-model", "-metrics", "-output"})
+			if(options.get(option) == null){
+				System.err.println("Missing option " + option);
+				printUsage();
+				return EXIT_USAGE;
+			}
+
+		LinkedHashMap<String, List<String>> metrics;
+		try {
+			metrics = readMetrics(new File(options.get("-metrics")));
+		} catch (IOException e) {
+			System.err.println("Cannot read metrics file: " + e.getMessage());
+			return EXIT_USAGE;
+		}
+		int verifySamples = 0;
+		if(options.get("-verify") != null){
+			try {
+				verifySamples = Integer.parseInt(options.get("-verify"));
+			} catch (NumberFormatException e) {
+				System.err.println("Invalid number of verification samples " + options.get("-verify"));
+				printUsage();
+				return EXIT_USAGE;
+			}
+		}
+		JM2Loader loader = new JM2Loader();
+		if(options.get("-profile") != null){
+			try {
+				loader.setProfile(InstantiationProfile.valueOf(options.get("-profile")));
+			} catch (IllegalArgumentException e) {
+				System.err.println("Unknown profile " + options.get("-profile"));
+				printUsage();
+				return EXIT_USAGE;
+			}
+		}
+
+		long startTime = System.nanoTime();
+		IJavaProject javaProject;
+		try {
+			javaProject = importProject(new File(options.get("-project")));
+		} catch (CoreException e) {
+			System.err.println("Cannot import project: " + e.getMessage());
+			return EXIT_PROJECT_ERROR;
+		}
+		int severity = javaProject.getProject().findMaxProblemSeverity(IJavaModelMarker.JAVA_MODEL_PROBLEM_MARKER, false, IResource.DEPTH_INFINITE);
+		if(severity == IMarker.SEVERITY_ERROR){
+			System.err.println("Project has errors, cannot load");
+			return EXIT_PROJECT_ERROR;
+		}
+		System.out.println("Project imported in " + seconds(startTime) + " seconds.");
+
+		File modelFile = new File(options.get("-model")).getAbsoluteFile();
+		loader.setUseDirectory(options.get("-use"));
+		loader.setModelDirectory(modelFile.getParent());
+		loader.setModelFile(modelFile.getName());
+		startTime = System.nanoTime();
+		JUSE_ProgramingFacade api;
+		try {
+			api = loader.loadEJMMfromProject(javaProject);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return EXIT_LOAD_ERROR;
+		}
+		if(api == null || loader.getSystem() == null){
+			System.err.println("EJMM instantiation failed");
+			return EXIT_LOAD_ERROR;
+		}
+		System.out.println("EJMM instantiated in " + seconds(startTime) + " seconds.");
+
+		startTime = System.nanoTime();
+		FlameMetrics flameMetrics = new FlameMetrics(loader.getSystem(), loader.getRegistry(), loader.hasTypeClosures());
+		System.out.println("Native metrics indexed in " + seconds(startTime) + " seconds.");
+		int mismatches = 0;
+		if(verifySamples > 0){
+			startTime = System.nanoTime();
+			List<MObject> samples = sample(api.allInstances("Type"), verifySamples);
+			for(String mismatch: flameMetrics.verify(api, samples)){
+				System.err.println("Mismatch: " + mismatch);
+				mismatches++;
+			}
+			System.out.println(samples.size() + " types verified in " + seconds(startTime) + " seconds, " + mismatches + " mismatches.");
+		}
+
+		startTime = System.nanoTime();
+		try {
+			writeMetrics(loader, flameMetrics, metrics, new File(options.get("-output")));
+		} catch (IOException e) {
+			System.err.println("Cannot write results: " + e.getMessage());
+			return EXIT_OUTPUT_ERROR;
+		}
+		System.out.println("Metrics evaluated in " + seconds(startTime) + " seconds, written to " + options.get("-output"));
+		System.out.println("Query cache: " + loader.getQueryCache().getStatistics().replace("\n", "; "));
+		return mismatches == 0 ? EXIT_OK : EXIT_VERIFY_ERROR;
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	/**
+	 * Imports the project at the given directory into the workspace, or reuses the
+	 * workspace project with the same name, and builds it so that its problem markers
+	 * are up to date.
+	 *
+	 * @param directory
+	 * 			The directory containing the .project file
+	 * @return The Java project
+	 * @throws CoreException
+	 */
+	static IJavaProject importProject(File directory) throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IProjectDescription description = workspace.loadProjectDescription(new Path(new File(directory, ".project").getAbsolutePath()));
+		IProject project = workspace.getRoot().getProject(description.getName());
+		if(!project.exists())
+			project.create(description, null);
+		if(!project.isOpen())
+			project.open(null);
+		project.refreshLocal(IResource.DEPTH_INFINITE, null);
+		project.build(IncrementalProjectBuilder.FULL_BUILD, null);
+		return JavaCore.create(project);
+	}
+
+	/**
+	 * Reads a metrics file, grouping the expressions by metaclass in file order.
+	 *
+	 * @param file
+	 * 			The metrics file
+	 * @return The OCL expressions of each metaclass
+	 * @throws IOException
+	 */
+	static LinkedHashMap<String, List<String>> readMetrics(File file) throws IOException {
+		LinkedHashMap<String, List<String>> metrics = new LinkedHashMap<String, List<String>>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while((line = reader.readLine()) != null){
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] parts = line.split("\\s+", 2);
+				if(parts.length < 2)
+					throw new IOException("Missing expression for metaclass " + parts[0]);
+				List<String> expressions = metrics.get(parts[0]);
+				if(expressions == null){
+					expressions = new ArrayList<String>();
+					metrics.put(parts[0], expressions);
+				}
+				expressions.add(parts[1]);
+			}
+		} finally {
+			reader.close();
+		}
+		return metrics;
+	}
+
+	/**
+	 * Picks meta-objects evenly spread over a collection.
+	 *
+	 * @param objects
+	 * 			The meta-objects
+	 * @param count
+	 * 			The number of meta-objects to pick
+	 * @return At most count meta-objects, sorted by name
+	 */
+	static List<MObject> sample(Collection<MObject> objects, int count){
+		List<MObject> sorted = new ArrayList<MObject>(objects);
+		Collections.sort(sorted, new Comparator<MObject>() {
+			@Override
+			public int compare(MObject o1, MObject o2) {
+				return o1.name().compareTo(o2.name());
+			}
+		});
+		if(sorted.size() <= count)
+			return sorted;
+		List<MObject> samples = new ArrayList<MObject>();
+		for(int i = 0; i != count; ++i)
+			samples.add(sorted.get((int)((long)i*sorted.size()/count)));
+		return samples;
+	}
+
+	private static void writeMetrics(JM2Loader loader, FlameMetrics flameMetrics, Map<String, List<String>> metrics, File file) throws IOException {
+		JUSE_ProgramingFacade api = loader.getFacade();
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+		try {
+			for(Map.Entry<String, List<String>> entry: metrics.entrySet()){
+				writer.print(entry.getKey());
+				for(String expression: entry.getValue())
+					writer.print("\t" + expression);
+				writer.println();
+				for(MObject instance: api.allInstances(entry.getKey())){
+					writer.print(instance.toString());
+					for(String expression: entry.getValue()){
+						if("Type".equals(entry.getKey()) && FlameMetrics.supports(expression)){
+							writer.print("\t" + flameMetrics.evaluate(instance, expression));
+							continue;
+						}
+						Value value = loader.evaluateQuery(instance.toString() + "." + expression);
+						writer.print("\t" + value);
+					}
+					writer.println();
+				}
+				writer.println();
+			}
+		} finally {
+			writer.close();
+		}
+		if(writer.checkError())
+			throw new IOException("Error writing " + file);
+	}
+
+	private static Map<String, String> parseOptions(String[] args){
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		if(args == null)
+			return options;
+		for(int i = 0; i < args.length - 1; ++i)
+			if(args[i].startsWith("-") && !args[i + 1].startsWith("-"))
+				options.put(args[i], args[++i]);
+		return options;
+	}
+
+	private static void printUsage(){
+		System.err.println("Usage: -application m2dm.metrics -project <project directory> -use <USE directory> "
+				+ "-model <EJMM .use file> -metrics <metrics file> -output <results file> [-profile <profile>] [-verify <n>]");
+	}
+
+	private static double seconds(long startTime){
+		return (System.nanoTime() - startTime)/1000000000d;
+	}
+}
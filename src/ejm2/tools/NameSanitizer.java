@@ -0,0 +1,89 @@
+package ejm2.tools;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns Java element names and handle identifiers into valid USE meta-object names,
+ * following the rules of JM2Loader.processName: letters, digits and underscores are
+ * kept, '$' becomes '_', an escaped array bracket ("\[") becomes
+ * {@value #ARRAY_PARAMETER_IDENTIFIER} and every other character is dropped.
+ * <br>
+ * Results are cached, so sanitizing an identifier that was already seen returns the
+ * same String instance without allocating. Identifiers that need no change are
+ * returned as they are.
+ */
+public class NameSanitizer {
+
+	static final String ARRAY_PARAMETER_IDENTIFIER = "ARRAY_PARAM";
+
+	private final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Returns the sanitized form of the given name, from the cache when possible.
+	 *
+	 * @param name
+	 * 			The string to process
+	 * @return The sanitized name
+	 */
+	public String sanitize(String name){
+		String sanitized = cache.get(name);
+		if(sanitized == null){
+			sanitized = compute(name);
+			String previous = cache.putIfAbsent(name, sanitized);
+			if(previous != null)
+				sanitized = previous;
+		}
+		return sanitized;
+	}
+
+	/**
+	 * Discards all cached names.
+	 */
+	public void clear(){
+		cache.clear();
+	}
+
+	/**
+	 * Returns the number of cached names.
+	 *
+	 * @return The cache size
+	 */
+	public int size(){
+		return cache.size();
+	}
+
+	/**
+	 * Sanitizes the given name without using the cache.
+	 *
+	 * @param name
+	 * 			The string to process
+	 * @return The sanitized name, or the name itself if it is already valid
+	 */
+	static String compute(String name){
+		int length = name.length();
+		int i = 0;
+		while(i != length && isKept(name.charAt(i)))
+			i++;
+		if(i == length)
+			return name;
+
+		StringBuilder acc = new StringBuilder(length + ARRAY_PARAMETER_IDENTIFIER.length());
+		acc.append(name, 0, i);
+		for(; i != length; i++){
+			char c = name.charAt(i);
+			if(isKept(c))
+				acc.append(c);
+			else
+				if(c == '$')
+					acc.append('_');
+				else
+					if( c == '\\' && ((i + 1) < length) && name.charAt(i+1) == '[')
+						acc.append(ARRAY_PARAMETER_IDENTIFIER);
+		}
+		return acc.toString();
+	}
+
+	private static boolean isKept(char c){
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+	}
+}
@@ -0,0 +1,45 @@
+package ejm2.tools;
+
+import java.util.HashMap;
+
+/**
+ * Allocates unique meta-object names for metaclasses whose instances have no natural
+ * identifier (e.g. Statement subclasses and CatchClause). Names are the metaclass
+ * name followed by a per-metaclass counter starting at 1, so they are the same
+ * on every instantiation of the same project.
+ * <br>
+ * Allocating a name is a single map lookup, instead of counting all existing
+ * instances of the metaclass in the USE session.
+ */
+public class ObjectNameAllocator {
+
+	private final HashMap<String, int[]> counters = new HashMap<String, int[]>();
+
+	/**
+	 * Returns the next unused name for the given metaclass.
+	 *
+	 * @param className
+	 * 			The metaclass name
+	 * @return The metaclass name followed by the next counter value (e.g. Block12)
+	 */
+	public String nextName(String className){
+		int[] counter = counters.get(className);
+		if(counter == null){
+			counter = new int[1];
+			counters.put(className, counter);
+		}
+		return className + (++counter[0]);
+	}
+
+	/**
+	 * Returns how many names were allocated for the given metaclass.
+	 *
+	 * @param className
+	 * 			The metaclass name
+	 * @return The number of names allocated so far
+	 */
+	public int count(String className){
+		int[] counter = counters.get(className);
+		return counter == null ? 0 : counter[0];
+	}
+}
@@ -0,0 +1,205 @@
+package ejm2.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IInitializer;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.Signature;
+
+/**
+ * Snapshot of the Java model information needed by the first instantiation phase
+ * for one package fragment: its compilation units and class files, their types,
+ * fields, methods and initializers, with flags and handle identifiers.
+ * <br>
+ * Reading a snapshot only accesses the Java model, never the USE session, so
+ * several snapshots can be read concurrently. The meta-objects are then created
+ * from the snapshots by JM2Loader, one package fragment at a time and in the same
+ * order as the Java model is traversed.
+ */
+class PackageFragmentInfo {
+
+	final IPackageFragment packageFragment;
+	final String name;
+	final String handleIdentifier;
+	final List<TypeRootInfo> compilationUnits = new ArrayList<TypeRootInfo>();
+	final List<TypeRootInfo> classFiles = new ArrayList<TypeRootInfo>();
+
+	/**
+	 * Reads the given package fragment from the Java model.
+	 *
+	 * @param packageFragment
+	 * 			The package fragment to read
+	 * @throws JavaModelException
+	 */
+	PackageFragmentInfo(IPackageFragment packageFragment) throws JavaModelException {
+		this.packageFragment = packageFragment;
+		name = packageFragment.getElementName();
+		handleIdentifier = packageFragment.getHandleIdentifier();
+		for(ICompilationUnit compUnit: packageFragment.getCompilationUnits())
+			compilationUnits.add(readCompilationUnit(compUnit));
+		for(IClassFile classFile: packageFragment.getClassFiles()){
+			TypeRootInfo classFileInfo = new TypeRootInfo(classFile);
+			classFileInfo.types.add(new TypeInfo(classFile.getType()));
+			classFiles.add(classFileInfo);
+		}
+	}
+
+	/**
+	 * Reads the given package fragment if it contains Java resources.
+	 *
+	 * @param packageFragment
+	 * 			The package fragment to read
+	 * @return The package fragment snapshot, null if it has no Java resources
+	 * @throws JavaModelException
+	 */
+	static PackageFragmentInfo read(IPackageFragment packageFragment) throws JavaModelException {
+		if(!packageFragment.containsJavaResources())
+			return null;
+		return new PackageFragmentInfo(packageFragment);
+	}
+
+	/**
+	 * Reads a single compilation unit and all the types declared in it.
+	 *
+	 * @param compUnit
+	 * 			The compilation unit to read
+	 * @return The compilation unit snapshot
+	 * @throws JavaModelException
+	 */
+	static TypeRootInfo readCompilationUnit(ICompilationUnit compUnit) throws JavaModelException {
+		TypeRootInfo compUnitInfo = new TypeRootInfo(compUnit);
+		for(IType type: compUnit.getAllTypes())
+			compUnitInfo.types.add(new TypeInfo(type));
+		return compUnitInfo;
+	}
+
+	/**
+	 * Reads the anonymous types declared inside a given member, in occurrence order.
+	 */
+	private static List<TypeInfo> readAnonymousTypes(IMember member) throws JavaModelException {
+		List<TypeInfo> anonymousTypes = new ArrayList<TypeInfo>();
+		if(member.isBinary())
+			return anonymousTypes;
+		int anonymousTypeOccurrenceCount = 1;
+		IType anonymousClass = null;
+		do{
+			anonymousClass = member.getType("", anonymousTypeOccurrenceCount);
+			if(anonymousClass != null && anonymousClass.exists())
+				anonymousTypes.add(new TypeInfo(anonymousClass));
+			anonymousTypeOccurrenceCount++;
+		}while(anonymousClass != null && anonymousClass.exists());
+		return anonymousTypes;
+	}
+
+	/**
+	 * Snapshot of a compilation unit or class file.
+	 */
+	static class TypeRootInfo {
+		final IJavaElement typeRoot;
+		final String name;
+		final String handleIdentifier;
+		final List<TypeInfo> types = new ArrayList<TypeInfo>();
+
+		TypeRootInfo(IJavaElement typeRoot){
+			this.typeRoot = typeRoot;
+			name = typeRoot.getElementName();
+			handleIdentifier = typeRoot.getHandleIdentifier();
+		}
+	}
+
+	/**
+	 * Snapshot of a type, including its members and the anonymous types declared in it.
+	 */
+	static class TypeInfo {
+		final String elementName;
+		final String handleIdentifier;
+		final String typeQualifiedName;
+		final int flags;
+		/**
+		 * Keys under which the Type meta-object is registered in the loader's type map,
+		 * in registration order.
+		 */
+		final List<String> typeKeys = new ArrayList<String>();
+		final List<MemberInfo> fields = new ArrayList<MemberInfo>();
+		final List<MemberInfo> methods = new ArrayList<MemberInfo>();
+		final List<InitializerInfo> initializers = new ArrayList<InitializerInfo>();
+		final List<TypeInfo> anonymousTypes;
+
+		TypeInfo(IType type) throws JavaModelException {
+			elementName = type.getElementName();
+			handleIdentifier = type.getHandleIdentifier();
+			typeQualifiedName = type.getTypeQualifiedName();
+			flags = type.getFlags();
+
+			typeKeys.add(type.getFullyQualifiedName());
+			typeKeys.add(type.getFullyQualifiedParameterizedName());
+			typeKeys.add(type.getFullyQualifiedName('.'));
+			typeKeys.add(type.getElementName());
+			typeKeys.add(Signature.getSimpleName(type.getFullyQualifiedName()));
+			typeKeys.add(Signature.getSimpleName(type.getFullyQualifiedName('.')));
+			typeKeys.add(Signature.createTypeSignature(type.getFullyQualifiedName('.').toCharArray(), type.isResolved()));
+
+			for(IField field: type.getFields())
+				fields.add(new MemberInfo(field));
+			for(IMethod method: type.getMethods())
+				methods.add(new MemberInfo(method));
+			for(IInitializer initializer: type.getInitializers())
+				initializers.add(new InitializerInfo(initializer));
+			anonymousTypes = readAnonymousTypes(type);
+		}
+	}
+
+	/**
+	 * Snapshot of a field or method.
+	 */
+	static class MemberInfo {
+		final String elementName;
+		final String handleIdentifier;
+		final String key;
+		final int flags;
+		final boolean isConstructor;
+		final List<TypeInfo> anonymousTypes;
+
+		MemberInfo(IField field) throws JavaModelException {
+			elementName = field.getElementName();
+			handleIdentifier = field.getHandleIdentifier();
+			key = field.getKey();
+			flags = field.getFlags();
+			isConstructor = false;
+			anonymousTypes = readAnonymousTypes(field);
+		}
+
+		MemberInfo(IMethod method) throws JavaModelException {
+			elementName = method.getElementName();
+			handleIdentifier = method.getHandleIdentifier();
+			key = method.getKey();
+			flags = method.getFlags();
+			isConstructor = method.isConstructor();
+			anonymousTypes = readAnonymousTypes(method);
+		}
+	}
+
+	/**
+	 * Snapshot of an initializer.
+	 */
+	static class InitializerInfo {
+		final String elementName;
+		final String handleIdentifier;
+		final int occurrenceCount;
+
+		InitializerInfo(IInitializer initializer){
+			elementName = initializer.getElementName();
+			handleIdentifier = initializer.getHandleIdentifier();
+			occurrenceCount = initializer.getOccurrenceCount();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package ejm2.tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Method bodies whose statements have not been instantiated yet, grouped by the
+ * handle identifier of their compilation unit.
+ * <br>
+ * Only the method handle identifier and the source range of its declaration are
+ * kept, which is enough to find the MethodDeclaration again in a new AST of the
+ * compilation unit. The ranges stay valid as long as the compilation unit is not
+ * changed; changed compilation units are reinstantiated, and their entries recorded
+ * again, by the incremental updates.
+ */
+class PendingBodies {
+
+	/**
+	 * Location of one method declaration in its compilation unit.
+	 */
+	static class PendingBody {
+		final String methodHandle;
+		final int startPosition;
+		final int length;
+
+		PendingBody(String methodHandle, int startPosition, int length){
+			this.methodHandle = methodHandle;
+			this.startPosition = startPosition;
+			this.length = length;
+		}
+	}
+
+	private final HashMap<String, List<PendingBody>> bodies = new HashMap<String, List<PendingBody>>();
+	private int size = 0;
+
+	/**
+	 * Records a method body to instantiate later.
+	 *
+	 * @param compilationUnitHandle
+	 * 			The handle identifier of the compilation unit declaring the method
+	 * @param methodHandle
+	 * 			The handle identifier of the method
+	 * @param startPosition
+	 * 			The start position of the method declaration
+	 * @param length
+	 * 			The length of the method declaration
+	 */
+	synchronized void add(String compilationUnitHandle, String methodHandle, int startPosition, int length){
+		List<PendingBody> unitBodies = bodies.get(compilationUnitHandle);
+		if(unitBodies == null){
+			unitBodies = new ArrayList<PendingBody>();
+			bodies.put(compilationUnitHandle, unitBodies);
+		}
+		unitBodies.add(new PendingBody(methodHandle, startPosition, length));
+		size++;
+	}
+
+	/**
+	 * Removes and returns the pending bodies of a compilation unit.
+	 *
+	 * @param compilationUnitHandle
+	 * 			The handle identifier of the compilation unit
+	 * @return The pending bodies, empty if there are none
+	 */
+	synchronized List<PendingBody> removeCompilationUnit(String compilationUnitHandle){
+		List<PendingBody> unitBodies = bodies.remove(compilationUnitHandle);
+		if(unitBodies == null)
+			return new ArrayList<PendingBody>(0);
+		size -= unitBodies.size();
+		return unitBodies;
+	}
+
+	/**
+	 * Removes and returns the pending body of a method.
+	 *
+	 * @param compilationUnitHandle
+	 * 			The handle identifier of the compilation unit declaring the method
+	 * @param methodHandle
+	 * 			The handle identifier of the method
+	 * @return The pending body, null if the method has none
+	 */
+	synchronized PendingBody removeMethod(String compilationUnitHandle, String methodHandle){
+		List<PendingBody> unitBodies = bodies.get(compilationUnitHandle);
+		if(unitBodies == null)
+			return null;
+		for(Iterator<PendingBody> i = unitBodies.iterator(); i.hasNext();){
+			PendingBody body = i.next();
+			if(body.methodHandle.equals(methodHandle)){
+				i.remove();
+				size--;
+				if(unitBodies.isEmpty())
+					bodies.remove(compilationUnitHandle);
+				return body;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the pending bodies of the given compilation units.
+	 *
+	 * @param compilationUnitHandles
+	 * 			The handle identifiers of the compilation units
+	 */
+	synchronized void removeAll(Collection<String> compilationUnitHandles){
+		for(String handle: compilationUnitHandles)
+			removeCompilationUnit(handle);
+	}
+
+	/**
+	 * @return The handle identifiers of the compilation units with pending bodies
+	 */
+	synchronized Collection<String> getCompilationUnits(){
+		return new ArrayList<String>(bodies.keySet());
+	}
+
+	/**
+	 * @return The number of pending bodies
+	 */
+	synchronized int size(){
+		return size;
+	}
+}
@@ -0,0 +1,205 @@
+package ejm2.tools;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.tzi.use.uml.ocl.value.CollectionValue;
+import org.tzi.use.uml.ocl.value.Value;
+
+/**
+ * Least recently used cache of OCL query results, keyed by the normalized query
+ * text. Results are only valid for the model generation they were computed on (see
+ * LoaderFacade.getGeneration): the whole cache is invalidated as soon as a lookup
+ * sees a newer generation.
+ * <br>
+ * The cache is bounded both by its number of entries and by an estimate of the
+ * memory its results retain. Collections are estimated by their number of element
+ * references, since their elements (meta-objects, numbers, names) are mostly shared
+ * with the system state. Nested collections, e.g. the sets returned by
+ * "Type.allInstances->collect(allInheritedFeatures())", are not shared, so they are
+ * estimated recursively.
+ */
+public class QueryCache {
+
+	// Rough sizes, in bytes, of an entry, of a nested collection and of one collection
+	// element reference
+	private static final long ENTRY_BYTES = 128;
+	private static final long COLLECTION_BYTES = 64;
+	private static final long ELEMENT_BYTES = 16;
+
+	private final int maxEntries;
+	private final long maxBytes;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long generation = -1;
+	private long bytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long invalidations = 0;
+
+	private static class Entry {
+		final Value value;
+		final long bytes;
+
+		Entry(Value value, long bytes){
+			this.value = value;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * @param maxEntries
+	 * 			The maximum number of cached results
+	 * @param maxBytes
+	 * 			The maximum estimated memory retained by the cached results
+	 */
+	public QueryCache(int maxEntries, long maxBytes){
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cached result of a query.
+	 *
+	 * @param expression
+	 * 			The OCL expression
+	 * @param currentGeneration
+	 * 			The current model generation
+	 * @return The cached result, null if there is none for the current generation
+	 */
+	public synchronized Value get(String expression, long currentGeneration){
+		invalidateIfOlder(currentGeneration);
+		Entry entry = entries.get(normalize(expression));
+		if(entry == null){
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Caches the result of a query. Results computed on a generation that is no longer
+	 * the current one are ignored.
+	 *
+	 * @param expression
+	 * 			The OCL expression
+	 * @param valueGeneration
+	 * 			The model generation the result was computed on
+	 * @param currentGeneration
+	 * 			The current model generation
+	 * @param value
+	 * 			The result
+	 */
+	public synchronized void put(String expression, long valueGeneration, long currentGeneration, Value value){
+		invalidateIfOlder(currentGeneration);
+		if(value == null || valueGeneration != currentGeneration)
+			return;
+		String key = normalize(expression);
+		Entry entry = new Entry(value, estimateBytes(key, value));
+		if(entry.bytes > maxBytes)
+			return;
+		Entry previous = entries.put(key, entry);
+		if(previous != null)
+			bytes -= previous.bytes;
+		bytes += entry.bytes;
+
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()){
+			bytes -= eldest.next().getValue().bytes;
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Discards all cached results. The statistics are kept.
+	 */
+	public synchronized void clear(){
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return The number of lookups that found a result, since the cache was created
+	 */
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	/**
+	 * @return The number of lookups that found no result, since the cache was created
+	 */
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * @return A summary of the cache contents and statistics
+	 */
+	public synchronized String getStatistics(){
+		long lookups = hits + misses;
+		return entries.size() + "/" + maxEntries + " results, about " + bytes/1024 + "/" + maxBytes/1024 + " KB\n"
+				+ hits + " hits, " + misses + " misses"
+				+ (lookups == 0 ? "" : " (" + Math.round(100d*hits/lookups) + "% hit rate)") + "\n"
+				+ evictions + " evictions, " + invalidations + " invalidations by model changes";
+	}
+
+	private void invalidateIfOlder(long currentGeneration){
+		if(generation == currentGeneration)
+			return;
+		if(!entries.isEmpty())
+			invalidations++;
+		clear();
+		generation = currentGeneration;
+	}
+
+	private static long estimateBytes(String key, Value value){
+		return ENTRY_BYTES + 2L*key.length() + elementBytes(value);
+	}
+
+	// The memory retained by the elements of a collection, including nested collections
+	private static long elementBytes(Value value){
+		if(!(value instanceof CollectionValue))
+			return 0;
+		CollectionValue collection = (CollectionValue)value;
+		long estimate = ELEMENT_BYTES*collection.size();
+		for(Value element: collection)
+			if(element instanceof CollectionValue)
+				estimate += COLLECTION_BYTES + elementBytes(element);
+		return estimate;
+	}
+
+	/**
+	 * Normalizes the text of an OCL expression, so that queries that only differ in
+	 * whitespace share the same result: runs of whitespace outside of string
+	 * literals become a single space, and leading and trailing whitespace is removed.
+	 *
+	 * @param expression
+	 * 			The OCL expression
+	 * @return The normalized expression
+	 */
+	static String normalize(String expression){
+		StringBuilder normalized = new StringBuilder(expression.length());
+		boolean inString = false;
+		boolean pendingSpace = false;
+		for(int i = 0; i != expression.length(); ++i){
+			char c = expression.charAt(i);
+			if(!inString && Character.isWhitespace(c)){
+				pendingSpace = normalized.length() != 0;
+				continue;
+			}
+			if(pendingSpace){
+				normalized.append(' ');
+				pendingSpace = false;
+			}
+			if(c == '\'')
+				inString = !inString;
+			normalized.append(c);
+		}
+		return normalized.toString();
+	}
+}
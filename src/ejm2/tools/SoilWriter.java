@@ -0,0 +1,239 @@
+package ejm2.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.tzi.use.uml.mm.MAssociation;
+import org.tzi.use.uml.mm.MAttribute;
+import org.tzi.use.uml.ocl.value.BooleanValue;
+import org.tzi.use.uml.ocl.value.CollectionValue;
+import org.tzi.use.uml.ocl.value.EnumValue;
+import org.tzi.use.uml.ocl.value.IntegerValue;
+import org.tzi.use.uml.ocl.value.ObjectValue;
+import org.tzi.use.uml.ocl.value.StringValue;
+import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MObject;
+
+/**
+ * Writes the meta-objects, attribute values and links created by the loader as
+ * SOIL commands, so that the instantiation can be replayed with readSOIL in another
+ * USE session (e.g. a headless JVM with more memory).
+ * <br>
+ * Commands are encoded into a fixed-size buffer that is written to the file channel
+ * whenever it fills up, so memory use does not depend on the instantiation size.
+ */
+public class SoilWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final StringBuilder line = new StringBuilder();
+	private long commandCount = 0;
+
+	/**
+	 * Creates (or truncates) the given SOIL file.
+	 *
+	 * @param soilFile
+	 * 			The file to write
+	 * @throws IOException
+	 */
+	public SoilWriter(File soilFile) throws IOException {
+		channel = FileChannel.open(soilFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the command that creates the given meta-object.
+	 *
+	 * @param object
+	 * 			The created meta-object
+	 */
+	public void createObject(MObject object){
+		line.append("!create ").append(object.name()).append(" : ").append(object.cls().name());
+		endCommand();
+	}
+
+	/**
+	 * Writes the command that destroys the given meta-object.
+	 *
+	 * @param object
+	 * 			The meta-object to destroy
+	 */
+	public void destroyObject(MObject object){
+		line.append("!destroy ").append(object.name());
+		endCommand();
+	}
+
+	/**
+	 * Writes the command that assigns an attribute value of a meta-object.
+	 *
+	 * @param object
+	 * 			The meta-object
+	 * @param attribute
+	 * 			The attribute
+	 * @param value
+	 * 			The new value
+	 */
+	public void setAttribute(MObject object, MAttribute attribute, Value value){
+		line.append('!').append(object.name()).append('.').append(attribute.name()).append(" := ");
+		appendValue(value);
+		endCommand();
+	}
+
+	/**
+	 * Writes the command that creates a link.
+	 *
+	 * @param association
+	 * 			The association of the link
+	 * @param linkedObjects
+	 * 			The linked meta-objects, in association end order
+	 */
+	public void insertLink(MAssociation association, List<MObject> linkedObjects){
+		line.append("!insert (");
+		for(int i = 0; i != linkedObjects.size(); ++i){
+			if(i != 0)
+				line.append(", ");
+			line.append(linkedObjects.get(i).name());
+		}
+		line.append(") into ").append(association.name());
+		endCommand();
+	}
+
+	/**
+	 * Writes the command that deletes a link.
+	 *
+	 * @param association
+	 * 			The association of the link
+	 * @param linkedObjects
+	 * 			The linked meta-objects, in association end order
+	 */
+	public void deleteLink(MAssociation association, List<MObject> linkedObjects){
+		line.append("!delete (");
+		for(int i = 0; i != linkedObjects.size(); ++i){
+			if(i != 0)
+				line.append(", ");
+			line.append(linkedObjects.get(i).name());
+		}
+		line.append(") from ").append(association.name());
+		endCommand();
+	}
+
+	/**
+	 * Returns the number of commands written so far.
+	 *
+	 * @return The command count
+	 */
+	public long getCommandCount(){
+		return commandCount;
+	}
+
+	/**
+	 * Writes all pending commands and closes the file.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void appendValue(Value value){
+		if(value == null || value.isUndefined())
+			line.append("null");
+		else
+		if(value instanceof BooleanValue)
+			line.append(((BooleanValue) value).value());
+		else
+		if(value instanceof IntegerValue)
+			line.append(((IntegerValue) value).value());
+		else
+		if(value instanceof StringValue)
+			appendString(((StringValue) value).value());
+		else
+		if(value instanceof EnumValue)
+			line.append(((EnumValue) value).type().name()).append("::").append(((EnumValue) value).value());
+		else
+		if(value instanceof ObjectValue)
+			line.append(((ObjectValue) value).value().name());
+		else
+		if(value instanceof CollectionValue){
+			line.append("Set{");
+			boolean first = true;
+			for(Value element: (CollectionValue) value){
+				if(!first)
+					line.append(", ");
+				appendValue(element);
+				first = false;
+			}
+			line.append('}');
+		}
+		else
+			throw new IllegalStateException("Unsupported attribute value for SOIL export: " + value);
+	}
+
+	private void appendString(String s){
+		line.append('\'');
+		for(int i = 0; i != s.length(); ++i){
+			char c = s.charAt(i);
+			switch(c){
+			case '\'':
+				line.append("\\'");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				line.append(c);
+			}
+		}
+		line.append('\'');
+	}
+
+	private void endCommand(){
+		line.append('\n');
+		CharBuffer chars = CharBuffer.wrap(line);
+		try {
+			CoderResult result;
+			do{
+				result = encoder.encode(chars, buffer, false);
+				if(result.isOverflow())
+					flush();
+			}while(result.isOverflow());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		line.setLength(0);
+		commandCount++;
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
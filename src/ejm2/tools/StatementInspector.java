@@ -54,7 +54,6 @@ import org.tzi.use.uml.ocl.value.StringValue;
 import org.tzi.use.uml.ocl.value.Value;
 import org.tzi.use.uml.sys.MLink;
 import org.tzi.use.uml.sys.MObject;
-import org.tzi.use.uml.sys.MSystemException;
 
 /**
  * Class responsible for processing the statements of a method or initializer.
@@ -66,7 +65,17 @@ import org.tzi.use.uml.sys.MSystemException;
 public class StatementInspector {
 	
 	private static final String CATCH_CLAUSE_NAME = "CatchClause";
+	private JM2Loader loader;
 	private JUSE_ProgramingFacade api;
+	private MetamodelRegistry registry;
+	private TypeResolver typeResolver;
+	private HashMap<String, MObject> memberBindings;
+	
+	// The Types, Methods and Fields already meta-linked to each Statement
+	private final HashMap<MObject, HashSet<MObject>> linkedTargets = new HashMap<MObject, HashSet<MObject>>();
+	
+	// Accumulates the dependencies and conditional operators of the statement being inspected
+	private final ExpressionAnalyzer analyzer = new ExpressionAnalyzer();
 	
 	// The Method or Initializer MObject that is currently being analyzed
 	private MObject statementLocation;
@@ -75,8 +84,12 @@ public class StatementInspector {
 	// If false, it is expected to be an initializer instead.
 	private boolean isMethod;
 	
-	public StatementInspector(JUSE_ProgramingFacade api, MObject statementLocation, boolean isMethod) {
-		this.api = api;
+	public StatementInspector(JM2Loader loader, MObject statementLocation, boolean isMethod) {
+		this.loader = loader;
+		this.api = loader.getFacade();
+		this.registry = loader.getRegistry();
+		this.typeResolver = loader.getTypeResolver();
+		this.memberBindings = loader.getMemberBindings();
 		this.statementLocation = statementLocation;
 		this.isMethod = isMethod;
 	}
@@ -97,12 +110,10 @@ public class StatementInspector {
 			node.toString();
 			e.printStackTrace();
 		}
-		int allInstancesCount = api.allInstances(className).size()+1;
-
-		MObject statementMObject = api.createObject(className+allInstancesCount, className);
+		MObject statementMObject = api.createObject(loader.getNameAllocator().nextName(className), className);
 		// api.setObjectAttribute(statementMObject, api.attributeByName(statementMObject, "contents"), new StringValue(node.toString()));
-		api.setObjectAttribute(statementMObject, api.attributeByName(statementMObject, "startPosition"), IntegerValue.valueOf(node.getStartPosition()));
-		api.setObjectAttribute(statementMObject, api.attributeByName(statementMObject, "length"), IntegerValue.valueOf(node.getLength()));
+		api.setObjectAttribute(statementMObject, registry.startPosition, IntegerValue.valueOf(node.getStartPosition()));
+		api.setObjectAttribute(statementMObject, registry.length, IntegerValue.valueOf(node.getLength()));
 		return statementMObject;
 	}
 	
@@ -189,82 +200,57 @@ public class StatementInspector {
 	}
 	
 	public void inspectStatement(AssertStatement node, MObject nodeMObject) {
-		Expression expression = node.getExpression();
-		int conditionalOperatorCount = 0;
-		if(expression != null){
-			analyzeStatementExpression(nodeMObject, expression);
-			conditionalOperatorCount = ExpressionAnalyzer.analyzeExpressionConditions(expression);
-		}
-		
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "conditionalOperatorCount"), IntegerValue.valueOf(conditionalOperatorCount));
-		
+		analyzeStatementExpression(nodeMObject, node.getExpression());
 	}
 	
 	public void inspectStatement(Block node, MObject nodeMObject) {
 		for(Object statement: node.statements()){
 			MObject statementMObject = createStatementObject((Statement) statement);
-			api.createLink(api.associationByName("A_Block_Statement"), Arrays.asList(nodeMObject, statementMObject));
+			api.createLink(registry.aBlockStatement, Arrays.asList(nodeMObject, statementMObject));
 			inspectStatement((Statement)statement, statementMObject);
 		}
 	}
 
 	public void inspectStatement(BreakStatement node, MObject nodeMObject) {
 		if(node.getLabel() != null)
-			api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "optionalLabel"), new StringValue(node.getLabel().toString()));
+			api.setObjectAttribute(nodeMObject, registry.breakStatementOptionalLabel, new StringValue(node.getLabel().toString()));
 	}
 	
 
 	public void inspectStatement(ConstructorInvocation node, MObject nodeMObject) {
-		HashSet<IBinding> dependencies = new HashSet<IBinding>(); 
-		int conditionalOperatorCount = 0;
+		analyzer.reset();
+		analyzer.addDependency(node.resolveConstructorBinding().getDeclaringClass());
+		analyzer.addDependency(node.resolveConstructorBinding());
 		
-		dependencies.add(node.resolveConstructorBinding().getDeclaringClass());
-		dependencies.add(node.resolveConstructorBinding());
+		for(Object argument: node.arguments())
+			analyzer.analyze((Expression) argument);
 		
-		for(Object argument: node.arguments()){
-			dependencies.addAll(Arrays.asList(ExpressionAnalyzer.analyzeExpressionDependencies((Expression) argument)));
-			conditionalOperatorCount += ExpressionAnalyzer.analyzeExpressionConditions((Expression) argument);
-		}
-		
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "conditionalOperatorCount"), IntegerValue.valueOf(conditionalOperatorCount));
+		api.setObjectAttribute(nodeMObject, registry.conditionalOperatorCount, IntegerValue.valueOf(analyzer.getConditionalOperatorCount()));
 		
 		for(Object ta: node.typeArguments()){
-			dependencies.add(((Type)ta).resolveBinding());
-		}
-		for(IBinding binding: dependencies){
-			if(binding instanceof ITypeBinding){
-				createTypeDependencyAssociation(nodeMObject, retrieveTypeObject((ITypeBinding)binding));
-				for(ITypeBinding argumentBinding: ((ITypeBinding)binding).getTypeArguments())
-					createTypeDependencyAssociation(nodeMObject, retrieveTypeObject(argumentBinding));
-			}else
-				if(binding instanceof IVariableBinding)
-					createFieldDependencyAssociation(nodeMObject, retrieveFieldObject((IVariableBinding)binding));
-				else
-					if(binding instanceof IMethodBinding)
-						createMethodDependencyAssociation(nodeMObject, retrieveMethodObject((IMethodBinding)binding));
-					else
-						System.out.println("Wrong binding");
+			analyzer.addDependency(((Type)ta).resolveBinding());
 		}
+		createDependencyAssociations(nodeMObject);
 	}
 	
 	
 
 	public void inspectStatement(ContinueStatement node, MObject nodeMObject) {
 		if(node.getLabel() != null)
-			api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "optionalLabel"), new StringValue(node.getLabel().toString()));
+			api.setObjectAttribute(nodeMObject, registry.continueStatementOptionalLabel, new StringValue(node.getLabel().toString()));
 	}
 	
 	public void inspectStatement(DoStatement node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
+		api.setObjectAttribute(nodeMObject, registry.doStatementBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		inspectStatement(body, bodyMObject);
 	}
 
 	public void inspectStatement(EnhancedForStatement node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
+		api.setObjectAttribute(nodeMObject, registry.enhancedForStatementBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		//TODO associate variable?
 		IVariableBinding parameterBinding = node.getParameter().resolveBinding();
 		
@@ -283,43 +269,19 @@ public class StatementInspector {
 	public void inspectStatement(ForStatement node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
-		HashSet<IBinding> dependencies = new HashSet<IBinding>();
+		api.setObjectAttribute(nodeMObject, registry.forStatementBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		
+		analyzer.reset();
 		Expression expression = node.getExpression();
-		int conditionalOperatorCount = 0;
-
-		if(expression != null){
-			dependencies.addAll(Arrays.asList(ExpressionAnalyzer.analyzeExpressionDependencies(expression)));
-			conditionalOperatorCount += ExpressionAnalyzer.analyzeExpressionConditions(expression);
-		}
-		
-		for(Object initializer: node.initializers()){
-			dependencies.addAll(Arrays.asList(ExpressionAnalyzer.analyzeExpressionDependencies((Expression) initializer)));
-			conditionalOperatorCount += ExpressionAnalyzer.analyzeExpressionConditions((Expression) initializer);
-		}
-		for(Object updater: node.updaters()){
-			dependencies.addAll(Arrays.asList(ExpressionAnalyzer.analyzeExpressionDependencies((Expression) updater)));
-			conditionalOperatorCount += ExpressionAnalyzer.analyzeExpressionConditions((Expression) updater);
-		}
-		
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "conditionalOperatorCount"), IntegerValue.valueOf(conditionalOperatorCount));
-
-		for(IBinding binding: dependencies){
-			if(binding instanceof ITypeBinding){
-				createTypeDependencyAssociation(nodeMObject, retrieveTypeObject((ITypeBinding)binding));
-				for(ITypeBinding argumentBinding: ((ITypeBinding)binding).getTypeArguments())
-					createTypeDependencyAssociation(nodeMObject, retrieveTypeObject(argumentBinding));
-			}else
-				if(binding instanceof IVariableBinding)
-					createFieldDependencyAssociation(nodeMObject, retrieveFieldObject((IVariableBinding)binding));
-				else
-					if(binding instanceof IMethodBinding)
-						createMethodDependencyAssociation(nodeMObject, retrieveMethodObject((IMethodBinding)binding));
-					else
-						System.out.println("Wrong binding");
-		}
+		if(expression != null)
+			analyzer.analyze(expression);
+		for(Object initializer: node.initializers())
+			analyzer.analyze((Expression) initializer);
+		for(Object updater: node.updaters())
+			analyzer.analyze((Expression) updater);
 		
+		api.setObjectAttribute(nodeMObject, registry.conditionalOperatorCount, IntegerValue.valueOf(analyzer.getConditionalOperatorCount()));
+		createDependencyAssociations(nodeMObject);
 
 		inspectStatement(body, bodyMObject);
 	}
@@ -329,13 +291,13 @@ public class StatementInspector {
 
 		Statement thenStatement = node.getThenStatement();
 		MObject thenMObject = createStatementObject(thenStatement);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "thenStatement"), new ObjectValue(api.classByName(thenStatement.getClass().getSimpleName()),thenMObject));
+		api.setObjectAttribute(nodeMObject, registry.ifStatementThenStatement, new ObjectValue(api.classByName(thenStatement.getClass().getSimpleName()),thenMObject));
 		inspectStatement(thenStatement, thenMObject);
 		
 		Statement elseStatement = node.getElseStatement();
 		if(elseStatement != null){
 			MObject elseMObject = createStatementObject(elseStatement);
-			api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "optionalElseStatement"), new ObjectValue(api.classByName(elseStatement.getClass().getSimpleName()),elseMObject));
+			api.setObjectAttribute(nodeMObject, registry.ifStatementOptionalElseStatement, new ObjectValue(api.classByName(elseStatement.getClass().getSimpleName()),elseMObject));
 			inspectStatement(elseStatement, elseMObject);
 		}
 	}
@@ -343,7 +305,7 @@ public class StatementInspector {
 	public void inspectStatement(LabeledStatement node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
+		api.setObjectAttribute(nodeMObject, registry.labeledStatementBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		inspectStatement(body, bodyMObject);
 	}
 
@@ -355,46 +317,28 @@ public class StatementInspector {
 	public void inspectStatement(SuperConstructorInvocation node, MObject nodeMObject) {
 		analyzeStatementExpression(nodeMObject, node.getExpression());
 		
-		HashSet<IBinding> dependencies = new HashSet<IBinding>(); 
-		int conditionalOperatorCount = 0;
-		
-		dependencies.add(node.resolveConstructorBinding().getDeclaringClass());
-		dependencies.add(node.resolveConstructorBinding());
+		analyzer.reset();
+		analyzer.addDependency(node.resolveConstructorBinding().getDeclaringClass());
+		analyzer.addDependency(node.resolveConstructorBinding());
 		
-		for(Object argument: node.arguments()){
-			dependencies.addAll(Arrays.asList(ExpressionAnalyzer.analyzeExpressionDependencies((Expression) argument)));
-			conditionalOperatorCount += ExpressionAnalyzer.analyzeExpressionConditions((Expression) argument);
-		}
+		for(Object argument: node.arguments())
+			analyzer.analyze((Expression) argument);
 		
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "conditionalOperatorCount"), IntegerValue.valueOf(conditionalOperatorCount));
+		api.setObjectAttribute(nodeMObject, registry.conditionalOperatorCount, IntegerValue.valueOf(analyzer.getConditionalOperatorCount()));
 		
 		for(Object ta: node.typeArguments()){
-			dependencies.add(((Type)ta).resolveBinding());
-		}
-		for(IBinding binding: dependencies){
-			if(binding instanceof ITypeBinding){
-				createTypeDependencyAssociation(nodeMObject, retrieveTypeObject((ITypeBinding)binding));
-				for(ITypeBinding argumentBinding: ((ITypeBinding)binding).getTypeArguments())
-					createTypeDependencyAssociation(nodeMObject, retrieveTypeObject(argumentBinding));
-			}else
-				if(binding instanceof IVariableBinding)
-					createFieldDependencyAssociation(nodeMObject, retrieveFieldObject((IVariableBinding)binding));
-				else
-					if(binding instanceof IMethodBinding)
-						createMethodDependencyAssociation(nodeMObject, retrieveMethodObject((IMethodBinding)binding));
-					else
-						System.out.println("Wrong binding");
-			
+			analyzer.addDependency(((Type)ta).resolveBinding());
 		}
+		createDependencyAssociations(nodeMObject);
 	}
 
 	public void inspectStatement(SwitchCase node, MObject nodeMObject) {
 		analyzeStatementExpression(nodeMObject, node.getExpression());
 
 		if(node.isDefault())
-			api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "isDefault"), BooleanValue.TRUE);
+			api.setObjectAttribute(nodeMObject, registry.switchCaseIsDefault, BooleanValue.TRUE);
 		else
-			api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "isDefault"), BooleanValue.FALSE);
+			api.setObjectAttribute(nodeMObject, registry.switchCaseIsDefault, BooleanValue.FALSE);
 	}
 
 	public void inspectStatement(SwitchStatement node, MObject nodeMObject) {
@@ -408,7 +352,7 @@ public class StatementInspector {
 	public void inspectStatement(SynchronizedStatement node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
+		api.setObjectAttribute(nodeMObject, registry.synchronizedStatementBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		
 		analyzeStatementExpression(nodeMObject, node.getExpression());
 
@@ -422,13 +366,13 @@ public class StatementInspector {
 	public void inspectStatement(TryStatement node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
+		api.setObjectAttribute(nodeMObject, registry.tryStatementBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		inspectStatement(body, bodyMObject);
 		
 		Statement finallyStatement = node.getFinally();
 		if(finallyStatement != null){
 			MObject finallyMObject = createStatementObject(finallyStatement);
-			api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "optionalFinallyBody"), new ObjectValue(api.classByName(finallyStatement.getClass().getSimpleName()),finallyMObject));
+			api.setObjectAttribute(nodeMObject, registry.tryStatementOptionalFinallyBody, new ObjectValue(api.classByName(finallyStatement.getClass().getSimpleName()),finallyMObject));
 			inspectStatement(finallyStatement, finallyMObject);
 		}
 				
@@ -439,7 +383,7 @@ public class StatementInspector {
 			catchClauseSet.add(new ObjectValue(catchClauseObjectType, catchClauseMObject));
 			inspectCatchClause((CatchClause)cc, catchClauseMObject);
 		}
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "catchClauses"), new SetValue(catchClauseObjectType,catchClauseSet));
+		api.setObjectAttribute(nodeMObject, registry.tryStatementCatchClauses, new SetValue(catchClauseObjectType,catchClauseSet));
 	}
 
 	/**
@@ -452,11 +396,10 @@ public class StatementInspector {
 	 * @return The newly created CatchClause MObject
 	 */
 	private MObject createCatchClauseObject(CatchClause cc) {
-		int allInstancesCount = api.allInstances(CATCH_CLAUSE_NAME).size()+1;
-		MObject catchClauseMObject = api.createObject(CATCH_CLAUSE_NAME+allInstancesCount, CATCH_CLAUSE_NAME);
+		MObject catchClauseMObject = api.createObject(loader.getNameAllocator().nextName(CATCH_CLAUSE_NAME), CATCH_CLAUSE_NAME);
 		// api.setObjectAttribute(catchClauseMObject, api.attributeByName(catchClauseMObject, "contents"), new StringValue(cc.toString()));
-		api.setObjectAttribute(catchClauseMObject, api.attributeByName(catchClauseMObject, "startPosition"), IntegerValue.valueOf(cc.getStartPosition()));
-		api.setObjectAttribute(catchClauseMObject, api.attributeByName(catchClauseMObject, "length"), IntegerValue.valueOf(cc.getLength()));
+		api.setObjectAttribute(catchClauseMObject, registry.startPosition, IntegerValue.valueOf(cc.getStartPosition()));
+		api.setObjectAttribute(catchClauseMObject, registry.length, IntegerValue.valueOf(cc.getLength()));
 		return catchClauseMObject;
 	}
 
@@ -473,38 +416,38 @@ public class StatementInspector {
 	public void inspectCatchClause(CatchClause node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
+		api.setObjectAttribute(nodeMObject, registry.catchClauseBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		if(node.getException().resolveBinding() != null){
 			MObject localVariableMObject = createLocalVariableObject(node.getException().resolveBinding().getJavaElement(), node.getException().resolveBinding().getType());
-			api.createLink(api.associationByName("A_CatchClause_LocalVariable"), Arrays.asList(nodeMObject, localVariableMObject));
+			api.createLink(registry.aCatchClauseLocalVariable, Arrays.asList(nodeMObject, localVariableMObject));
 		}
 		inspectStatement(body, bodyMObject);
 	}
 
 	public void inspectStatement(TypeDeclarationStatement node, MObject nodeMObject) {
-		MObject typeMObject = api.objectByName(JM2Loader.processName(node.resolveBinding().getJavaElement().getHandleIdentifier()));
+		MObject typeMObject = loader.getHandleIndex().get("Type", node.resolveBinding().getJavaElement().getHandleIdentifier());
 		if(typeMObject != null){
-			api.createLink(api.associationByName("A_Statement_Type"), Arrays.asList(nodeMObject, typeMObject));
-			api.createLink(api.associationByName("A_TypeDeclarationStatement_Type"), Arrays.asList(nodeMObject, typeMObject));
+			createLink(registry.aStatementType, Arrays.asList(nodeMObject, typeMObject));
+			api.createLink(registry.aTypeDeclarationStatementType, Arrays.asList(nodeMObject, typeMObject));
 		}
 	}
 
 	public void inspectStatement(VariableDeclarationStatement node, MObject nodeMObject) {
 		for(Object fragment: node.fragments()){
 			MObject localVariableMObject = createLocalVariableObject(((VariableDeclarationFragment)fragment).resolveBinding().getJavaElement(), ((VariableDeclarationFragment)fragment).resolveBinding().getType());
-			api.createLink(api.associationByName("A_VariableDeclarationStatement_LocalVariable"), Arrays.asList(nodeMObject, localVariableMObject));
+			api.createLink(registry.aVariableDeclarationStatementLocalVariable, Arrays.asList(nodeMObject, localVariableMObject));
 			if(((VariableDeclarationFragment) fragment).getInitializer() != null)
 				analyzeStatementExpression(nodeMObject, ((VariableDeclarationFragment)fragment).getInitializer());
 		}
 		MObject typeMObject = retrieveTypeObject(node.getType().resolveBinding());
 		if(typeMObject != null)
-			createLink(api.associationByName("A_Statement_Type"), Arrays.asList(nodeMObject, typeMObject));
+			createLink(registry.aStatementType, Arrays.asList(nodeMObject, typeMObject));
 	}
 
 	public void inspectStatement(WhileStatement node, MObject nodeMObject) {
 		Statement body = node.getBody();
 		MObject bodyMObject = createStatementObject(body);
-		api.setObjectAttribute(nodeMObject, api.attributeByName(nodeMObject, "body"), new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
+		api.setObjectAttribute(nodeMObject, registry.whileStatementBody, new ObjectValue(api.classByName(body.getClass().getSimpleName()),bodyMObject));
 		
 		analyzeStatementExpression(nodeMObject, node.getExpression());
 
@@ -522,23 +465,25 @@ public class StatementInspector {
 	 * @return The newly created LocalVariable MObject
 	 */
 	public MObject createLocalVariableObject(IJavaElement variableElement, ITypeBinding typeBinding){
-		MObject localVariableMObject = api.createObject(JM2Loader.processName(variableElement.getHandleIdentifier()), "LocalVariable");
-		api.setObjectAttribute(localVariableMObject, api.attributeByName(localVariableMObject, "name"), new StringValue(variableElement.getElementName()));
-		api.setObjectAttribute(localVariableMObject, api.attributeByName(localVariableMObject, "handleIdentifier"), new StringValue(variableElement.getHandleIdentifier()));
+		MObject localVariableMObject = api.createObject(loader.sanitizeName(variableElement.getHandleIdentifier()), "LocalVariable");
+		api.setObjectAttribute(localVariableMObject, registry.name, new StringValue(variableElement.getElementName()));
+		api.setObjectAttribute(localVariableMObject, registry.handleIdentifier, new StringValue(variableElement.getHandleIdentifier()));
+		loader.getHandleIndex().put("LocalVariable", variableElement.getHandleIdentifier(), localVariableMObject);
 		
 		int arrayCount =  Signature.getArrayCount(((ILocalVariable)variableElement).getTypeSignature());
-		api.setObjectAttribute(localVariableMObject, api.attributeByName(localVariableMObject, "arrayDimensions"), IntegerValue.valueOf(arrayCount));
+		if(registry.localVariableArrayDimensions != null)
+			api.setObjectAttribute(localVariableMObject, registry.localVariableArrayDimensions, IntegerValue.valueOf(arrayCount));
 
 		MObject typeMObject = retrieveTypeObject(typeBinding);
 		if(typeMObject != null)
-			api.createLink(api.associationByName("A_LocalVariable_Type"), Arrays.asList(localVariableMObject, typeMObject));
+			api.createLink(registry.aLocalVariableType, Arrays.asList(localVariableMObject, typeMObject));
 		
 		
 		if(this.isMethod)
-			api.createLink(api.associationByName("A_Method_LocalVariable"), Arrays.asList(statementLocation, localVariableMObject));
+			api.createLink(registry.aMethodLocalVariable, Arrays.asList(statementLocation, localVariableMObject));
 		else
 			if(statementLocation != null) //TODO statementLocation should never be null but happens with some initializers
-				api.createLink(api.associationByName("A_Initializer_LocalVariable"), Arrays.asList(statementLocation, localVariableMObject));
+				api.createLink(registry.aInitializerLocalVariable, Arrays.asList(statementLocation, localVariableMObject));
 		
 		return localVariableMObject;
 	}
@@ -551,58 +496,7 @@ public class StatementInspector {
 	 * @return The corresponding Type MObject, null if it is a type parameter.
 	 */
 	private MObject retrieveTypeObject(ITypeBinding typeBinding){
-		MObject object = null;
-		if(typeBinding.isTypeVariable())
-			return object;
-		
-		if(typeBinding.isWildcardType())
-			if(typeBinding.getBound() == null)
-				return object;
-			else
-				return retrieveTypeObject(typeBinding.getBound());
-		
-		IJavaElement element = typeBinding.getJavaElement();
-		
-		// Only the base type is retrieved, type arguments are ignored
-		String simpleName = typeBinding.getName();
-		simpleName = simpleName.split("<")[0];
-		String qualifiedName = typeBinding.getQualifiedName();
-		qualifiedName = qualifiedName.split("<")[0];
-		
-		// For anonymous types, their corresponding superclass is retrieved instead
-		if(typeBinding.isAnonymous() || qualifiedName.isEmpty()){
-			ITypeBinding superClassBinding = typeBinding.getSuperclass();
-			if(superClassBinding != null)
-				return retrieveTypeObject(superClassBinding);
-			else
-				return retrieveTypeObject(typeBinding.getInterfaces()[0]);
-		}
-			
-		if(element != null)
-			object = api.objectByName(JM2Loader.processName(element.getHandleIdentifier()));
-		
-		// Several different attempts by trying different combinations of names and sources
-		if(object == null){
-			if(simpleName != null && !simpleName.isEmpty()){
-				object = api.objectByName(JM2Loader.processName(simpleName));
-				if(object == null){
-					HashMap<String, MObject> allTypeObjects = JM2Loader.getAllTypeObjects();
-					object = allTypeObjects.get(simpleName);
-					if(object == null){
-						if(qualifiedName != null && !qualifiedName.isEmpty()){
-							object = api.objectByName(JM2Loader.processName(qualifiedName));
-							if(object == null){
-								object = allTypeObjects.get(qualifiedName);
-								if(object == null)
-									object = JM2Loader.createExternalTypeFromName(qualifiedName);
-							}
-						}
-					}
-				}
-			}
-			
-		}
-		return object;
+		return typeResolver.resolve(typeBinding);
 	}
 	
 	/**
@@ -616,32 +510,32 @@ public class StatementInspector {
 	 */
 	private void createTypeDependencyAssociation(MObject statementMObject, MObject typeMObject) {
 		if(typeMObject != null)
-			createLink(api.associationByName("A_Statement_Type"), Arrays.asList(statementMObject, typeMObject));
+			createLink(registry.aStatementType, Arrays.asList(statementMObject, typeMObject));
 	}
 	
 	/**
-	 * Substitute method for creating a meta-link. Differs from the J-USE createLink
-	 * in that it does not print the stack when a MSystemException occurs, since it
-	 * is expected in this class to create several meta-links between the same 
-	 * meta-objects.
+	 * Substitute method for creating a dependency meta-link from a statement. The same
+	 * Statement to Type/Method/Field meta-link is often found several times in one
+	 * statement, so the targets already linked to each statement are recorded and
+	 * duplicates are skipped without calling USE.
 	 * 
 	 * @param theAssociation
 	 * 			The link to instantiate
 	 * @param members
-	 * 			The members of the association
-	 * @return The new MLink
+	 * 			The members of the association, the Statement first
+	 * @return The new MLink, null if the meta-link was already created
 	 */
 	public MLink createLink(MAssociation theAssociation, List<MObject> members)
 	{
-		MLink result = null;
-		try
-		{
-			result = JM2Loader.getSystem().state().createLink(theAssociation, members, null);
-		}
-		catch (MSystemException e)
-		{
+		MObject statementMObject = members.get(0);
+		HashSet<MObject> targets = linkedTargets.get(statementMObject);
+		if(targets == null){
+			targets = new HashSet<MObject>();
+			linkedTargets.put(statementMObject, targets);
 		}
-		return result;
+		if(!targets.add(members.get(1)))
+			return null;
+		return api.createLink(theAssociation, members);
 	}
 	
 	/**
@@ -654,27 +548,37 @@ public class StatementInspector {
 	 * 			The expression to analyze
 	 */
 	private void analyzeStatementExpression(MObject statementMObject, Expression expression){
-		int conditionalOperatorCount = 0;
-
+		analyzer.reset();
 		if(expression != null){
-			for(IBinding binding: ExpressionAnalyzer.analyzeExpressionDependencies(expression)){
-				if(binding instanceof ITypeBinding){
-					createTypeDependencyAssociation(statementMObject, retrieveTypeObject((ITypeBinding)binding));
-					for(ITypeBinding argumentBinding: ((ITypeBinding)binding).getTypeArguments())
-						createTypeDependencyAssociation(statementMObject, retrieveTypeObject(argumentBinding));
-				}else
-					if(binding instanceof IVariableBinding)
-						createFieldDependencyAssociation(statementMObject, retrieveFieldObject((IVariableBinding)binding));
-					else
-						if(binding instanceof IMethodBinding)
-							createMethodDependencyAssociation(statementMObject, retrieveMethodObject((IMethodBinding)binding));
-						else
-							System.out.println("Wrong binding");
-			}
-			conditionalOperatorCount = ExpressionAnalyzer.analyzeExpressionConditions(expression);
+			analyzer.analyze(expression);
+			createDependencyAssociations(statementMObject);
 		}
 		
-		api.setObjectAttribute(statementMObject, api.attributeByName(statementMObject, "conditionalOperatorCount"), IntegerValue.valueOf(conditionalOperatorCount));
+		api.setObjectAttribute(statementMObject, registry.conditionalOperatorCount, IntegerValue.valueOf(analyzer.getConditionalOperatorCount()));
+	}
+
+	/**
+	 * Creates the dependency meta-links of a statement for every binding accumulated
+	 * by the analyzer.
+	 * 
+	 * @param statementMObject
+	 * 			The dependee Statement
+	 */
+	private void createDependencyAssociations(MObject statementMObject){
+		for(IBinding binding: analyzer.getDependencies()){
+			if(binding instanceof ITypeBinding){
+				createTypeDependencyAssociation(statementMObject, retrieveTypeObject((ITypeBinding)binding));
+				for(ITypeBinding argumentBinding: ((ITypeBinding)binding).getTypeArguments())
+					createTypeDependencyAssociation(statementMObject, retrieveTypeObject(argumentBinding));
+			}else
+				if(binding instanceof IVariableBinding)
+					createFieldDependencyAssociation(statementMObject, retrieveFieldObject((IVariableBinding)binding));
+				else
+					if(binding instanceof IMethodBinding)
+						createMethodDependencyAssociation(statementMObject, retrieveMethodObject((IMethodBinding)binding));
+					else
+						System.out.println("Wrong binding");
+		}
 	}
 
 	/**
@@ -687,49 +591,67 @@ public class StatementInspector {
 	 */
 	private void createMethodDependencyAssociation(MObject statementMObject,
 			MObject methodMObject) {
-		if(methodMObject != null)
-			createLink(api.associationByName("A_Statement_Method"), Arrays.asList(statementMObject, methodMObject));
+		if(methodMObject != null && registry.aStatementMethod != null)
+			createLink(registry.aStatementMethod, Arrays.asList(statementMObject, methodMObject));
 	}
 
 	/**
 	 * Retrieves the Method meta-object corresponding to the given method binding.
 	 * If none is found, a new Method meta-object is created.
+	 * <br>
+	 * Results are memoized by the key of the method declaration binding, so the
+	 * Java element of each method is only opened once per instantiation.
 	 * 
 	 * @param binding
 	 * 			The method binding to search
 	 * @return The corresponding Method MObject
 	 */
 	private MObject retrieveMethodObject(IMethodBinding binding) {
+		String key = binding.getMethodDeclaration().getKey();
+		if(key == null)
+			return resolveMethodObject(binding);
+		MObject object = memberBindings.get(key);
+		if(object == null && !memberBindings.containsKey(key)){
+			object = resolveMethodObject(binding);
+			memberBindings.put(key, object);
+		}
+		return object;
+	}
+
+	private MObject resolveMethodObject(IMethodBinding binding) {
 		MObject object = null;
 		IJavaElement element = binding.getJavaElement();
 		
 		if(element != null){
-			String id = JM2Loader.METHOD_IDENTIFIER+JM2Loader.processName(element.getHandleIdentifier());
-			object = api.objectByName(id);
+			object = loader.getHandleIndex().get("Method", element.getHandleIdentifier());
 			if(object == null){ // If the method is not found, a new one is created.
+				String id = JM2Loader.METHOD_IDENTIFIER+loader.sanitizeName(element.getHandleIdentifier());
 				MObject newMethod = api.createObject(id, "Method");
-				api.setObjectAttribute(newMethod, api.attributeByName(newMethod, "name"), new StringValue(element.getElementName()));
-				api.setObjectAttribute(newMethod, api.attributeByName(newMethod, "handleIdentifier"), new StringValue(element.getHandleIdentifier()));
-				api.setObjectAttribute(newMethod, api.attributeByName(newMethod, "key"), new StringValue(((IMethod)element).getKey()));
+				loader.getHandleIndex().put("Method", element.getHandleIdentifier(), newMethod);
+				api.setObjectAttribute(newMethod, registry.name, new StringValue(element.getElementName()));
+				api.setObjectAttribute(newMethod, registry.handleIdentifier, new StringValue(element.getHandleIdentifier()));
+				api.setObjectAttribute(newMethod, registry.methodAttributes.key, new StringValue(((IMethod)element).getKey()));
 				String[] keyFrags = ((IMethod)element).getKey().split("\\.");
-				api.setObjectAttribute(newMethod, api.attributeByName(newMethod, "shortKey"), new StringValue(keyFrags[keyFrags.length-1]));
+				if(registry.methodAttributes.shortKey != null)
+					api.setObjectAttribute(newMethod, registry.methodAttributes.shortKey, new StringValue(keyFrags[keyFrags.length-1]));
 				
 				try {
 					if(((IMethod)element).isConstructor())
-						api.setObjectAttribute(newMethod, api.attributeByName(newMethod, "isConstructor"), BooleanValue.TRUE);
+						api.setObjectAttribute(newMethod, registry.methodAttributes.isConstructor, BooleanValue.TRUE);
 					else
-						api.setObjectAttribute(newMethod, api.attributeByName(newMethod, "isConstructor"), BooleanValue.FALSE);
+						api.setObjectAttribute(newMethod, registry.methodAttributes.isConstructor, BooleanValue.FALSE);
 					
-					JM2Loader.processMemberFlags((IMethod)element, newMethod);
+					loader.processMemberFlags((IMethod)element, newMethod);
 				} catch (JavaModelException e) {
 				}
 				
-				api.setObjectAttribute(newMethod, api.attributeByName(newMethod, "returnTypeArrayDimensions"), IntegerValue.valueOf(binding.getReturnType().getDimensions()));
+				if(registry.methodAttributes.returnTypeArrayDimensions != null)
+					api.setObjectAttribute(newMethod, registry.methodAttributes.returnTypeArrayDimensions, IntegerValue.valueOf(binding.getReturnType().getDimensions()));
 				
-				api.createLink(api.associationByName("A_Type_Method"), Arrays.asList(retrieveTypeObject(binding.getDeclaringClass()), newMethod));
+				api.createLink(registry.aTypeMethod, Arrays.asList(retrieveTypeObject(binding.getDeclaringClass()), newMethod));
 				MObject returnType = retrieveTypeObject(binding.getReturnType());
 				if(returnType != null) // TODO returnType should never be null
-					api.createLink(api.associationByName("A_Method_Type"), Arrays.asList(newMethod, returnType));
+					api.createLink(registry.aMethodType, Arrays.asList(newMethod, returnType));
 				object = newMethod;
 			}
 		}
@@ -746,40 +668,60 @@ public class StatementInspector {
 	 */
 	private void createFieldDependencyAssociation(MObject statementMObject,
 			MObject fieldMObject) {
-		if(fieldMObject != null)
-			createLink(api.associationByName("A_Statement_Field"), Arrays.asList(statementMObject, fieldMObject));
+		if(fieldMObject != null && registry.aStatementField != null)
+			createLink(registry.aStatementField, Arrays.asList(statementMObject, fieldMObject));
 	}
 
 	/**
 	 * Retrieves the Field meta-object corresponding to the given variable binding.
 	 * If none is found, a new Field meta-object is created.
+	 * <br>
+	 * Results are memoized by the key of the variable declaration binding, so the
+	 * Java element of each field is only opened once per instantiation.
 	 * 
 	 * @param binding
 	 * 			The variable binding to search
 	 * @return The corresponding Field MObject
 	 */
 	private MObject retrieveFieldObject(IVariableBinding binding) {
+		String key = binding.getVariableDeclaration().getKey();
+		if(key == null)
+			return resolveFieldObject(binding);
+		MObject object = memberBindings.get(key);
+		if(object == null && !memberBindings.containsKey(key)){
+			object = resolveFieldObject(binding);
+			memberBindings.put(key, object);
+		}
+		return object;
+	}
+
+	private MObject resolveFieldObject(IVariableBinding binding) {
 		MObject object = null;
 		IJavaElement element = binding.getJavaElement();
 		
 		if(element != null){
-			String id = JM2Loader.FIELD_IDENTIFIER+JM2Loader.processName(element.getHandleIdentifier());
-			object = api.objectByName(id);
+			object = loader.getHandleIndex().get("Field", element.getHandleIdentifier());
 			if(object == null){ // If the field is not found, a new one is created.
+				String id = JM2Loader.FIELD_IDENTIFIER+loader.sanitizeName(element.getHandleIdentifier());
 				MObject newField = api.createObject(id, "Field");
-				api.setObjectAttribute(newField, api.attributeByName(newField, "name"), new StringValue(element.getElementName()));
-				api.setObjectAttribute(newField, api.attributeByName(newField, "handleIdentifier"), new StringValue(element.getHandleIdentifier()));
-				api.setObjectAttribute(newField, api.attributeByName(newField, "key"), new StringValue(((IField)element).getKey()));
+				loader.getHandleIndex().put("Field", element.getHandleIdentifier(), newField);
+				api.setObjectAttribute(newField, registry.name, new StringValue(element.getElementName()));
+				api.setObjectAttribute(newField, registry.handleIdentifier, new StringValue(element.getHandleIdentifier()));
+				api.setObjectAttribute(newField, registry.fieldAttributes.key, new StringValue(((IField)element).getKey()));
 				
-				api.setObjectAttribute(newField, api.attributeByName(newField, "arrayDimensions"), IntegerValue.valueOf(binding.getType().getDimensions()));
+				if(registry.fieldAttributes.arrayDimensions != null)
+					api.setObjectAttribute(newField, registry.fieldAttributes.arrayDimensions, IntegerValue.valueOf(binding.getType().getDimensions()));
 				
 				try {
-					JM2Loader.processMemberFlags((IField)element, newField);
+					loader.processMemberFlags((IField)element, newField);
 				} catch (JavaModelException e) {
 				}
 
-				api.createLink(api.associationByName("A_Type_Field"), Arrays.asList(retrieveTypeObject(binding.getDeclaringClass()), newField));
-				api.createLink(api.associationByName("A_Field_Type"), Arrays.asList(retrieveTypeObject(binding.getType()), newField));
+				MObject declaringTypeMObject = retrieveTypeObject(binding.getDeclaringClass());
+				api.createLink(registry.aTypeField, Arrays.asList(declaringTypeMObject, newField));
+				if(declaringTypeMObject != null)
+					loader.getFieldIndex().put(declaringTypeMObject, element.getElementName(), newField);
+				api.createLink(registry.aFieldType, Arrays.asList(retrieveTypeObject(binding.getType()), newField));
 				
 				object = newField;
 			}
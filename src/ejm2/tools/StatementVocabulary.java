@@ -0,0 +1,83 @@
+package ejm2.tools;
+
+import java.util.HashSet;
+
+import org.tzi.use.uml.mm.MAssociation;
+import org.tzi.use.uml.mm.MAssociationEnd;
+import org.tzi.use.uml.mm.MClass;
+import org.tzi.use.uml.mm.MModel;
+import org.tzi.use.uml.mm.MOperation;
+
+/**
+ * The OCL names through which a query can reach statement-level meta-objects: the
+ * Statement metaclasses and LocalVariable, all their supertypes (e.g. ASTNode,
+ * JavaElement), the role names of association ends at any of those metaclasses
+ * (e.g. optionalBody) and every operation of the EJMM whose
+ * definition uses one of those names, directly or through another such operation
+ * (e.g. getAllStatements, LOC).
+ * <br>
+ * A query that uses none of these names cannot observe method bodies, so it can be
+ * evaluated without instantiating the pending ones.
+ */
+class StatementVocabulary {
+
+	private final HashSet<String> names = new HashSet<String>();
+
+	/**
+	 * @param model
+	 * 			The EJMM model
+	 */
+	StatementVocabulary(MModel model){
+		MClass statement = model.getClass("Statement");
+		MClass localVariable = model.getClass("LocalVariable");
+		for(MClass c: model.classes())
+			if(c == statement || c.allParents().contains(statement) || c == localVariable){
+				names.add(c.name());
+				// allInstances of a supertype (e.g. ASTNode, JavaElement) also returns them
+				for(MClass parent: c.allParents())
+					names.add(parent.name());
+			}
+
+		for(MAssociation association: model.associations())
+			for(MAssociationEnd end: association.associationEnds())
+				if(names.contains(end.cls().name()))
+					names.add(end.nameAsRolename());
+
+		// Operations are added until no other operation uses the names found so far
+		boolean changed = true;
+		while(changed){
+			changed = false;
+			for(MClass c: model.classes())
+				for(MOperation operation: c.operations())
+					if(!names.contains(operation.name()) && operation.hasExpression()
+							&& mentions(operation.expression().toString())){
+						names.add(operation.name());
+						changed = true;
+					}
+		}
+	}
+
+	/**
+	 * Checks whether an OCL expression uses any statement-level name.
+	 *
+	 * @param expression
+	 * 			The OCL expression
+	 * @return true if evaluating the expression may need method bodies
+	 */
+	boolean mentions(String expression){
+		int length = expression.length();
+		int i = 0;
+		while(i < length){
+			if(!Character.isJavaIdentifierStart(expression.charAt(i))){
+				i++;
+				continue;
+			}
+			int start = i;
+			while(i < length && Character.isJavaIdentifierPart(expression.charAt(i)))
+				i++;
+			if(names.contains(expression.substring(start, i)))
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,358 @@
+package ejm2.tools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.tzi.use.uml.mm.MAssociation;
+import org.tzi.use.uml.sys.MLink;
+import org.tzi.use.uml.sys.MObject;
+import org.tzi.use.uml.sys.MSystem;
+import org.tzi.use.uml.sys.MSystemState;
+
+/**
+ * Materializes the recursive closures of the Type metaclass as links, so that the
+ * OCL operations that compute them read the links instead of recursing:
+ * <ul>
+ * <li>D_Type_Type (fullInheritanceTree): the superclasses of a type, at any depth,
+ * read by getFullInheritanceTree</li>
+ * <li>E_Type_Type (fullInterfaceTree): the type, if it is an interface, and every
+ * interface reachable through implements links, read by getFullInterfaceTree</li>
+ * <li>F_Type_Type (allIncludedTypes): the types nested in a type, at any depth, read
+ * by getAllIncludedTypes</li>
+ * </ul>
+ * The closures are computed from the B_Type_Type, C_Type_Type and A_Type_Type links,
+ * so they must be materialized after the second instantiation phase. Each closure is
+ * computed once per type, reusing the closures of the types it links to. Types on a
+ * cycle, which a compilable Java project cannot have, get the set of types reachable
+ * from them instead of recursing forever.
+ * <br>
+ * The direct links and the closure links are indexed when the closures are first
+ * materialized. An incremental update then only recomputes the closures of the
+ * types whose direct links changed, and of the types that reach them, and only
+ * deletes and creates the closure links that differ.
+ */
+class TypeClosures {
+
+	private final MSystem system;
+	private final MetamodelRegistry registry;
+
+	private final Closure inheritanceTrees;
+	private final Closure interfaceTrees;
+	private final Closure includedTypes;
+	private final List<Closure> closures;
+
+	/**
+	 * One closure association and the direct links it is computed from.
+	 */
+	private class Closure {
+
+		final MAssociation association;
+
+		// Whether the closure holds the type, if it is an interface, and the closures
+		// of its linked types, instead of the linked types and their closures
+		final boolean interfacesOnly;
+
+		// Direct links of each type, and the types that link to each type
+		final HashMap<MObject, List<MObject>> links = new HashMap<MObject, List<MObject>>();
+		final HashMap<MObject, List<MObject>> linkedBy = new HashMap<MObject, List<MObject>>();
+
+		// Closure links of each type, created as [type, closure member]
+		final HashMap<MObject, List<MLink>> closureLinks = new HashMap<MObject, List<MLink>>();
+
+		// Types whose direct links changed since the closures were last materialized
+		final HashSet<MObject> changed = new HashSet<MObject>();
+
+		Closure(MAssociation association, boolean interfacesOnly){
+			this.association = association;
+			this.interfacesOnly = interfacesOnly;
+		}
+
+		void addLink(MObject type, MObject linked){
+			add(links, type, linked);
+			add(linkedBy, linked, type);
+			changed.add(type);
+		}
+
+		// Forgets a deleted meta-object; the types that linked to it have changed
+		void remove(MObject object){
+			List<MObject> dependents = linkedBy.remove(object);
+			if(dependents != null)
+				for(MObject dependent: dependents){
+					get(links, dependent).remove(object);
+					changed.add(dependent);
+				}
+			List<MObject> linked = links.remove(object);
+			if(linked != null)
+				for(MObject linkedType: linked)
+					get(linkedBy, linkedType).remove(object);
+			// Its closure links were deleted with it
+			closureLinks.remove(object);
+		}
+
+		// The changed types and every type that reaches them through direct links
+		Set<MObject> affectedTypes(){
+			Set<MObject> affected = new LinkedHashSet<MObject>(changed);
+			ArrayDeque<MObject> pending = new ArrayDeque<MObject>(changed);
+			while(!pending.isEmpty())
+				for(MObject dependent: get(linkedBy, pending.poll()))
+					if(affected.add(dependent))
+						pending.add(dependent);
+			return affected;
+		}
+
+		/**
+		 * Recomputes the closures of the given types, reading the closures of the
+		 * other types from their links, and replaces the closure links that differ.
+		 *
+		 * @return The number of closure links created
+		 */
+		int update(LoaderFacade api, MSystemState state, Set<MObject> types){
+			HashMap<MObject, Set<MObject>> computed = new HashMap<MObject, Set<MObject>>();
+			HashSet<MObject> visiting = new HashSet<MObject>();
+			int count = 0;
+			for(MObject type: types)
+				if(type.exists(state))
+					count += replaceLinks(api, state, type, closure(state, type, types, computed, visiting));
+			changed.clear();
+			return count;
+		}
+
+		/**
+		 * Returns the closure of a type, computing the closures of the linked types
+		 * first.
+		 *
+		 * @return The closure, null if the type is being computed (a cycle was found)
+		 */
+		private Set<MObject> closure(MSystemState state, MObject type, Set<MObject> types,
+				HashMap<MObject, Set<MObject>> computed, HashSet<MObject> visiting){
+			Set<MObject> closure = computed.get(type);
+			if(closure != null)
+				return closure;
+			if(!types.contains(type)){
+				closure = materializedClosure(type);
+				computed.put(type, closure);
+				return closure;
+			}
+			if(!visiting.add(type))
+				return null;
+			closure = new LinkedHashSet<MObject>();
+			if(interfacesOnly && isInterface(state, type))
+				closure.add(type);
+			boolean cyclic = false;
+			for(MObject linked: get(links, type)){
+				if(!interfacesOnly)
+					closure.add(linked);
+				Set<MObject> linkedClosure = closure(state, linked, types, computed, visiting);
+				if(linkedClosure == null)
+					cyclic = true;
+				else
+					closure.addAll(linkedClosure);
+			}
+			visiting.remove(type);
+			if(cyclic)
+				closure = reachableClosure(state, type);
+			computed.put(type, closure);
+			return closure;
+		}
+
+		// Breadth-first closure, for the types whose links lead to a cycle
+		private Set<MObject> reachableClosure(MSystemState state, MObject type){
+			Set<MObject> reached = new LinkedHashSet<MObject>();
+			ArrayDeque<MObject> pending = new ArrayDeque<MObject>();
+			pending.add(type);
+			while(!pending.isEmpty())
+				for(MObject linked: get(links, pending.poll()))
+					if(reached.add(linked))
+						pending.add(linked);
+			if(!interfacesOnly)
+				return reached;
+			Set<MObject> interfaces = new LinkedHashSet<MObject>();
+			if(isInterface(state, type))
+				interfaces.add(type);
+			for(MObject linked: reached)
+				if(isInterface(state, linked))
+					interfaces.add(linked);
+			return interfaces;
+		}
+
+		private Set<MObject> materializedClosure(MObject type){
+			Set<MObject> closure = new LinkedHashSet<MObject>();
+			List<MLink> typeLinks = closureLinks.get(type);
+			if(typeLinks != null)
+				for(MLink link: typeLinks)
+					closure.add(link.linkedObjects().get(1));
+			return closure;
+		}
+
+		private int replaceLinks(LoaderFacade api, MSystemState state, MObject type, Set<MObject> closure){
+			List<MLink> typeLinks = closureLinks.get(type);
+			if(typeLinks == null){
+				typeLinks = new ArrayList<MLink>();
+				closureLinks.put(type, typeLinks);
+			}
+			Set<MObject> missing = new LinkedHashSet<MObject>(closure);
+			Iterator<MLink> existing = typeLinks.iterator();
+			while(existing.hasNext()){
+				MLink link = existing.next();
+				MObject member = link.linkedObjects().get(1);
+				// Links to deleted types were deleted with them
+				if(!member.exists(state))
+					existing.remove();
+				else if(!missing.remove(member)){
+					api.deleteLink(state, link);
+					existing.remove();
+				}
+			}
+			int count = 0;
+			for(MObject member: missing){
+				MLink link = api.createLink(association, Arrays.asList(type, member));
+				if(link != null){
+					typeLinks.add(link);
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * @param system
+	 * 			The USE system holding the instantiation
+	 * @param registry
+	 * 			The handles of the EJMM compiled in the system
+	 */
+	TypeClosures(MSystem system, MetamodelRegistry registry){
+		this.system = system;
+		this.registry = registry;
+		inheritanceTrees = new Closure(registry.dTypeType, false);
+		interfaceTrees = new Closure(registry.eTypeType, true);
+		includedTypes = new Closure(registry.fTypeType, false);
+		closures = Arrays.asList(inheritanceTrees, interfaceTrees, includedTypes);
+	}
+
+	/**
+	 * Checks whether the EJMM declares the closure associations.
+	 *
+	 * @param registry
+	 * 			The handles of the compiled EJMM
+	 * @return true if the closures can be materialized
+	 */
+	static boolean isSupported(MetamodelRegistry registry){
+		return registry.dTypeType != null && registry.eTypeType != null && registry.fTypeType != null;
+	}
+
+	/**
+	 * @return The associations whose new links {@link #update(LoaderFacade, Collection, List)}
+	 * 			needs: the direct Type_Type links, and the TypeRoot_Type links of new types
+	 */
+	Set<MAssociation> getUpdateAssociations(){
+		return new HashSet<MAssociation>(Arrays.asList(registry.aTypeType, registry.bTypeType,
+				registry.cTypeType, registry.aTypeRootType));
+	}
+
+	/**
+	 * Indexes the current type links and replaces the closure links of all types
+	 * with closures computed from them.
+	 *
+	 * @param api
+	 * 			The facade that creates and deletes the links
+	 * @return The number of closure links created
+	 */
+	int materialize(LoaderFacade api){
+		MSystemState state = system.state();
+		for(Closure closure: closures){
+			closure.links.clear();
+			closure.linkedBy.clear();
+			closure.closureLinks.clear();
+			closure.changed.clear();
+		}
+		for(MLink link: state.allLinks()){
+			MAssociation association = link.association();
+			if(!indexTypeLink(link))
+				for(Closure closure: closures)
+					if(association == closure.association)
+						add(closure.closureLinks, link.linkedObjects().get(0), link);
+		}
+		Set<MObject> types = state.objectsOfClass(system.model().getClass("Type"));
+		int count = 0;
+		for(Closure closure: closures)
+			count += closure.update(api, state, types);
+		return count;
+	}
+
+	/**
+	 * Updates the closure links after an incremental update, recomputing only the
+	 * closures of the types whose direct links were deleted or created, and of the
+	 * types that reach them.
+	 *
+	 * @param api
+	 * 			The facade that creates and deletes the links
+	 * @param deletedObjects
+	 * 			The meta-objects deleted by the update, with their links
+	 * @param createdLinks
+	 * 			The links of the associations returned by getUpdateAssociations that
+	 * 			the update created
+	 * @return The number of closure links created
+	 */
+	int update(LoaderFacade api, Collection<MObject> deletedObjects, List<MLink> createdLinks){
+		MSystemState state = system.state();
+		for(MObject deletedObject: deletedObjects)
+			for(Closure closure: closures)
+				closure.remove(deletedObject);
+		for(MLink link: createdLinks){
+			List<MObject> linked = link.linkedObjects();
+			if(!linked.get(0).exists(state) || !linked.get(1).exists(state))
+				continue;
+			// A new type needs its closures even if it has no direct links
+			if(!indexTypeLink(link) && link.association() == registry.aTypeRootType)
+				for(Closure closure: closures)
+					closure.changed.add(linked.get(1));
+		}
+		int count = 0;
+		for(Closure closure: closures)
+			count += closure.update(api, state, closure.affectedTypes());
+		return count;
+	}
+
+	// Indexes a B/C/A_Type_Type link, as the extends, implements and includes links
+	private boolean indexTypeLink(MLink link){
+		MAssociation association = link.association();
+		List<MObject> linked = link.linkedObjects();
+		if(association == registry.bTypeType)
+			inheritanceTrees.addLink(linked.get(1), linked.get(0));
+		else if(association == registry.cTypeType)
+			interfaceTrees.addLink(linked.get(1), linked.get(0));
+		else if(association == registry.aTypeType)
+			includedTypes.addLink(linked.get(1), linked.get(0));
+		else
+			return false;
+		return true;
+	}
+
+	private boolean isInterface(MSystemState state, MObject type){
+		return registry.javaTypeInterface.equals(type.state(state).attributeValue(registry.typeAttributes.javaType));
+	}
+
+	private static <T> List<T> get(HashMap<MObject, List<T>> links, MObject type){
+		List<T> linked = links.get(type);
+		return linked == null ? Collections.<T>emptyList() : linked;
+	}
+
+	private static <T> void add(HashMap<MObject, List<T>> links, MObject from, T to){
+		List<T> linked = links.get(from);
+		if(linked == null){
+			linked = new ArrayList<T>();
+			links.put(from, linked);
+		}
+		linked.add(to);
+	}
+}
@@ -0,0 +1,187 @@
+package ejm2.tools;
+
+import java.util.HashMap;
+
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.Signature;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.quasar.juse.api.JUSE_ProgramingFacade;
+
+import org.tzi.use.uml.sys.MObject;
+
+/**
+ * Resolves type signatures (Java model) and type bindings (DOM) to Type meta-objects,
+ * creating external types when no Type meta-object exists yet.
+ * <br>
+ * Results are memoized by signature and by binding key, so each type is looked up
+ * through the name cascades only once per loaded project. The memo must be cleared
+ * whenever Type meta-objects are deleted or created outside of the resolver (e.g. by
+ * an incremental update), since a cached external type could then shadow a project
+ * type.
+ */
+class TypeResolver {
+
+	private final JM2Loader loader;
+	private final JUSE_ProgramingFacade api;
+	private final HandleIndex handleIndex;
+	private final HashMap<String, MObject> allTypeObjects;
+	private final HashMap<String, MObject> basicTypeObjects;
+
+	private final HashMap<String, MObject> signatures = new HashMap<String, MObject>();
+	private final HashMap<String, MObject> bindingKeys = new HashMap<String, MObject>();
+
+	/**
+	 * @param loader
+	 * 			The loader session that creates external types
+	 * @param api
+	 * 			The facade of the current USE session
+	 * @param handleIndex
+	 * 			The meta-objects by handle identifier
+	 * @param allTypeObjects
+	 * 			All Type meta-objects, keyed by signatures and names
+	 * @param basicTypeObjects
+	 * 			The primitive and String Type meta-objects, keyed by type name
+	 */
+	TypeResolver(JM2Loader loader, JUSE_ProgramingFacade api, HandleIndex handleIndex, HashMap<String, MObject> allTypeObjects,
+			HashMap<String, MObject> basicTypeObjects){
+		this.loader = loader;
+		this.api = api;
+		this.handleIndex = handleIndex;
+		this.allTypeObjects = allTypeObjects;
+		this.basicTypeObjects = basicTypeObjects;
+	}
+
+	/**
+	 * Discards all memoized resolutions.
+	 */
+	void clear(){
+		signatures.clear();
+		bindingKeys.clear();
+	}
+
+	/**
+	 * Returns the Type meta-object for the given type signature. If none can be found,
+	 * a new external type is created.
+	 *
+	 * @param signature
+	 * 			The type signature
+	 * @return The Type MObject corresponding to the given signature
+	 */
+	MObject resolve(String signature){
+		MObject typeMObject = signatures.get(signature);
+		if(typeMObject == null){
+			typeMObject = lookup(signature);
+			signatures.put(signature, typeMObject);
+		}
+		return typeMObject;
+	}
+
+	/**
+	 * Returns the Type meta-object for the given type binding. If none can be found,
+	 * a new external type is created.
+	 * <br>
+	 * Only the base type is retrieved, type arguments are ignored. Wildcards resolve to
+	 * their bound and anonymous types to their superclass (or first interface).
+	 *
+	 * @param typeBinding
+	 * 			The type binding
+	 * @return The corresponding Type MObject, null if it is a type parameter or an
+	 * 			unbounded wildcard
+	 */
+	MObject resolve(ITypeBinding typeBinding){
+		if(typeBinding.isTypeVariable())
+			return null;
+
+		String key = typeBinding.getKey();
+		MObject typeMObject = key == null ? null : bindingKeys.get(key);
+		if(typeMObject == null){
+			typeMObject = lookup(typeBinding);
+			if(key != null && typeMObject != null)
+				bindingKeys.put(key, typeMObject);
+		}
+		return typeMObject;
+	}
+
+	private MObject lookup(String signature){
+		// With the changes in MObject naming and the allTypeObjects mapping,
+		// it may be possible to omit some parts of this method without any side-effects.
+		String s = Signature.getElementType(signature);
+		switch(Signature.getSimpleName(s)){
+		case Signature.SIG_BOOLEAN:
+			return basicTypeObjects.get("boolean");
+		case Signature.SIG_BYTE:
+			return basicTypeObjects.get("byte");
+		case Signature.SIG_CHAR:
+			return basicTypeObjects.get("char");
+		case Signature.SIG_DOUBLE:
+			return basicTypeObjects.get("double");
+		case Signature.SIG_FLOAT:
+			return basicTypeObjects.get("float");
+		case Signature.SIG_INT:
+			return basicTypeObjects.get("int");
+		case Signature.SIG_LONG:
+			return basicTypeObjects.get("long");
+		case Signature.SIG_SHORT:
+			return basicTypeObjects.get("short");
+		case Signature.SIG_VOID:
+			return basicTypeObjects.get("void");
+		case "String":
+			return basicTypeObjects.get("String");
+		default:
+			break;
+		}
+		MObject typeMObject = allTypeObjects.get(signature);
+		if(typeMObject == null)
+			typeMObject = allTypeObjects.get(s);
+		if(typeMObject == null)
+			typeMObject = allTypeObjects.get(Signature.getQualifier(signature) + Signature.getSimpleName(signature));
+		if(typeMObject == null)
+			typeMObject = allTypeObjects.get(Signature.getSimpleName(signature));
+		if(typeMObject == null)
+			typeMObject = loader.createExternalTypeFromSignature(signature);
+		return typeMObject;
+	}
+
+	private MObject lookup(ITypeBinding typeBinding){
+		if(typeBinding.isWildcardType())
+			return typeBinding.getBound() == null ? null : resolve(typeBinding.getBound());
+
+		// Only the base type is retrieved, type arguments are ignored
+		String simpleName = baseName(typeBinding.getName());
+		String qualifiedName = baseName(typeBinding.getQualifiedName());
+
+		// For anonymous types, their corresponding superclass is retrieved instead
+		if(typeBinding.isAnonymous() || qualifiedName.isEmpty()){
+			ITypeBinding superClassBinding = typeBinding.getSuperclass();
+			if(superClassBinding != null)
+				return resolve(superClassBinding);
+			else
+				return resolve(typeBinding.getInterfaces()[0]);
+		}
+
+		MObject object = null;
+		IJavaElement element = typeBinding.getJavaElement();
+		if(element != null)
+			object = handleIndex.get("Type", element.getHandleIdentifier());
+
+		// Several different attempts by trying different combinations of names and sources
+		if(object == null && !simpleName.isEmpty()){
+			object = api.objectByName(loader.sanitizeName(simpleName));
+			if(object == null)
+				object = allTypeObjects.get(simpleName);
+			if(object == null){
+				object = api.objectByName(loader.sanitizeName(qualifiedName));
+				if(object == null)
+					object = allTypeObjects.get(qualifiedName);
+				if(object == null)
+					object = loader.createExternalTypeFromName(qualifiedName);
+			}
+		}
+		return object;
+	}
+
+	private static String baseName(String name){
+		int typeArguments = name.indexOf('<');
+		return typeArguments < 0 ? name : name.substring(0, typeArguments);
+	}
+}
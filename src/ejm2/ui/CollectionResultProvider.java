@@ -0,0 +1,88 @@
+package ejm2.ui;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableItem;
+
+import org.tzi.use.uml.ocl.value.CollectionValue;
+import org.tzi.use.uml.ocl.value.Value;
+
+/**
+ * Feeds the elements of an OCL collection to a virtual (SWT.VIRTUAL) result table.
+ * <br>
+ * The table only asks for the rows it shows, so the collection is walked lazily, up
+ * to the last requested row, and an element is only turned into a String when its
+ * row becomes visible. The elements walked so far are kept, without their text, so
+ * that scrolling back does not walk the collection again.
+ */
+class CollectionResultProvider implements Listener {
+
+	private final Iterator<Value> elements;
+	private final ArrayList<Value> walked = new ArrayList<Value>();
+	private final int size;
+
+	/**
+	 * @param collection
+	 * 			The query result
+	 */
+	CollectionResultProvider(CollectionValue collection){
+		this.elements = collection.iterator();
+		this.size = collection.size();
+	}
+
+	/**
+	 * @return The number of elements, without walking the collection
+	 */
+	int size(){
+		return size;
+	}
+
+	/**
+	 * Shows the collection in the given table, replacing its previous contents.
+	 *
+	 * @param table
+	 * 			A table created with SWT.VIRTUAL, with an index and a value column
+	 */
+	void install(Table table){
+		Object previous = table.getData();
+		if(previous instanceof Listener)
+			table.removeListener(SWT.SetData, (Listener)previous);
+		table.setData(this);
+		table.addListener(SWT.SetData, this);
+		table.clearAll();
+		table.setItemCount(size);
+	}
+
+	/**
+	 * Stops feeding the given table, if it is fed by a provider, and empties it.
+	 *
+	 * @param table
+	 * 			The result table
+	 */
+	static void uninstall(Table table){
+		Object previous = table.getData();
+		if(previous instanceof Listener)
+			table.removeListener(SWT.SetData, (Listener)previous);
+		table.setData(null);
+		table.setItemCount(0);
+	}
+
+	@Override
+	public void handleEvent(Event event) {
+		TableItem item = (TableItem)event.item;
+		int index = event.index;
+		Value element = elementAt(index);
+		item.setText(new String[]{String.valueOf(index + 1), element == null ? "" : element.toString()});
+	}
+
+	private Value elementAt(int index){
+		while(walked.size() <= index && elements.hasNext())
+			walked.add(elements.next());
+		return index < walked.size() ? walked.get(index) : null;
+	}
+}
@@ -1,10 +1,17 @@
 package ejm2.ui;
 
+import java.io.File;
+
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jdt.core.IJavaModelMarker;
 import org.eclipse.jdt.core.IJavaProject;
@@ -13,6 +20,10 @@ import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.action.Separator;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.window.Window;
 import org.eclipse.swt.*;
 import org.eclipse.swt.events.*;
 import org.eclipse.swt.widgets.DirectoryDialog;
@@ -29,7 +40,11 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.actions.ActionGroup;
 
 import org.quasar.juse.api.JUSE_ProgramingFacade;
+import org.tzi.use.uml.ocl.value.CollectionValue;
+
+import m2dm.Activator;
 
+import ejm2.tools.InstantiationProfile;
 import ejm2.tools.JM2Loader;
 import ejm2.views.EJM2View;
 
@@ -40,8 +55,22 @@ public class EJM2ActionGroup extends ActionGroup{
 
 	private JM2LoaderAction jm2la;
 	private FileSelectingAction fsa;
+	private ParallelLoadAction pla;
+	private IncrementalUpdatesAction iua;
+	private SaveSnapshotAction ssa;
+	private LoadSnapshotAction lsa;
+	private SoilExportAction sea;
+	private QueryTimeoutAction qta;
+	private QueryCacheAction qca;
 	private EJM2View view;
 	
+	// The loader session of the view, holding the instantiation being queried
+	private final JM2Loader loader = new JM2Loader();
+	
+	// Evaluates the queries of the input box outside of the UI thread
+	private final QueryRunner queryRunner = new QueryRunner();
+	private JM2LoaderAction.InputListener inputListener;
+	
 	private String[] extraModelPaths;
 	private String ejmmDirectory;
 	private String ejmmFile;
@@ -55,6 +84,13 @@ public class EJM2ActionGroup extends ActionGroup{
 	public EJM2ActionGroup(EJM2View view){
 		jm2la = new JM2LoaderAction();
 		fsa = new FileSelectingAction();
+		pla = new ParallelLoadAction();
+		iua = new IncrementalUpdatesAction();
+		ssa = new SaveSnapshotAction();
+		lsa = new LoadSnapshotAction();
+		sea = new SoilExportAction();
+		qta = new QueryTimeoutAction();
+		qca = new QueryCacheAction();
 		this.view = view;
 		
 		IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
@@ -63,8 +99,16 @@ public class EJM2ActionGroup extends ActionGroup{
 			projectNames[i] = projects[i].getName();
 		this.view.getProjectSelector().setItems(projectNames);
 		
+		InstantiationProfile[] profiles = InstantiationProfile.values();
+		String[] profileLabels = new String[profiles.length];
+		for(int i = 0; i != profiles.length; ++i)
+			profileLabels[i] = profiles[i].getLabel();
+		this.view.getProfileSelector().setItems(profileLabels);
+		this.view.getProfileSelector().select(loader.getProfile().ordinal());
+		
 		view.getLoadUSE().addSelectionListener(new LoadUSEListener());
 		view.getLoadEJMM().addSelectionListener(new LoadEJMMListener());
+		view.getProfileSelector().addSelectionListener(new ProfileListener());
 		
 	}
 	
@@ -83,6 +127,13 @@ public class EJM2ActionGroup extends ActionGroup{
     void fillViewMenu(IMenuManager menu) {
 		menu.add(fsa);
 		menu.add(jm2la);
+		menu.add(pla);
+		menu.add(iua);
+		menu.add(ssa);
+		menu.add(lsa);
+		menu.add(sea);
+		menu.add(qta);
+		menu.add(qca);
         menu.add(new Separator(IWorkbenchActionConstants.MB_ADDITIONS));        
     }
 
@@ -90,6 +141,36 @@ public class EJM2ActionGroup extends ActionGroup{
         super.fillContextMenu(menu);
     }
 	
+	@Override
+	public void dispose() {
+		queryRunner.shutdown();
+		super.dispose();
+	}
+	
+	/**
+	 * Makes the input box evaluate its queries on the loader session, replacing
+	 * the listener of a previous instantiation.
+	 */
+	private void listenToInput(){
+		Text input = view.getInputEditor();
+		if(inputListener != null)
+			input.removeTraverseListener(inputListener);
+		inputListener = jm2la.new InputListener();
+		input.addTraverseListener(inputListener);
+	}
+	
+	/**
+	 * Enables or disables the actions that need the loader session while an
+	 * instantiation or snapshot job holds it, so the UI thread never waits for the
+	 * job and jobs do not replace each other's instantiation.
+	 */
+	private void setSessionActionsEnabled(boolean enabled){
+		jm2la.setEnabled(enabled);
+		iua.setEnabled(enabled);
+		ssa.setEnabled(enabled);
+		lsa.setEnabled(enabled);
+	}
+	
 	public static IEditorPart getActiveEditor() {
 		IWorkbenchWindow window= PlatformUI.getWorkbench().getActiveWorkbenchWindow();
 		if (window != null) {
@@ -123,6 +204,249 @@ public class EJM2ActionGroup extends ActionGroup{
 		}
 	}
 
+	class ParallelLoadAction extends Action{
+		public ParallelLoadAction(){
+			super("Parallel package reading", AS_CHECK_BOX);
+			setToolTipText("Read package fragments in parallel during instantiation");
+		}
+		
+		public void run(){
+			loader.setParallelFirstPhase(isChecked());
+		}
+	}
+
+	class IncrementalUpdatesAction extends Action{
+		public IncrementalUpdatesAction(){
+			super("Incremental updates", AS_CHECK_BOX);
+			setToolTipText("Update the EJMM instance when compilation units are saved (applies from the next instantiation)");
+		}
+		
+		public void run(){
+			loader.setIncrementalUpdates(isChecked());
+		}
+	}
+
+	class QueryTimeoutAction extends Action{
+		public QueryTimeoutAction(){
+			super("Query timeout...");
+			setToolTipText("Set the maximum evaluation time of OCL queries");
+		}
+		
+		public void run(){
+			InputDialog dialog = new InputDialog(Display.getCurrent().getActiveShell(), "Query timeout", 
+					"Maximum evaluation time of OCL queries, in seconds (0 for no timeout):", 
+					String.valueOf(queryRunner.getTimeout()), new IInputValidator() {
+						@Override
+						public String isValid(String newText) {
+							try {
+								return Integer.parseInt(newText.trim()) < 0 ? "The timeout cannot be negative" : null;
+							} catch (NumberFormatException e) {
+								return "The timeout must be a number of seconds";
+							}
+						}
+					});
+			if(dialog.open() == Window.OK)
+				queryRunner.setTimeout(Integer.parseInt(dialog.getValue().trim()));
+		}
+	}
+
+	class QueryCacheAction extends Action{
+		public QueryCacheAction(){
+			super("Query cache statistics...");
+			setToolTipText("Show the hits and misses of the OCL query result cache");
+		}
+		
+		public void run(){
+			if(MessageDialog.openQuestion(Display.getCurrent().getActiveShell(), "Query cache", 
+					loader.getQueryCache().getStatistics() + "\n\nClear the cached results?"))
+				loader.getQueryCache().clear();
+		}
+	}
+
+	class SoilExportAction extends Action{
+		public SoilExportAction(){
+			super("Export SOIL while instantiating", AS_CHECK_BOX);
+			setToolTipText("Stream the next EJMM instantiations to a SOIL file");
+		}
+		
+		public void run(){
+			String file = null;
+			if(isChecked()){
+				Shell shell = new Shell (Display.getCurrent());
+				FileDialog dialog = new FileDialog(shell, SWT.SAVE);
+				dialog.setFilterExtensions(new String [] {"*.soil", "*.cmd"});
+				file = dialog.open();
+				if(file == null)
+					setChecked(false);
+			}
+			loader.setSoilExportFile(file == null ? null : new File(file));
+		}
+	}
+
+	class SaveSnapshotAction extends Action{
+		public SaveSnapshotAction(){
+			super("Save EJMM snapshot");
+			setToolTipText("Save the current EJMM instance to a snapshot file");
+		}
+		
+		public void run(){
+			if(loader.getSystem() == null){
+				view.setLabel2Text("No EJMM instance to save");
+				return;
+			}
+			Shell shell = new Shell (Display.getCurrent());
+			FileDialog dialog = new FileDialog(shell, SWT.SAVE);
+			dialog.setFilterExtensions(new String [] {"*.ejmm"});
+			String file = dialog.open();
+			if(file == null)
+				return;
+			view.setLabel2Text("Saving snapshot...");
+			setSessionActionsEnabled(false);
+			Job job = new SaveSnapshotJob(new File(file), Display.getCurrent());
+			job.setUser(true);
+			job.schedule();
+		}
+		
+		/**
+		 * Hashes the sources and writes the snapshot outside of the UI thread.
+		 */
+		class SaveSnapshotJob extends Job{
+			
+			private final File file;
+			private final Display display;
+			
+			public SaveSnapshotJob(File file, Display display){
+				super("Saving EJMM snapshot to " + file.getName());
+				this.file = file;
+				this.display = display;
+			}
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				String message;
+				try {
+					loader.saveSnapshot(file);
+					message = "Snapshot saved.";
+				} catch (Exception e) {
+					e.printStackTrace();
+					message = "Snapshot save failed: " + e.getMessage();
+				}
+				final String result = message;
+				if(!display.isDisposed())
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							setSessionActionsEnabled(true);
+							if(!view.getInputEditor().isDisposed())
+								view.setLabel2Text(result);
+						}
+					});
+				return Status.OK_STATUS;
+			}
+		}
+	}
+
+	class LoadSnapshotAction extends Action{
+		public LoadSnapshotAction(){
+			super("Load EJMM snapshot");
+			setToolTipText("Load the selected project's EJMM instance from a snapshot file");
+		}
+		
+		public void run(){
+			if(useLocation == null || useLocation.isEmpty()){
+				view.setLabel2Text("USE location undefined, please locate the USE folder");
+				return;
+			}
+			if(ejmmDirectory == null || ejmmDirectory.isEmpty() || ejmmFile == null || ejmmFile.isEmpty()){
+				view.setLabel2Text("EJMM location undefined, please locate the EJMM file");
+				return;
+			}
+			int selection = view.getProjectSelector().getSelectionIndex();
+			if(selection < 0)
+				return;
+			Shell shell = new Shell (Display.getCurrent());
+			FileDialog dialog = new FileDialog(shell, SWT.OPEN);
+			dialog.setFilterExtensions(new String [] {"*.ejmm"});
+			String file = dialog.open();
+			if(file == null)
+				return;
+			
+			loader.setUseDirectory(useLocation);
+			loader.setModelDirectory(ejmmDirectory);
+			loader.setModelFile(ejmmFile);
+			IProject project = ResourcesPlugin.getWorkspace().getRoot().getProjects()[selection];
+			Text input = view.getInputEditor();
+			input.setEditable(false);
+			input.setEnabled(false);
+			view.setLabel2Text("Loading snapshot...");
+			setSessionActionsEnabled(false);
+			Job job = new LoadSnapshotJob(project, new File(file), Display.getCurrent());
+			job.setUser(true);
+			job.schedule();
+		}
+		
+		/**
+		 * Checks and restores the snapshot outside of the UI thread.
+		 */
+		class LoadSnapshotJob extends Job{
+			
+			private final IProject project;
+			private final File file;
+			private final Display display;
+			
+			public LoadSnapshotJob(IProject project, File file, Display display){
+				super("Loading EJMM snapshot of " + project.getName());
+				this.project = project;
+				this.file = file;
+				this.display = display;
+			}
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				String message;
+				boolean loaded = false;
+				try {
+					if(loader.loadEJMMfromSnapshot(project, file) == null)
+						message = "Snapshot is out of date, please instantiate the EJMM again";
+					else{
+						message = "Snapshot loaded.";
+						loaded = true;
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+					message = "Snapshot load failed: " + e.getMessage();
+				}
+				final String result = message;
+				final boolean success = loaded;
+				if(!display.isDisposed())
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							snapshotLoaded(success, result);
+						}
+					});
+				return Status.OK_STATUS;
+			}
+		}
+		
+		private void snapshotLoaded(boolean success, String message){
+			setSessionActionsEnabled(true);
+			Text input = view.getInputEditor();
+			if(input.isDisposed())
+				return;
+			view.setLabel2Text(message);
+			if(success){
+				view.getOutputEditor().setText("");
+				listenToInput();
+			}
+			// A rejected snapshot keeps the instantiation that was loaded before, if any
+			if(loader.getSystem() != null){
+				input.setEditable(true);
+				input.setEnabled(true);
+			}
+		}
+	}
+
 	class JM2LoaderAction extends Action{
 		public JM2LoaderAction(){
 			super("Instantiate EJMM");
@@ -134,9 +458,9 @@ public class EJM2ActionGroup extends ActionGroup{
 			if(!(useLocation == null || useLocation.isEmpty())){
 				if(!(ejmmDirectory == null || ejmmDirectory.isEmpty()) && !(ejmmFile == null || ejmmFile.isEmpty())){
 					
-					JM2Loader.setUseDirectory(useLocation);
-					JM2Loader.setModelDirectory(ejmmDirectory);
-					JM2Loader.setModelFile(ejmmFile);
+					loader.setUseDirectory(useLocation);
+					loader.setModelDirectory(ejmmDirectory);
+					loader.setModelFile(ejmmFile);
 					
 					Text input = view.getInputEditor();
 					IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
@@ -154,11 +478,13 @@ public class EJM2ActionGroup extends ActionGroup{
 						if(!(severity == IMarker.SEVERITY_ERROR)){
 							view.getOutputEditor().setText("");
 							view.getOutputEditor().redraw();
-							JUSE_ProgramingFacade api = JM2Loader.loadEJMMfromProject(project);
-							view.setLabel2Text("Processing finished.");
-							input.addTraverseListener(new InputListener(api));
-							input.setEditable(true);
-							input.setEnabled(true);
+							input.setEditable(false);
+							input.setEnabled(false);
+							view.setLabel2Text("Instantiating " + project.getElementName() + "...");
+							setSessionActionsEnabled(false);
+							Job job = new InstantiationJob(project, Display.getCurrent());
+							job.setUser(true);
+							job.schedule();
 						}else
 							view.setLabel2Text("Project has errors, cannot load");
 					}
@@ -172,28 +498,115 @@ public class EJM2ActionGroup extends ActionGroup{
 			}
 		}
 		
-		class InputListener implements TraverseListener{
-
-			JUSE_ProgramingFacade api;
+		/**
+		 * Instantiates the EJMM outside of the UI thread, with progress and
+		 * cancellation, and updates the view asynchronously when it finishes.
+		 */
+		class InstantiationJob extends Job{
 			
-			public InputListener(JUSE_ProgramingFacade api){
-				this.api = api;
-			}
+			private final IJavaProject project;
+			private final Display display;
 			
-			private String readOCLExpression(String expression){
-				return api.oclEvaluator(expression).toString();
+			public InstantiationJob(IJavaProject project, Display display){
+				super("Instantiating EJMM for " + project.getElementName());
+				this.project = project;
+				this.display = display;
 			}
 
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				IStatus status;
+				JUSE_ProgramingFacade api = null;
+				try {
+					api = loader.loadEJMMfromProject(project, monitor);
+					status = Status.OK_STATUS;
+				} catch (OperationCanceledException e) {
+					status = Status.CANCEL_STATUS;
+				} catch (RuntimeException e) {
+					status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "EJMM load failed", e);
+				}
+				final IStatus result = status;
+				final JUSE_ProgramingFacade loadedApi = api;
+				if(!display.isDisposed())
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							instantiationFinished(result, loadedApi);
+						}
+					});
+				return status;
+			}
+		}
+		
+		private void instantiationFinished(IStatus status, JUSE_ProgramingFacade api){
+			setSessionActionsEnabled(true);
+			Text input = view.getInputEditor();
+			if(input.isDisposed())
+				return;
+			if(status.isOK()){
+				view.setLabel2Text("Processing finished.");
+				listenToInput();
+				input.setEditable(true);
+				input.setEnabled(true);
+			}else if(status.getSeverity() == IStatus.CANCEL)
+				view.setLabel2Text("Instantiation canceled.");
+			else
+				view.setLabel2Text("EJMM load failed.");
+		}
+		
+		class InputListener implements TraverseListener{
+			
 			@Override
 			public void keyTraversed(TraverseEvent e) {
 				if(e.detail==SWT.TRAVERSE_RETURN){
 					String input = view.getInputEditor().getText();
-					String output = readOCLExpression(input);
-					view.getOutputEditor().setText(output);
-					view.getOutputEditor().redraw();
+					view.getOutputEditor().setText("");
+					if(queryRunner.isEvaluating())
+						view.setLabel2Text("Waiting for the previous query to finish... (Esc to cancel)");
+					else
+						view.setLabel2Text("Evaluating query... (Esc to cancel)");
+					queryRunner.submit(loader, input, new QueryDelivery(Display.getCurrent()));
+				}else if(e.detail==SWT.TRAVERSE_ESCAPE){
+					queryRunner.cancel();
+					e.doit = false;
 				}
 			}
 		}
+		
+		/**
+		 * Shows the outcome of a query in the view, from the UI thread.
+		 */
+		class QueryDelivery implements QueryRunner.Callback{
+			
+			private final Display display;
+			
+			public QueryDelivery(Display display){
+				this.display = display;
+			}
+
+			@Override
+			public void queryFinished(final CollectionValue collection, final String output, final String status) {
+				if(display.isDisposed())
+					return;
+				display.asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						if(view.getOutputEditor().isDisposed())
+							return;
+						if(collection != null){
+							new CollectionResultProvider(collection).install(view.getResultTable());
+							view.showResultTable(true);
+						}else if(output != null){
+							CollectionResultProvider.uninstall(view.getResultTable());
+							view.getOutputEditor().setText(output);
+							view.getOutputEditor().redraw();
+							view.showResultTable(false);
+						}
+						view.setLabel2Text(status);
+					}
+				});
+			}
+		}
 	}
 	
 	class LoadUSEListener implements SelectionListener {
@@ -230,8 +643,19 @@ public class EJM2ActionGroup extends ActionGroup{
 		}
 		
 	}
-}
-
-
+	
+	class ProfileListener implements SelectionListener {
 
+		@Override
+		public void widgetSelected(SelectionEvent e) {
+			int selection = view.getProfileSelector().getSelectionIndex();
+			if(selection >= 0)
+				loader.setProfile(InstantiationProfile.values()[selection]);
+		}
 
+		@Override
+		public void widgetDefaultSelected(SelectionEvent e) {
+		}
+		
+	}
+}
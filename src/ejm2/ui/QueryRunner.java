@@ -0,0 +1,221 @@
+package ejm2.ui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tzi.use.uml.ocl.value.CollectionValue;
+import org.tzi.use.uml.ocl.value.Value;
+
+import ejm2.tools.JM2Loader;
+
+/**
+ * Evaluates OCL queries outside of the UI thread, one query at a time, with a
+ * timeout and cancellation.
+ * <br>
+ * The USE evaluator does not check for interruption, so a canceled or timed out
+ * evaluation is interrupted and then abandoned: its result is discarded, and the
+ * next query is submitted on a new thread. An abandoned evaluation keeps the loader
+ * session locked until it finishes, so the next query, body instantiations and
+ * reloads of the session wait for it instead of changing the instantiation under it.
+ * <br>
+ * The timeout and the reported evaluation time start once the query holds the
+ * loader session; the time spent waiting for it is reported separately.
+ */
+class QueryRunner {
+
+	/**
+	 * Receives the outcome of a query, on the evaluation or timer thread.
+	 */
+	interface Callback {
+		/**
+		 * @param collection
+		 * 			The query result if it is a collection, null otherwise. Collections
+		 * 			are not turned into a String, since they can be very large.
+		 * @param output
+		 * 			The query result if it is not a collection, or the error message if
+		 * 			the evaluation failed. Null if the query was canceled or timed out,
+		 * 			or if the result is a collection.
+		 * @param status
+		 * 			A message with the outcome and the elapsed time
+		 */
+		void queryFinished(CollectionValue collection, String output, String status);
+	}
+
+	private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "EJM2 OCL query");
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	private final ExecutorService evaluators = Executors.newCachedThreadPool(DAEMON_THREADS);
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(DAEMON_THREADS);
+
+	// Waits for the loader session shorter than this are not reported
+	private static final double WAIT_REPORT_SECONDS = 0.1;
+
+	private int timeoutSeconds = 60;
+
+	// Evaluation threads still running, including abandoned ones
+	private final AtomicInteger running = new AtomicInteger();
+
+	// The query being evaluated, null if none
+	private Future<?> evaluation;
+	private ScheduledFuture<?> timeout;
+	private AtomicBoolean finished;
+	private long startTime;
+	private Callback callback;
+
+	/**
+	 * @param seconds
+	 * 			The maximum evaluation time of a query, 0 for no timeout
+	 */
+	synchronized void setTimeout(int seconds){
+		timeoutSeconds = seconds;
+	}
+
+	synchronized int getTimeout(){
+		return timeoutSeconds;
+	}
+
+	/**
+	 * Checks whether a query is still being evaluated, even if it was canceled or
+	 * timed out. The loader session is locked until it finishes.
+	 *
+	 * @return true if an evaluation thread is running
+	 */
+	boolean isEvaluating(){
+		return running.get() != 0;
+	}
+
+	/**
+	 * Starts evaluating a query, canceling the query still being evaluated, if any.
+	 * The query is evaluated through {@link JM2Loader#evaluateQuery(String)}, so
+	 * deferred method bodies it may need are instantiated first, on the same thread,
+	 * and the result of an identical query on the same instantiation is reused.
+	 *
+	 * @param loader
+	 * 			The loader session of the instantiation
+	 * @param expression
+	 * 			The OCL expression
+	 * @param callback
+	 * 			Receives the outcome of the query
+	 */
+	synchronized void submit(final JM2Loader loader, final String expression, final Callback callback){
+		cancel();
+		final AtomicBoolean queryFinished = new AtomicBoolean(false);
+		final long queryStart = System.nanoTime();
+		this.finished = queryFinished;
+		this.startTime = queryStart;
+		this.callback = callback;
+		this.timeout = null;
+		evaluation = evaluators.submit(new Runnable() {
+			@Override
+			public void run() {
+				running.incrementAndGet();
+				CollectionValue collection = null;
+				String output = null;
+				String status;
+				try {
+					// The session is held from here, so the evaluation is timed from here
+					synchronized (loader) {
+						if(queryFinished.get())
+							return;
+						long evaluationStart = System.nanoTime();
+						startTimeout(queryFinished, evaluationStart, callback);
+						String wait = waitStatus(queryStart, evaluationStart);
+						try {
+							long hits = loader.getQueryCache().getHits();
+							Value result = loader.evaluateQuery(expression);
+							if(result instanceof CollectionValue){
+								collection = (CollectionValue)result;
+								status = result.type() + " with " + collection.size() + " elements. ";
+							}else{
+								output = String.valueOf(result);
+								status = "";
+							}
+							if(loader.getQueryCache().getHits() != hits)
+								status += "Cached result, " + seconds(evaluationStart) + " seconds." + wait;
+							else
+								status += "Query evaluated in " + seconds(evaluationStart) + " seconds." + wait;
+						} catch (RuntimeException e) {
+							output = e.toString();
+							status = "Query failed after " + seconds(evaluationStart) + " seconds." + wait;
+						}
+					}
+				} finally {
+					running.decrementAndGet();
+				}
+				if(queryFinished.compareAndSet(false, true))
+					callback.queryFinished(collection, output, status);
+			}
+		});
+	}
+
+	/**
+	 * Starts the timeout of a query once its evaluation starts, unless it was
+	 * canceled while waiting for the loader session.
+	 */
+	private synchronized void startTimeout(final AtomicBoolean queryFinished, final long evaluationStart, final Callback callback){
+		if(timeoutSeconds <= 0 || queryFinished != finished || queryFinished.get())
+			return;
+		timeout = timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if(abandon(queryFinished))
+					callback.queryFinished(null, null, "Query timed out after " + seconds(evaluationStart) + " seconds.");
+			}
+		}, timeoutSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Cancels the query being evaluated, if any.
+	 *
+	 * @return true if a query was canceled
+	 */
+	synchronized boolean cancel(){
+		if(finished == null || !abandon(finished))
+			return false;
+		callback.queryFinished(null, null, "Query canceled after " + seconds(startTime) + " seconds.");
+		return true;
+	}
+
+	/**
+	 * Stops all evaluation threads.
+	 */
+	synchronized void shutdown(){
+		cancel();
+		evaluators.shutdownNow();
+		timer.shutdownNow();
+	}
+
+	private synchronized boolean abandon(AtomicBoolean queryFinished){
+		if(!queryFinished.compareAndSet(false, true))
+			return false;
+		if(queryFinished == finished){
+			evaluation.cancel(true);
+			if(timeout != null)
+				timeout.cancel(false);
+		}
+		return true;
+	}
+
+	// The time spent waiting for the loader session, if noticeable
+	private static String waitStatus(long queryStart, long evaluationStart){
+		double waited = (evaluationStart - queryStart)/1000000000d;
+		return waited < WAIT_REPORT_SECONDS ? "" : " Waited " + waited + " seconds for the EJMM instance.";
+	}
+
+	private static double seconds(long startTime){
+		return (System.nanoTime() - startTime)/1000000000d;
+	}
+}
@@ -4,10 +4,13 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Device;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.custom.StackLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Composite;
@@ -20,9 +23,12 @@ import ejm2.ui.EJM2ActionGroup;
 
 public class EJM2View extends ViewPart {
 
-	private Label label, label2, label3;
-	private Combo projectSelector;
+	private Label label, label2, label3, label4;
+	private Combo projectSelector, profileSelector;
 	private Text input, output;
+	private Table resultTable;
+	private Composite results;
+	private StackLayout resultsLayout;
 	private EJM2ActionGroup ag;
 	private Button loadUSE, loadEJMM;
 	
@@ -66,6 +72,15 @@ public class EJM2View extends ViewPart {
 		gridData.horizontalAlignment = SWT.RIGHT;
 		loadEJMM.setLayoutData(gridData);
 		
+		label4 = new Label(c1, SWT.NONE);
+		label4.setText("Instantiation profile");
+		
+		profileSelector = new Combo(c1, SWT.READ_ONLY | SWT.DROP_DOWN);
+		profileSelector.setToolTipText("Select which parts of the project are instantiated");
+		gridData = new GridData();
+		gridData.horizontalAlignment = SWT.RIGHT;
+		profileSelector.setLayoutData(gridData);
+		
 		label3 = new Label(c, SWT.NONE);
 		label3.setText("Insert OCL queries here:");
 		
@@ -77,16 +92,31 @@ public class EJM2View extends ViewPart {
 		gridData.grabExcessHorizontalSpace = true;
 		input.setLayoutData(gridData);
 		
-		output = new Text(c, SWT.BORDER | SWT.WRAP | SWT.MULTI | SWT.V_SCROLL);
-		output.setEditable(false);
-		Device device = Display.getCurrent();
-		output.setBackground(new Color(device, 255,255,255));
+		// Query results are shown as text, or in a virtual table for collections
+		results = new Composite(c, SWT.NONE);
 		gridData = new GridData();
 		gridData.horizontalAlignment = SWT.FILL;
 		gridData.grabExcessHorizontalSpace = true;
 		gridData.verticalAlignment = SWT.FILL;
 		gridData.grabExcessVerticalSpace = true;
-		output.setLayoutData(gridData);
+		results.setLayoutData(gridData);
+		resultsLayout = new StackLayout();
+		results.setLayout(resultsLayout);
+		
+		output = new Text(results, SWT.BORDER | SWT.WRAP | SWT.MULTI | SWT.V_SCROLL);
+		output.setEditable(false);
+		Device device = Display.getCurrent();
+		output.setBackground(new Color(device, 255,255,255));
+		
+		resultTable = new Table(results, SWT.VIRTUAL | SWT.BORDER | SWT.MULTI | SWT.FULL_SELECTION);
+		resultTable.setHeaderVisible(true);
+		TableColumn indexColumn = new TableColumn(resultTable, SWT.RIGHT);
+		indexColumn.setText("#");
+		indexColumn.setWidth(70);
+		TableColumn valueColumn = new TableColumn(resultTable, SWT.LEFT);
+		valueColumn.setText("Value");
+		valueColumn.setWidth(600);
+		resultsLayout.topControl = output;
 		
 		ag = new EJM2ActionGroup(this);
 		IActionBars actionBars = getViewSite().getActionBars();
@@ -105,10 +135,29 @@ public class EJM2View extends ViewPart {
 		return projectSelector;
 	}
 	
+	public Combo getProfileSelector(){
+		return profileSelector;
+	}
+	
 	public Text getOutputEditor(){
 		return output;
 	}
 	
+	public Table getResultTable(){
+		return resultTable;
+	}
+	
+	/**
+	 * Shows either the result table or the output text.
+	 * 
+	 * @param table
+	 * 			true to show the result table
+	 */
+	public void showResultTable(boolean table){
+		resultsLayout.topControl = table ? resultTable : output;
+		results.layout();
+	}
+	
 	public Text getInputEditor(){
 		return input;
 	}
@@ -0,0 +1,44 @@
+package org.quasar.m2dm;
+
+import org.quasar.juse.api.JUSE_ProgramingFacade;
+import org.quasar.juse.api.implementation.ProgramingFacade;
+
+
+/***********************************************************
+ * Replays an EJMM instantiation exported by JM2Loader as SOIL (see
+ * JM2Loader.setSoilExportFile) in a headless USE session, and evaluates a few
+ * queries on it. Run with a larger heap for big projects.
+ ***********************************************************/
+public class EJMMSoilReplay
+{
+	private static String	USE_BASE_DIRECTORY	= "D:/Google Drive/EclipseWorkspace/use-5.0.0";
+
+	private static String	WORKING_DIRECTORY	= "metamodel";
+
+	private static String METAMODEL_FILE = "EJMM.use";
+
+	private static String SOIL_FILE = "EJMM.soil";
+
+	private static JUSE_ProgramingFacade api;
+
+	/***********************************************************
+	 * @param args
+	 ***********************************************************/
+	public static void main(String[] args)
+	{
+		api = new ProgramingFacade();
+
+		api.initialize(args, USE_BASE_DIRECTORY, WORKING_DIRECTORY);
+
+		api.compileSpecification(METAMODEL_FILE, false);
+
+		long start = System.nanoTime();
+		api.readSOIL(WORKING_DIRECTORY, SOIL_FILE, false);
+		System.out.println("SOIL replayed in " + (System.nanoTime() - start) / 1000000000d + " seconds");
+
+		System.out.println("Types: " + api.oclEvaluator("Type.allInstances->size()"));
+		System.out.println("Methods: " + api.oclEvaluator("Method.allInstances->size()"));
+		System.out.println("Fields: " + api.oclEvaluator("Field.allInstances->size()"));
+		System.out.println("Statements: " + api.oclEvaluator("Statement.allInstances->size()"));
+	}
+}
@@ -0,0 +1,226 @@
+package org.quasar.m2dm;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.InfixExpression.Operator;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.SimpleName;
+
+import ejm2.tools.ExpressionAnalyzer;
+
+
+/***********************************************************
+ * Microbenchmark of the single-pass ExpressionAnalyzer against the former
+ * two-pass implementation (one HashSet per node for the dependencies, then a
+ * second walk for the conditional operators), on deeply nested expressions
+ * mixing conditional operators, conditional expressions, method invocations,
+ * casts and assignments.
+ * <br>
+ * The expressions are parsed without bindings, so this measures the traversal
+ * and allocation cost only. Both implementations are first checked to count
+ * the same conditional operators.
+ ***********************************************************/
+public class ExpressionAnalyzerBenchmark
+{
+	private static final int[] DEPTHS = {10, 50, 200};
+
+	private static final int ITERATIONS = 20000;
+
+	/***********************************************************
+	 * @param args
+	 ***********************************************************/
+	public static void main(String[] args)
+	{
+		ExpressionAnalyzer analyzer = new ExpressionAnalyzer();
+		for (int depth: DEPTHS)
+		{
+			Expression expression = parse(nestedExpression(depth));
+
+			analyzer.reset();
+			analyzer.analyze(expression);
+			if (analyzer.getConditionalOperatorCount() != legacyConditions(expression))
+				throw new IllegalStateException("Different conditional operator counts at depth " + depth);
+
+			// Warm-up
+			run(analyzer, expression, ITERATIONS / 10, false);
+			run(analyzer, expression, ITERATIONS / 10, true);
+
+			System.out.println("depth " + depth + "\ttwo passes:\t" + run(analyzer, expression, ITERATIONS, false) + " ns/expression");
+			System.out.println("depth " + depth + "\tsingle pass:\t" + run(analyzer, expression, ITERATIONS, true) + " ns/expression");
+		}
+	}
+
+
+	/***********************************************************
+	* Returns the average time per expression, in nanoseconds.
+	***********************************************************/
+	static double run(ExpressionAnalyzer analyzer, Expression expression, int iterations, boolean singlePass)
+	{
+		int checksum = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i != iterations; ++i)
+		{
+			if (singlePass)
+			{
+				analyzer.reset();
+				analyzer.analyze(expression);
+				checksum += analyzer.getConditionalOperatorCount() + analyzer.getDependencies().size();
+			}
+			else
+				checksum += legacyConditions(expression) + legacyDependencies(expression).length;
+		}
+		long duration = System.nanoTime() - start;
+		if (checksum == 42)
+			System.out.println();
+		return (double) duration / iterations;
+	}
+
+
+	/***********************************************************
+	* Builds an expression nested depth levels deep.
+	***********************************************************/
+	static String nestedExpression(int depth)
+	{
+		String expression = "x";
+		for (int d = 0; d != depth; ++d)
+			switch (d % 5)
+			{
+			case 0:
+				expression = "(a && " + expression + " || b)";
+				break;
+			case 1:
+				expression = "m(" + expression + ", 1)";
+				break;
+			case 2:
+				expression = "(c ? " + expression + " : z)";
+				break;
+			case 3:
+				expression = "(" + expression + " + i++)";
+				break;
+			default:
+				expression = "(y = (int) " + expression + ")";
+			}
+		return expression;
+	}
+
+
+	static Expression parse(String source)
+	{
+		ASTParser parser = ASTParser.newParser(AST.JLS4);
+		parser.setKind(ASTParser.K_EXPRESSION);
+		parser.setSource(source.toCharArray());
+		return (Expression) parser.createAST(null);
+	}
+
+
+	/***********************************************************
+	* ExpressionAnalyzer.analyzeExpressionDependencies before the single-pass
+	* analyzer, limited to the node types built by nestedExpression.
+	***********************************************************/
+	static IBinding[] legacyDependencies(Expression e)
+	{
+		HashSet<IBinding> dependencies = new HashSet<IBinding>();
+		switch (e.getClass().getSimpleName())
+		{
+		case "Assignment":
+			dependencies.addAll(Arrays.asList(legacyDependencies(((Assignment) e).getLeftHandSide())));
+			dependencies.addAll(Arrays.asList(legacyDependencies(((Assignment) e).getRightHandSide())));
+			break;
+		case "CastExpression":
+			dependencies.add(((CastExpression) e).getType().resolveBinding());
+			dependencies.addAll(Arrays.asList(legacyDependencies(((CastExpression) e).getExpression())));
+			break;
+		case "ConditionalExpression":
+			dependencies.addAll(Arrays.asList(legacyDependencies(((ConditionalExpression) e).getExpression())));
+			dependencies.addAll(Arrays.asList(legacyDependencies(((ConditionalExpression) e).getThenExpression())));
+			dependencies.addAll(Arrays.asList(legacyDependencies(((ConditionalExpression) e).getElseExpression())));
+			break;
+		case "InfixExpression":
+			dependencies.addAll(Arrays.asList(legacyDependencies(((InfixExpression) e).getLeftOperand())));
+			dependencies.addAll(Arrays.asList(legacyDependencies(((InfixExpression) e).getRightOperand())));
+			for (Object o: ((InfixExpression) e).extendedOperands())
+				dependencies.addAll(Arrays.asList(legacyDependencies((Expression) o)));
+			break;
+		case "MethodInvocation":
+			for (Object o: ((MethodInvocation) e).arguments())
+				dependencies.addAll(Arrays.asList(legacyDependencies((Expression) o)));
+			if (((MethodInvocation) e).getExpression() != null)
+				dependencies.addAll(Arrays.asList(legacyDependencies(((MethodInvocation) e).getExpression())));
+			break;
+		case "ParenthesizedExpression":
+			dependencies.addAll(Arrays.asList(legacyDependencies(((ParenthesizedExpression) e).getExpression())));
+			break;
+		case "PostfixExpression":
+			dependencies.addAll(Arrays.asList(legacyDependencies(((PostfixExpression) e).getOperand())));
+			break;
+		case "SimpleName":
+			dependencies.add(((SimpleName) e).resolveTypeBinding());
+			break;
+		default:
+			break;
+		}
+		dependencies.remove(null);
+		return dependencies.toArray(new IBinding[0]);
+	}
+
+
+	/***********************************************************
+	* ExpressionAnalyzer.analyzeExpressionConditions before the single-pass
+	* analyzer, limited to the node types built by nestedExpression.
+	***********************************************************/
+	static int legacyConditions(Expression e)
+	{
+		int result = 0;
+		switch (e.getClass().getSimpleName())
+		{
+		case "Assignment":
+			result += legacyConditions(((Assignment) e).getLeftHandSide());
+			result += legacyConditions(((Assignment) e).getRightHandSide());
+			break;
+		case "CastExpression":
+			result += legacyConditions(((CastExpression) e).getExpression());
+			break;
+		case "ConditionalExpression":
+			result += legacyConditions(((ConditionalExpression) e).getExpression());
+			result += legacyConditions(((ConditionalExpression) e).getThenExpression());
+			result += legacyConditions(((ConditionalExpression) e).getElseExpression());
+			result++;
+			break;
+		case "InfixExpression":
+			result += legacyConditions(((InfixExpression) e).getLeftOperand());
+			result += legacyConditions(((InfixExpression) e).getRightOperand());
+			for (Object o: ((InfixExpression) e).extendedOperands())
+				result += legacyConditions((Expression) o);
+			Operator op = ((InfixExpression) e).getOperator();
+			if (op.equals(Operator.CONDITIONAL_AND) || op.equals(Operator.CONDITIONAL_OR))
+				result += 1 + ((InfixExpression) e).extendedOperands().size();
+			break;
+		case "MethodInvocation":
+			for (Object o: ((MethodInvocation) e).arguments())
+				result += legacyConditions((Expression) o);
+			if (((MethodInvocation) e).getExpression() != null)
+				result += legacyConditions(((MethodInvocation) e).getExpression());
+			break;
+		case "ParenthesizedExpression":
+			result += legacyConditions(((ParenthesizedExpression) e).getExpression());
+			break;
+		case "PostfixExpression":
+			result += legacyConditions(((PostfixExpression) e).getOperand());
+			break;
+		default:
+			break;
+		}
+		return result;
+	}
+}
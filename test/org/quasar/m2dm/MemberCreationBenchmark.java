@@ -0,0 +1,121 @@
+package org.quasar.m2dm;
+
+import org.eclipse.jdt.core.Flags;
+import org.quasar.juse.api.JUSE_ProgramingFacade;
+import org.quasar.juse.api.implementation.ProgramingFacade;
+
+import org.tzi.use.uml.ocl.value.BooleanValue;
+import org.tzi.use.uml.ocl.value.EnumValue;
+import org.tzi.use.uml.ocl.value.StringValue;
+import org.tzi.use.uml.ocl.value.Value;
+import org.tzi.use.uml.sys.MObject;
+import org.tzi.use.uml.sys.MSystem;
+import org.tzi.use.uml.sys.MSystemException;
+
+import ejm2.tools.MetamodelRegistry;
+import ejm2.tools.MetamodelRegistry.MemberAttributes;
+
+
+/***********************************************************
+ * Throughput benchmark of Method meta-object creation in an EJMM session:
+ * one setObjectAttribute call per attribute (as JM2Loader did before metaclass
+ * templates) against a single MetaclassTemplate.createObject call, both setting
+ * the name, handle identifier and all flag attributes of each Method.
+ ***********************************************************/
+public class MemberCreationBenchmark
+{
+	private static String	USE_BASE_DIRECTORY	= "D:/Google Drive/EclipseWorkspace/use-5.0.0";
+
+	private static String	WORKING_DIRECTORY	= "metamodel";
+
+	private static String METAMODEL_FILE = "EJMM.use";
+
+	private static final int[] FLAGS = {
+		Flags.AccPublic,
+		Flags.AccPrivate | Flags.AccFinal,
+		Flags.AccProtected | Flags.AccStatic | Flags.AccSynchronized,
+		Flags.AccPublic | Flags.AccStatic | Flags.AccVarargs,
+		Flags.AccDefault,
+		Flags.AccPublic | Flags.AccNative | Flags.AccDeprecated,
+		Flags.AccPrivate | Flags.AccBridge | Flags.AccSynthetic,
+	};
+
+	private static final int OBJECTS = 50000;
+
+	private static JUSE_ProgramingFacade api;
+
+	/***********************************************************
+	 * @param args
+	 * @throws MSystemException
+	 ***********************************************************/
+	public static void main(String[] args) throws MSystemException
+	{
+		api = new ProgramingFacade();
+
+		api.initialize(args, USE_BASE_DIRECTORY, WORKING_DIRECTORY);
+
+		MSystem system = api.compileSpecification(METAMODEL_FILE, false);
+
+		MetamodelRegistry registry = new MetamodelRegistry(system.model());
+
+		// Warm-up
+		runPerAttribute(registry, "w", OBJECTS / 10);
+		runTemplate(system, registry, "v", OBJECTS / 10);
+
+		System.out.println("per attribute:\t" + runPerAttribute(registry, "p", OBJECTS) + " objects/s");
+		System.out.println("template:\t" + runTemplate(system, registry, "t", OBJECTS) + " objects/s");
+	}
+
+
+	/***********************************************************
+	* Creates Methods with one setObjectAttribute call per attribute and returns
+	* the number of objects created per second.
+	***********************************************************/
+	static double runPerAttribute(MetamodelRegistry registry, String prefix, int objects)
+	{
+		MemberAttributes attributes = registry.methodAttributes;
+		long start = System.nanoTime();
+		for (int i = 0; i != objects; ++i)
+		{
+			int flags = FLAGS[i % FLAGS.length];
+			MObject method = api.createObject(prefix + i, "Method");
+			api.setObjectAttribute(method, registry.name, new StringValue("m" + i));
+			api.setObjectAttribute(method, registry.handleIdentifier, new StringValue("=P/src<p{C.java[C~m" + i));
+
+			String visibility = "Default";
+			if (Flags.isPrivate(flags))
+				visibility = "Private";
+			else if (Flags.isProtected(flags))
+				visibility = "Protected";
+			else if (Flags.isPublic(flags))
+				visibility = "Public";
+			api.setObjectAttribute(method, attributes.visibility, new EnumValue(api.enumByName("VisibilityType"), visibility));
+			api.setObjectAttribute(method, attributes.isFinal, Flags.isFinal(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+			api.setObjectAttribute(method, attributes.isSynthetic, Flags.isSynthetic(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+			api.setObjectAttribute(method, attributes.isDeprecated, Flags.isDeprecated(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+			api.setObjectAttribute(method, attributes.isStatic, Flags.isStatic(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+			api.setObjectAttribute(method, attributes.isSynchronized, Flags.isSynchronized(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+			api.setObjectAttribute(method, attributes.isNative, Flags.isNative(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+			api.setObjectAttribute(method, attributes.isBridge, Flags.isBridge(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+			api.setObjectAttribute(method, attributes.hasVarargs, Flags.isVarargs(flags) ? BooleanValue.TRUE : BooleanValue.FALSE);
+		}
+		return objects / ((System.nanoTime() - start) / 1000000000d);
+	}
+
+
+	/***********************************************************
+	* Creates Methods through the Method metaclass template and returns the
+	* number of objects created per second.
+	***********************************************************/
+	static double runTemplate(MSystem system, MetamodelRegistry registry, String prefix, int objects) throws MSystemException
+	{
+		MemberAttributes attributes = registry.methodAttributes;
+		long start = System.nanoTime();
+		for (int i = 0; i != objects; ++i)
+		{
+			Value[] values = attributes.values("m" + i, "=P/src<p{C.java[C~m" + i, FLAGS[i % FLAGS.length]);
+			attributes.template.createObject(system.state(), prefix + i, values);
+		}
+		return objects / ((System.nanoTime() - start) / 1000000000d);
+	}
+}
@@ -0,0 +1,97 @@
+package org.quasar.m2dm;
+
+import ejm2.tools.NameSanitizer;
+
+
+/***********************************************************
+ * Microbenchmark of the handle name sanitizer against the former
+ * JM2Loader.processName implementation, on handle identifiers as produced by
+ * JDT for projects, compilation units, types, methods (with array and generic
+ * parameters), fields, initializers, local variables and binary types.
+ * <br>
+ * Both implementations are first checked to produce the same names.
+ ***********************************************************/
+public class ProcessNameBenchmark
+{
+	private static final String[] HANDLE_IDENTIFIERS = {
+		"=EJM2Metrics",
+		"=EJM2Metrics/src<ejm2.tools",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java[JM2Loader",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java[JM2Loader~processName~QString;",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java[JM2Loader~main~\\[QString;",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java[JM2Loader~createLink~QMAssociation;~QList\\<QMObject;>;",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java[JM2Loader^allTypeObjects",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java[JM2Loader|1",
+		"=EJM2Metrics/src<ejm2.tools{JM2Loader.java[JM2Loader~processName~QString;@acc!7841!7855!7848!7850!QString;!0!!false",
+		"=EJM2Metrics/src<ejm2.tools{StatementInspector.java[StatementInspector[InnerVisitor",
+		"=EJM2Metrics/src<ejm2.tools{StatementInspector.java[StatementInspector~inspectStatement~QStatement;~QMObject;[~Runnable:1",
+		"=EJM2Metrics/lib\\/j-use-5.0.1.jar<org.tzi.use.uml.sys(MSystemState$1.class[",
+		"=EJM2Metrics/lib\\/j-use-5.0.1.jar<org.tzi.use.uml.sys(MSystemState.class[MSystemState~createLink~Lorg.tzi.use.uml.mm.MAssociation;~Ljava.util.List\\<Lorg.tzi.use.uml.sys.MObject;>;",
+		"JM2Loader",
+		"int",
+	};
+
+	private static final int ITERATIONS = 2000000;
+
+	/***********************************************************
+	 * @param args
+	 ***********************************************************/
+	public static void main(String[] args)
+	{
+		NameSanitizer sanitizer = new NameSanitizer();
+		for (String handleIdentifier: HANDLE_IDENTIFIERS)
+			if (!legacyProcessName(handleIdentifier).equals(sanitizer.sanitize(handleIdentifier)))
+				throw new IllegalStateException("Different names for " + handleIdentifier);
+
+		// Warm-up
+		run(sanitizer, ITERATIONS / 10, false);
+		run(sanitizer, ITERATIONS / 10, true);
+
+		System.out.println("legacy processName:\t" + run(sanitizer, ITERATIONS, false) + " ns/name");
+		System.out.println("cached sanitizer:\t" + run(sanitizer, ITERATIONS, true) + " ns/name");
+	}
+
+
+	/***********************************************************
+	* Returns the average time per name, in nanoseconds.
+	***********************************************************/
+	static double run(NameSanitizer sanitizer, int iterations, boolean useSanitizer)
+	{
+		int checksum = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i != iterations; ++i)
+		{
+			String handleIdentifier = HANDLE_IDENTIFIERS[i % HANDLE_IDENTIFIERS.length];
+			if (useSanitizer)
+				checksum += sanitizer.sanitize(handleIdentifier).length();
+			else
+				checksum += legacyProcessName(handleIdentifier).length();
+		}
+		long duration = System.nanoTime() - start;
+		if (checksum == 42)
+			System.out.println();
+		return (double) duration / iterations;
+	}
+
+
+	/***********************************************************
+	* JM2Loader.processName before the NameSanitizer was introduced.
+	***********************************************************/
+	static String legacyProcessName(String name)
+	{
+		String acc = "";
+		for(int i = 0; i != name.length(); i++){
+			char c = name.charAt(i);
+			if(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'	|| c == '_')
+				acc+=c;
+			else
+				if(c == '$')
+					acc+='_';
+				else
+					if( c == '\\' && ((i + 1) < name.length()) && name.charAt(i+1) == '[')
+						acc+="ARRAY_PARAM";
+		}
+		return acc;
+	}
+}
@@ -0,0 +1,71 @@
+package org.quasar.m2dm;
+
+import org.quasar.juse.api.JUSE_ProgramingFacade;
+import org.quasar.juse.api.implementation.ProgramingFacade;
+
+import org.tzi.use.uml.ocl.value.IntegerValue;
+import org.tzi.use.uml.sys.MObject;
+
+import ejm2.tools.ObjectNameAllocator;
+
+
+/***********************************************************
+ * Compares the cost of naming Statement meta-objects by counting all existing
+ * instances (the former StatementInspector behaviour) with the per-metaclass
+ * counters of ObjectNameAllocator. Each run creates a growing number of Block
+ * objects in a fresh USE session; the time per object should stay flat with the
+ * allocator and grow with the number of objects with instance counting.
+ ***********************************************************/
+public class StatementNamingBenchmark
+{
+	private static String	USE_BASE_DIRECTORY	= "D:/Google Drive/EclipseWorkspace/use-5.0.0";
+
+	private static String	WORKING_DIRECTORY	= "metamodel";
+
+	private static String METAMODEL_FILE = "EJMM.use";
+
+	private static final String STATEMENT_CLASS = "Block";
+
+	private static final int[] SIZES = {1000, 2000, 4000, 8000, 16000};
+
+	/***********************************************************
+	 * @param args
+	 ***********************************************************/
+	public static void main(String[] args)
+	{
+		System.out.println("objects\tallInstances (us/object)\tallocator (us/object)");
+		for (int size: SIZES)
+		{
+			double countingTime = run(args, size, false);
+			double allocatorTime = run(args, size, true);
+			System.out.println(size + "\t" + countingTime + "\t" + allocatorTime);
+		}
+	}
+
+
+	/***********************************************************
+	* Creates the given number of statement objects in a new USE session and returns
+	* the average creation time per object, in microseconds.
+	***********************************************************/
+	static double run(String[] args, int size, boolean useAllocator)
+	{
+		JUSE_ProgramingFacade api = new ProgramingFacade();
+		api.initialize(args, USE_BASE_DIRECTORY, WORKING_DIRECTORY);
+		api.compileSpecification(METAMODEL_FILE, false);
+
+		ObjectNameAllocator allocator = new ObjectNameAllocator();
+
+		long start = System.nanoTime();
+		for (int i = 0; i != size; ++i)
+		{
+			String name;
+			if (useAllocator)
+				name = allocator.nextName(STATEMENT_CLASS);
+			else
+				name = STATEMENT_CLASS + (api.allInstances(STATEMENT_CLASS).size() + 1);
+			MObject statement = api.createObject(name, STATEMENT_CLASS);
+			api.setObjectAttribute(statement, api.attributeByName(statement, "startPosition"), IntegerValue.valueOf(i));
+		}
+		return (System.nanoTime() - start) / 1000d / size;
+	}
+}